@@ -1,16 +1,19 @@
 package info.ginj.action;
 
 import info.ginj.tool.Overlay;
+import info.ginj.ui.ImageEditorPane;
 
 import java.awt.*;
 
 public class MoveOverlayAction extends AbstractUndoableAction {
     private final Overlay overlay;
+    private final ImageEditorPane panel;
     private final Point initialPosition;
     private Point finalPosition;
 
-    public MoveOverlayAction(Overlay overlay, Point initialPosition) {
+    public MoveOverlayAction(Overlay overlay, ImageEditorPane panel, Point initialPosition) {
         this.overlay = overlay;
+        this.panel = panel;
         this.initialPosition = initialPosition;
     }
 
@@ -24,11 +27,13 @@ public class MoveOverlayAction extends AbstractUndoableAction {
 
     public void execute() {
         overlay.moveDrawing(finalPosition.x - initialPosition.x, finalPosition.y - initialPosition.y);
+        panel.overlayGeometryChanged(overlay);
     }
 
     public void undo() {
         super.undo();
         overlay.moveDrawing(- finalPosition.x + initialPosition.x, - finalPosition.y + initialPosition.y);
+        panel.overlayGeometryChanged(overlay);
     }
 
     public void redo() {
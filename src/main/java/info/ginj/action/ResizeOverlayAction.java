@@ -1,17 +1,20 @@
 package info.ginj.action;
 
 import info.ginj.tool.Overlay;
+import info.ginj.ui.ImageEditorPane;
 
 import java.awt.*;
 
 public class ResizeOverlayAction extends AbstractUndoableAction {
     private final Overlay overlay;
+    private final ImageEditorPane panel;
     private final int handleIndex;
     private final Point initialPosition;
     private Point finalPosition;
 
-    public ResizeOverlayAction(Overlay overlay, int handleIndex, Point initialPosition) {
+    public ResizeOverlayAction(Overlay overlay, ImageEditorPane panel, int handleIndex, Point initialPosition) {
         this.overlay = overlay;
+        this.panel = panel;
         this.handleIndex = handleIndex;
         this.initialPosition = initialPosition;
     }
@@ -27,12 +30,14 @@ public class ResizeOverlayAction extends AbstractUndoableAction {
 
     public void execute() {
         overlay.moveHandle(handleIndex, finalPosition);
+        panel.overlayGeometryChanged(overlay);
     }
 
 
     public void undo() {
         super.undo();
         overlay.moveHandle(handleIndex, initialPosition);
+        panel.overlayGeometryChanged(overlay);
     }
 
     public void redo() {
@@ -0,0 +1,17 @@
+package info.ginj.export;
+
+/**
+ * Lets the user cancel one export.
+ * Exporters check it between steps and in their transfer loops, and stop as soon as possible once it is cancelled.
+ */
+public class CancellationToken {
+    private volatile boolean isCancelled = false;
+
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+}
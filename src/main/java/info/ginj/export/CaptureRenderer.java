@@ -0,0 +1,132 @@
+package info.ginj.export;
+
+import info.ginj.model.Capture;
+import info.ginj.tool.Overlay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flattens an image capture (original image + overlays) to a single image, without relying on a displayed editor,
+ * or renders the overlays of a video capture to a layer to be composited over its frames.
+ * Rendering can be requested from any thread, and produces the same pixels as the editor shows (except for handles of
+ * the selected overlay). Overlay drawings are painted on the calling thread. Only the Swing components hosted by some
+ * overlays (such as the text area of a text overlay) are laid out and painted on the EDT, and a caller on another
+ * thread only waits for that part.
+ */
+public class CaptureRenderer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptureRenderer.class);
+
+    /**
+     * Renders the given capture, loading its original image from disk if it is not in memory
+     *
+     * @param capture the capture to render
+     * @return the rendered image
+     * @throws IOException if the original image cannot be read
+     */
+    public static BufferedImage render(Capture capture) throws IOException {
+        BufferedImage originalImage = capture.getOriginalImage();
+        if (originalImage == null) {
+            originalImage = ImageIO.read(capture.getOriginalFile());
+            if (originalImage == null) {
+                throw new IOException("Could not decode image file '" + capture.getOriginalFile() + "'");
+            }
+        }
+        return render(capture, originalImage);
+    }
+
+    /**
+     * Renders the overlays of the given capture over the given image
+     *
+     * @param capture       the capture whose overlays must be rendered
+     * @param originalImage the image to render overlays on
+     * @return the rendered image, of the same size as the original one
+     */
+    public static BufferedImage render(Capture capture, BufferedImage originalImage) {
+        final long startNanos = System.nanoTime();
+        final BufferedImage renderedImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = renderedImage.createGraphics();
+        g2d.drawImage(originalImage, 0, 0, null);
+        renderOverlays(capture, g2d);
+        g2d.dispose();
+
+        logger.debug("Capture " + capture.getId() + " rendered in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+        return renderedImage;
+    }
+
+    /**
+     * Renders the overlays of the given capture alone, over a transparent background. This layer can then be
+     * composited over each frame of a video.
+     *
+     * @param capture the capture whose overlays must be rendered
+     * @param width   the width of the capture
+     * @param height  the height of the capture
+     * @return an ARGB image of the given size
+     */
+    public static BufferedImage renderOverlayLayer(Capture capture, int width, int height) {
+        final long startNanos = System.nanoTime();
+        final BufferedImage layerImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g2d = layerImage.createGraphics();
+        renderOverlays(capture, g2d);
+        g2d.dispose();
+
+        logger.debug("Overlay layer of capture " + capture.getId() + " rendered in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+        return layerImage;
+    }
+
+    private static void renderOverlays(Capture capture, Graphics2D g2d) {
+        // Overlays are stored topmost first (like ImageEditorPane.getComponents()), so render them in reverse order
+        final List<Overlay> overlays = capture.getOverlays();
+        final List<Overlay> hostingOverlays = new ArrayList<>();
+        for (int i = overlays.size() - 1; i >= 0; i--) {
+            final Overlay overlay = overlays.get(i);
+            final Graphics2D overlayG2d = (Graphics2D) g2d.create();
+            overlay.renderDrawing(overlayG2d);
+            overlayG2d.dispose();
+            if (overlay.getComponentCount() > 0) {
+                hostingOverlays.add(overlay);
+            }
+        }
+        if (hostingOverlays.isEmpty()) {
+            return;
+        }
+
+        // Then, as Swing does in the editor, paint the components hosted by overlays over all drawings.
+        // Those are real Swing components, so only this part is done on the EDT
+        if (SwingUtilities.isEventDispatchThread()) {
+            paintHostedComponents(hostingOverlays, g2d);
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(() -> paintHostedComponents(hostingOverlays, g2d));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rendering overlays", e);
+        }
+        catch (InvocationTargetException e) {
+            throw new RuntimeException("Error rendering overlays", e.getCause());
+        }
+    }
+
+    /**
+     * Must be called on the EDT, as it lays out and paints the components hosted by the given overlays
+     */
+    private static void paintHostedComponents(List<Overlay> hostingOverlays, Graphics2D g2d) {
+        for (Overlay overlay : hostingOverlays) {
+            overlay.layoutChildren();
+            final Graphics2D overlayG2d = (Graphics2D) g2d.create();
+            overlay.renderChildren(overlayG2d);
+            overlayG2d.dispose();
+        }
+    }
+}
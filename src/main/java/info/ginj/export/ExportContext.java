@@ -4,11 +4,15 @@ import info.ginj.ui.StarWindow;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
 
 public class ExportContext {
     private Component parentFrame;
     private StarWindow starWindow;
     private ExportMonitor exportMonitor;
+    private CancellationToken cancellationToken;
+    private File renderedFile;
+    private boolean isHistorySaveDeferred = false;
 
     public ExportContext(JFrame parentFrame, StarWindow starWindow, ExportMonitor exportMonitor) {
         this.parentFrame = parentFrame;
@@ -39,4 +43,39 @@ public class ExportContext {
     public void setExportMonitor(ExportMonitor exportMonitor) {
         this.exportMonitor = exportMonitor;
     }
+
+    /**
+     * @return the token of the export job this context belongs to, or null if not run as a job
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * @return the rendered file to export to this target if it differs from the one of the capture (e.g. because it
+     * was re-encoded to fit the size limit of the target), or null
+     */
+    public File getRenderedFile() {
+        return renderedFile;
+    }
+
+    public void setRenderedFile(File renderedFile) {
+        this.renderedFile = renderedFile;
+    }
+
+    /**
+     * @return true if the exporter must not save the capture to history upon completion, because the caller does it
+     * once all exports of the capture have ended
+     */
+    public boolean isHistorySaveDeferred() {
+        return isHistorySaveDeferred;
+    }
+
+    public void setHistorySaveDeferred(boolean historySaveDeferred) {
+        isHistorySaveDeferred = historySaveDeferred;
+    }
 }
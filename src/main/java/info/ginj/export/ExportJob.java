@@ -0,0 +1,246 @@
+package info.ginj.export;
+
+import info.ginj.model.Capture;
+import info.ginj.model.Target;
+import info.ginj.util.UI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The export of a capture to a target, as run by the {@link ExportScheduler}.
+ * A job has its own {@link CancellationToken}, which is set in its context so that the exporter can check it.
+ * Its state is followed by wrapping the monitor of the context: exporters report completion or failure there.
+ */
+public class ExportJob {
+    private static final Logger logger = LoggerFactory.getLogger(ExportJob.class);
+
+    public enum State {
+        QUEUED("Queued"),
+        RUNNING("Running"),
+        DONE("Done"),
+        FAILED("Failed"),
+        CANCELLED("Cancelled");
+
+        private final String friendlyName;
+
+        State(String friendlyName) {
+            this.friendlyName = friendlyName;
+        }
+
+        @Override
+        public String toString() {
+            return friendlyName;
+        }
+    }
+
+    // Progress is only notified to listeners by steps of this size, to avoid flooding them
+    private static final int PROGRESS_NOTIFICATION_STEP = 10;
+
+    private final Capture capture;
+    private final Target target;
+    private final ExportContext context;
+    private final Runnable work;
+    private final CancellationToken cancellationToken = new CancellationToken();
+    private Runnable endAction;
+
+    // Current state
+    private State state = State.QUEUED;
+    private volatile int progress = 0;
+
+    /**
+     * @param capture the capture to export
+     * @param target  the target to export it to
+     * @param context the context returned by the exporter's prepare(). Its monitor and cancellation token are set by the job
+     * @param work    what has to be performed, typically rendering the capture then calling the exporter's exportCapture()
+     */
+    public ExportJob(Capture capture, Target target, ExportContext context, Runnable work) {
+        this.capture = capture;
+        this.target = target;
+        this.context = context;
+        this.work = work;
+        context.setCancellationToken(cancellationToken);
+        context.setExportMonitor(new JobMonitor(context.getExportMonitor()));
+    }
+
+    public Capture getCapture() {
+        return capture;
+    }
+
+    public Target getTarget() {
+        return target;
+    }
+
+    public ExportContext getContext() {
+        return context;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * @param endAction what to perform once this job has ended, whether done, failed or cancelled (even before it started)
+     */
+    public void setEndAction(Runnable endAction) {
+        this.endAction = endAction;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the last progress reported by the exporter, between 0 and 100
+     */
+    public int getProgress() {
+        return progress;
+    }
+
+    public synchronized boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    /**
+     * Requests cancellation of this job. A queued job is dropped immediately, while a running one stops as soon as
+     * its exporter notices it.
+     *
+     * @return true if the job was dropped before it started
+     */
+    public boolean cancel() {
+        cancellationToken.cancel();
+        synchronized (this) {
+            if (state != State.QUEUED) {
+                return false;
+            }
+            state = State.CANCELLED;
+        }
+        logger.info("Export of " + capture.getId() + " to " + target + " cancelled before it started");
+        if (context.getExportMonitor() != null) {
+            context.getExportMonitor().failed("Export cancelled");
+        }
+        ExportScheduler.jobChanged(this);
+        if (endAction != null) endAction.run();
+        return true;
+    }
+
+    /**
+     * Performs the work of this job. Called by the scheduler on one of its workers
+     */
+    void run() {
+        if (!setState(State.QUEUED, State.RUNNING)) {
+            // Cancelled while queued
+            return;
+        }
+        try {
+            work.run();
+        }
+        catch (RuntimeException e) {
+            if (cancellationToken.isCancelled()) {
+                // Typically ffmpeg stopped during rendering. Reported as a cancellation below
+                logger.info("Export of " + capture.getId() + " to " + target + " stopped after cancellation: " + e);
+            }
+            else {
+                UI.alertException(context.getParentFrame(), "Export error", "There was an error exporting to " + target, e, logger);
+                context.getExportMonitor().failed("Export error");
+            }
+        }
+        finally {
+            // Exporters normally report completion or failure, but may also just return when cancelled
+            if (cancellationToken.isCancelled()) {
+                if (getState() == State.RUNNING) {
+                    // Report it ourselves, so that the monitor given by the caller ends too
+                    context.getExportMonitor().failed("Export cancelled");
+                }
+            }
+            else {
+                setState(State.RUNNING, State.DONE);
+            }
+        }
+    }
+
+    /**
+     * Changes the state if it is the expected one
+     *
+     * @return true if the state was changed
+     */
+    private boolean setState(State expectedState, State newState) {
+        synchronized (this) {
+            if (state != expectedState) {
+                return false;
+            }
+            state = newState;
+        }
+        ExportScheduler.jobChanged(this);
+        if (newState != State.RUNNING && endAction != null) endAction.run();
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        final State currentState = getState();
+        return target.getDisplayName() + ": " + currentState + (currentState == State.RUNNING ? " " + progress + "%" : "");
+    }
+
+
+    /**
+     * Forwards reports of the exporter to the monitor given by the caller (if any), and follows the state of the job
+     */
+    private class JobMonitor implements ExportMonitor {
+        private final ExportMonitor delegate;
+
+        JobMonitor(ExportMonitor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void log(String state, int progress, long currentSizeBytes, long totalSizeBytes) {
+            setProgress(progress);
+            if (delegate != null) delegate.log(state, progress, currentSizeBytes, totalSizeBytes);
+        }
+
+        @Override
+        public void log(String state, int progress, String sizeProgress) {
+            setProgress(progress);
+            if (delegate != null) delegate.log(state, progress, sizeProgress);
+        }
+
+        @Override
+        public void log(String state, int progress) {
+            setProgress(progress);
+            if (delegate != null) delegate.log(state, progress);
+        }
+
+        @Override
+        public void log(String state) {
+            if (delegate != null) delegate.log(state);
+        }
+
+        @Override
+        public boolean isCancelRequested() {
+            // The delegate is always asked, as it may act upon the request (e.g. end its display)
+            final boolean isDelegateCancelRequested = delegate != null && delegate.isCancelRequested();
+            return cancellationToken.isCancelled() || isDelegateCancelRequested;
+        }
+
+        @Override
+        public void complete(String state) {
+            setProgress(100);
+            if (delegate != null) delegate.complete(state);
+            setState(State.RUNNING, State.DONE);
+        }
+
+        @Override
+        public void failed(String state) {
+            if (delegate != null) delegate.failed(state);
+            setState(State.RUNNING, cancellationToken.isCancelled() ? State.CANCELLED : State.FAILED);
+        }
+
+        private void setProgress(int newProgress) {
+            final int oldProgress = progress;
+            progress = newProgress;
+            if (newProgress / PROGRESS_NOTIFICATION_STEP != oldProgress / PROGRESS_NOTIFICATION_STEP) {
+                ExportScheduler.jobChanged(ExportJob.this);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package info.ginj.export;
+
+import info.ginj.model.Prefs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs export jobs on a bounded pool of workers, so that many exports started at once do not compete for network,
+ * disk and CPU. Jobs waiting for a worker are queued in order.
+ * Active (queued or running) jobs can be listed, e.g. to be displayed, and listeners are notified when they change.
+ * Before exiting, the application drains the queue: see {@link #drain(long)}.
+ */
+public class ExportScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ExportScheduler.class);
+
+    private static final int maxConcurrentJobs = Math.max(1, Prefs.getAsInt(Prefs.Key.EXPORT_MAX_CONCURRENT_JOBS));
+    private static final ExecutorService workers = Executors.newFixedThreadPool(maxConcurrentJobs, runnable -> {
+        Thread thread = new Thread(runnable, "Export worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Current state
+    private static final List<ExportJob> activeJobs = new CopyOnWriteArrayList<>();
+    private static final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Queues the given job. It is run as soon as a worker is available
+     *
+     * @param job the job to run
+     * @return the job
+     */
+    public static ExportJob submit(ExportJob job) {
+        if (activeJobs.size() >= maxConcurrentJobs && job.getContext().getExportMonitor() != null) {
+            job.getContext().getExportMonitor().log("Waiting for other exports...");
+        }
+        activeJobs.add(job);
+        try {
+            workers.execute(job::run);
+        }
+        catch (RejectedExecutionException e) {
+            // Application is exiting
+            logger.warn("Export of " + job.getCapture().getId() + " to " + job.getTarget() + " refused, as the application is exiting");
+            job.cancel();
+            return job;
+        }
+        logger.debug("Export of " + job.getCapture().getId() + " to " + job.getTarget() + " queued");
+        notifyListeners(job);
+        return job;
+    }
+
+    /**
+     * @return the jobs queued or running, in submission order
+     */
+    public static List<ExportJob> getActiveJobs() {
+        return new ArrayList<>(activeJobs);
+    }
+
+    /**
+     * Requests cancellation of all active jobs
+     */
+    public static void cancelAll() {
+        for (ExportJob job : activeJobs) {
+            job.cancel();
+        }
+    }
+
+    /**
+     * Stops accepting jobs, and waits for the active ones to end
+     *
+     * @param timeoutMs the max time to wait
+     * @return true if all jobs ended in time
+     */
+    public static boolean drain(long timeoutMs) {
+        workers.shutdown();
+        try {
+            final boolean isDrained = workers.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+            if (!isDrained) {
+                logger.warn("Exports still running after " + timeoutMs + "ms: " + activeJobs);
+            }
+            return isDrained;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public static void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Called by jobs when their state or progress changes
+     */
+    static void jobChanged(ExportJob job) {
+        if (!job.isActive()) {
+            activeJobs.remove(job);
+            logger.debug("Export of " + job.getCapture().getId() + " to " + job.getTarget() + " ended: " + job.getState());
+        }
+        notifyListeners(job);
+    }
+
+    private static void notifyListeners(ExportJob job) {
+        final ChangeEvent event = new ChangeEvent(job);
+        for (ChangeListener listener : listeners) {
+            listener.stateChanged(event);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package info.ginj.export;
 
-import info.ginj.Ginj;
 import info.ginj.export.clipboard.ClipboardExporter;
 import info.ginj.export.disk.DiskExporter;
 import info.ginj.export.online.dropbox.DropboxExporter;
@@ -11,28 +10,18 @@ import info.ginj.model.Export;
 import info.ginj.model.Prefs;
 import info.ginj.model.Target;
 import info.ginj.ui.ExportCompletionFrame;
-import info.ginj.ui.HistoryFrame;
 import info.ginj.ui.StarWindow;
 import info.ginj.util.Jaffree;
-import info.ginj.util.Misc;
 import info.ginj.util.UI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
-import java.awt.image.BufferedImage;
-import java.beans.XMLEncoder;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -138,11 +127,13 @@ public abstract class Exporter implements Cancellable {
         logger.debug("Exporter.complete");
         if (context.getExportMonitor() != null) context.getExportMonitor().complete(state);
 
-        // Store image in history, no matter the export type
-        saveToHistory(context, capture);
+        // Store image in history, no matter the export type, unless the caller does it once for several exports
+        if (!context.isHistorySaveDeferred()) {
+            // Exports run on a worker thread, so the capture can be saved synchronously
+            HistorySaver.save(context.getParentFrame(), capture);
+        }
 
-        final List<Export> exports = capture.getExports();
-        final Export export = exports.get(exports.size() - 1); // last export
+        final Export export = getLastExport(capture);
 
         if (Prefs.isTrue(Prefs.Key.USE_TRAY_NOTIFICATION_ON_EXPORT_COMPLETION) && context.getStarWindow().isTrayAvailable()) {
             context.getStarWindow().popupTrayNotification(export);
@@ -153,119 +144,22 @@ public abstract class Exporter implements Cancellable {
         }
     }
 
-    // TODO Should probably be in a separate thread
-    private boolean saveToHistory(ExportContext context, Capture capture) {
-        Component parentFrame = context.getParentFrame();
-        File historyFolder = Ginj.getHistoryFolder();
-        if (!historyFolder.exists()) {
-            if (!historyFolder.mkdirs()) {
-                UI.alertError(parentFrame, "Save error", "Could not create history folder (" + historyFolder.getAbsolutePath() + ")");
-                return false;
-            }
-        }
-
-        // Save the original file to history
-        // ENHANCEMENT we store the source, not the rendered version !
-        // Compute filename (no version involved here)
-        File originalFile = new File(historyFolder, capture.getId() + capture.defaultExtension());
-        try {
-            // Original file could be shared between multiple captures, only store it once
-            if (!originalFile.exists()) {
-                // Save capture itself
-                if (capture.getOriginalFile() != null) {
-                    // Move file to history
-                    Files.move(capture.getOriginalFile().toPath(), originalFile.toPath());
-                }
-                else {
-                    if (capture.isVideo()) {
-                        UI.alertError(parentFrame, "Save error", "Cannot move original video file to history: capture.getOriginalFile() is null!");
-                        return false;
-                    }
-                    else {
-                        // No original file on disk, write image from memory (should not be null !)
-                        if (!ImageIO.write(capture.getOriginalImage(), Misc.IMAGE_FORMAT_PNG, originalFile)) {
-                            UI.alertError(parentFrame, "Save error", "Writing capture to history failed (" + originalFile.getAbsolutePath() + ")");
-                            return false;
-                        }
-                    }
+    /**
+     * @return the last export of the capture performed by this exporter. When exporting to several targets at once,
+     * other exporters may have added theirs in the meantime
+     */
+    private Export getLastExport(Capture capture) {
+        synchronized (capture) {
+            final List<Export> exports = capture.getExports();
+            for (int i = exports.size() - 1; i >= 0; i--) {
+                if (getExporterName().equals(exports.get(i).getExporterName())) {
+                    return exports.get(i);
                 }
             }
+            return exports.get(exports.size() - 1);
         }
-        catch (IOException e) {
-            UI.alertException(parentFrame, "Save error", "Saving capture to history failed (" + originalFile.getAbsolutePath() + ")", e, logger);
-            return false;
-        }
-
-        // Save metadata and overlays to XML
-        // Compute filename (including version)
-        File metadataFile = new File(historyFolder, capture.getBaseFilename() + Misc.METADATA_EXTENSION);
-        try (XMLEncoder xmlEncoder = new XMLEncoder(new BufferedOutputStream(new FileOutputStream(metadataFile)))) {
-            capture.tearDown();
-            xmlEncoder.writeObject(capture);
-        }
-        catch (Exception e) {
-            UI.alertError(parentFrame, "Save error", "Saving metadata and overlays to history failed (" + metadataFile.getAbsolutePath() + ")");
-            return false;
-        }
-
-
-        // Save thumbnail
-        BufferedImage thumbnailSourceImage;
-        if (capture.isVideo()) {
-            // TODO grab from rendered video, not from original
-            thumbnailSourceImage = Jaffree.grabImage(originalFile, 0);
-        }
-        else {
-            thumbnailSourceImage = capture.getRenderedImage();
-        }
-
-        BufferedImage thumbnailImage;
-
-        int sourceImageWidth = thumbnailSourceImage.getWidth();
-        int sourceImageHeight = thumbnailSourceImage.getHeight();
-        int thumbnailWidth = HistoryFrame.THUMBNAIL_SIZE.width;
-        int thumbnailHeight = HistoryFrame.THUMBNAIL_SIZE.height;
-
-        if (sourceImageWidth > thumbnailWidth || sourceImageHeight > thumbnailHeight) {
-            // Resize
-            double hScale = thumbnailWidth / ((double) sourceImageWidth);
-            double vScale = thumbnailHeight / ((double) sourceImageHeight);
-            double scale = Math.min(hScale, vScale);
-
-            int targetWidth = (int) (sourceImageWidth * scale);
-            int targetHeight = (int) (sourceImageHeight * scale);
-
-            thumbnailImage = new BufferedImage(targetWidth, targetHeight, thumbnailSourceImage.getType());
-            AffineTransform scaleInstance = AffineTransform.getScaleInstance(scale, scale);
-            AffineTransformOp scaleOp = new AffineTransformOp(scaleInstance, AffineTransformOp.TYPE_BILINEAR);
-            scaleOp.filter(thumbnailSourceImage, thumbnailImage);
-        }
-        else {
-            thumbnailImage = thumbnailSourceImage;
-        }
-
-        // Write the thumbnail to disk
-        // Compute filename (including version)
-        File thumbnailFile = new File(historyFolder, capture.getBaseFilename() + Misc.THUMBNAIL_EXTENSION);
-        try {
-            if (!ImageIO.write(thumbnailImage, Misc.IMAGE_FORMAT_PNG, thumbnailFile)) {
-                UI.alertError(parentFrame, "Save error", "Saving thumbnail to history failed (" + thumbnailFile.getAbsolutePath() + ")");
-                return false;
-            }
-        }
-        catch (IOException e) {
-            UI.alertException(parentFrame, "Save error", "Saving thumbnail to history failed (" + thumbnailFile.getAbsolutePath() + ")", e, logger);
-            return false;
-        }
-
-
-        if (Ginj.starWindow.getHistoryFrame() != null) {
-            Ginj.starWindow.getHistoryFrame().loadHistoryList();
-        }
-        return true;
     }
 
-
     protected void failed(ExportContext context, String state) {
         logger.debug("Exporter.failed");
         if (context.getExportMonitor() != null) context.getExportMonitor().failed(state);
@@ -290,6 +184,30 @@ public abstract class Exporter implements Cancellable {
     }
 
 
+    /**
+     * @return the rendered file to export to the target of the given context: the one of the capture, unless it had
+     * to be specifically rendered for that target
+     */
+    protected File getRenderedFile(ExportContext context, Capture capture) {
+        return context.getRenderedFile() != null ? context.getRenderedFile() : capture.getRenderedFile();
+    }
+
+    /**
+     * Converts the rendered video of the given capture to an animated GIF, within the frame rate and width limits set
+     * in preferences
+     *
+     * @param gifFile      the GIF to write
+     * @param fromProgress the progress value logged when conversion starts
+     * @param toProgress   the progress value logged when conversion ends
+     * @throws java.util.concurrent.CancellationException if the export was cancelled during conversion
+     */
+    protected void renderGif(ExportContext context, Capture capture, File gifFile, int fromProgress, int toProgress) throws IOException {
+        Jaffree.renderGif(getRenderedFile(context, capture), Prefs.getAsInt(Prefs.Key.EXPORT_GIF_MAX_FRAMERATE), Prefs.getAsInt(Prefs.Key.EXPORT_GIF_MAX_WIDTH), gifFile,
+                percent -> logProgress(context.getExportMonitor(), "Converting to GIF", fromProgress + percent * (toProgress - fromProgress) / 100),
+                () -> isCancelRequested(context));
+    }
+
+
     @Override
     public void cancel(ExportContext context) {
         logger.debug("Exporter.cancel");
@@ -299,9 +217,12 @@ public abstract class Exporter implements Cancellable {
         }
     }
 
-    // TODO check this regularly at execution level
-    protected boolean isCancelRequested() {
-        return false /* ?? we should have one per export in progress */;
+    /**
+     * @param context the context of the export in progress (may be null)
+     * @return true if the user asked to cancel this export
+     */
+    protected boolean isCancelRequested(ExportContext context) {
+        return context != null && context.getCancellationToken() != null && context.getCancellationToken().isCancelled();
     }
 
     @Override
@@ -0,0 +1,187 @@
+package info.ginj.export;
+
+import info.ginj.Ginj;
+import info.ginj.model.Capture;
+import info.ginj.ui.HistoryFrame;
+import info.ginj.util.FilmstripGenerator;
+import info.ginj.util.Jaffree;
+import info.ginj.util.Misc;
+import info.ginj.util.UI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.beans.XMLEncoder;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stores captures in the history folder.
+ * Saving can either be performed synchronously (e.g. from an export thread), or be queued to a single background
+ * thread so that the caller can return immediately (e.g. when copying straight to the clipboard).
+ */
+public class HistorySaver {
+    private static final Logger logger = LoggerFactory.getLogger(HistorySaver.class);
+
+    // Single thread so that captures are saved in order and never compete for disk
+    private static final ExecutorService historyQueue = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "History saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Queues the given capture to be saved to history in background.
+     * The capture must not be modified by the caller afterwards. Error dialogs and the refresh of the history list are
+     * posted to the EDT.
+     *
+     * @param capture the capture to save
+     */
+    public static void saveInBackground(Capture capture) {
+        historyQueue.submit(() -> {
+            final long startNanos = System.nanoTime();
+            if (save(null, capture)) {
+                logger.debug("Capture " + capture.getId() + " saved to history in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+            }
+        });
+    }
+
+    /**
+     * Saves the given capture to the history folder: original file or image, metadata and overlays, and thumbnail.
+     * This method performs disk I/O and image scaling, so it should not be called from the EDT
+     *
+     * @param parentFrame the component to attach error dialogs to (may be null)
+     * @param capture     the capture to save
+     * @return true if the capture was saved successfully
+     */
+    public static boolean save(Component parentFrame, Capture capture) {
+        File historyFolder = Ginj.getHistoryFolder();
+        if (!historyFolder.exists()) {
+            if (!historyFolder.mkdirs()) {
+                UI.alertError(parentFrame, "Save error", "Could not create history folder (" + historyFolder.getAbsolutePath() + ")");
+                return false;
+            }
+        }
+
+        // Save the original file to history
+        // ENHANCEMENT we store the source, not the rendered version !
+        // Compute filename (no version involved here)
+        File originalFile = new File(historyFolder, capture.getId() + capture.defaultExtension());
+        try {
+            // Original file could be shared between multiple captures, only store it once
+            if (!originalFile.exists()) {
+                // Save capture itself
+                if (capture.getOriginalFile() != null) {
+                    // Move file to history
+                    Files.move(capture.getOriginalFile().toPath(), originalFile.toPath());
+                    if (capture.isVideo()) {
+                        // Along with its filmstrip, if it was generated while editing
+                        File filmstripFile = FilmstripGenerator.getCacheFile(capture.getOriginalFile(), capture.getId());
+                        if (filmstripFile.exists()) {
+                            Files.move(filmstripFile.toPath(), FilmstripGenerator.getCacheFile(originalFile, capture.getId()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                }
+                else {
+                    if (capture.isVideo()) {
+                        UI.alertError(parentFrame, "Save error", "Cannot move original video file to history: capture.getOriginalFile() is null!");
+                        return false;
+                    }
+                    else {
+                        // No original file on disk, write image from memory (should not be null !)
+                        if (!ImageIO.write(capture.getOriginalImage(), Misc.IMAGE_FORMAT_PNG, originalFile)) {
+                            UI.alertError(parentFrame, "Save error", "Writing capture to history failed (" + originalFile.getAbsolutePath() + ")");
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            UI.alertException(parentFrame, "Save error", "Saving capture to history failed (" + originalFile.getAbsolutePath() + ")", e, logger);
+            return false;
+        }
+
+        // Save metadata and overlays to XML
+        // Compute filename (including version)
+        File metadataFile = new File(historyFolder, capture.getBaseFilename() + Misc.METADATA_EXTENSION);
+        try (XMLEncoder xmlEncoder = new XMLEncoder(new BufferedOutputStream(new FileOutputStream(metadataFile)))) {
+            capture.tearDown();
+            xmlEncoder.writeObject(capture);
+        }
+        catch (Exception e) {
+            UI.alertError(parentFrame, "Save error", "Saving metadata and overlays to history failed (" + metadataFile.getAbsolutePath() + ")");
+            return false;
+        }
+
+
+        // Save thumbnail
+        BufferedImage thumbnailSourceImage;
+        if (capture.isVideo()) {
+            // TODO grab from rendered video, not from original
+            thumbnailSourceImage = Jaffree.grabImage(originalFile, 0);
+        }
+        else {
+            thumbnailSourceImage = capture.getRenderedImage();
+        }
+
+        BufferedImage thumbnailImage;
+
+        int sourceImageWidth = thumbnailSourceImage.getWidth();
+        int sourceImageHeight = thumbnailSourceImage.getHeight();
+        int thumbnailWidth = HistoryFrame.THUMBNAIL_SIZE.width;
+        int thumbnailHeight = HistoryFrame.THUMBNAIL_SIZE.height;
+
+        if (sourceImageWidth > thumbnailWidth || sourceImageHeight > thumbnailHeight) {
+            // Resize
+            double hScale = thumbnailWidth / ((double) sourceImageWidth);
+            double vScale = thumbnailHeight / ((double) sourceImageHeight);
+            double scale = Math.min(hScale, vScale);
+
+            int targetWidth = (int) (sourceImageWidth * scale);
+            int targetHeight = (int) (sourceImageHeight * scale);
+
+            thumbnailImage = new BufferedImage(targetWidth, targetHeight, thumbnailSourceImage.getType());
+            AffineTransform scaleInstance = AffineTransform.getScaleInstance(scale, scale);
+            AffineTransformOp scaleOp = new AffineTransformOp(scaleInstance, AffineTransformOp.TYPE_BILINEAR);
+            scaleOp.filter(thumbnailSourceImage, thumbnailImage);
+        }
+        else {
+            thumbnailImage = thumbnailSourceImage;
+        }
+
+        // Write the thumbnail to disk
+        // Compute filename (including version)
+        File thumbnailFile = new File(historyFolder, capture.getBaseFilename() + Misc.THUMBNAIL_EXTENSION);
+        try {
+            if (!ImageIO.write(thumbnailImage, Misc.IMAGE_FORMAT_PNG, thumbnailFile)) {
+                UI.alertError(parentFrame, "Save error", "Saving thumbnail to history failed (" + thumbnailFile.getAbsolutePath() + ")");
+                return false;
+            }
+        }
+        catch (IOException e) {
+            UI.alertException(parentFrame, "Save error", "Saving thumbnail to history failed (" + thumbnailFile.getAbsolutePath() + ")", e, logger);
+            return false;
+        }
+
+
+        // May be called from a worker thread, and without a star window (e.g. from a test harness)
+        SwingUtilities.invokeLater(() -> {
+            if (Ginj.starWindow != null && Ginj.starWindow.getHistoryFrame() != null) {
+                Ginj.starWindow.getHistoryFrame().loadHistoryList();
+            }
+        });
+        return true;
+    }
+}
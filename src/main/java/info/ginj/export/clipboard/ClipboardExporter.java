@@ -1,5 +1,6 @@
 package info.ginj.export.clipboard;
 
+import info.ginj.Ginj;
 import info.ginj.export.ExportContext;
 import info.ginj.export.ExportMonitor;
 import info.ginj.export.Exporter;
@@ -7,6 +8,7 @@ import info.ginj.model.Capture;
 import info.ginj.model.Export;
 import info.ginj.model.Target;
 import info.ginj.ui.StarWindow;
+import info.ginj.util.Misc;
 import info.ginj.util.UI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,9 +18,12 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.CancellationException;
 
 /**
- * This exporter copies the image to the clipboard
+ * This exporter copies the image to the clipboard.
+ * Videos are converted to an animated GIF file, which is copied to the clipboard as a file.
  *
  * Based on code from https://coderanch.com/t/333565/java/BufferedImage-System-Clipboard
  */
@@ -54,7 +59,7 @@ public class ClipboardExporter extends Exporter {
 
     @Override
     public boolean isVideoSupported() {
-        return false;
+        return true;
     }
 
     @Override
@@ -74,8 +79,7 @@ public class ClipboardExporter extends Exporter {
     @Override
     public void exportCapture(ExportContext context, Capture capture, Target target) {
         if (capture.isVideo()) {
-            UI.alertError(context.getParentFrame(), "Export error", "Video contents cannot be copied to the clipboard");
-            failed(context, "Error copying capture");
+            exportVideo(context, capture);
             return;
         }
         try {
@@ -84,11 +88,7 @@ public class ClipboardExporter extends Exporter {
             if (image == null) {
                 image = ImageIO.read(capture.getOriginalFile());
             }
-            TransferableImage transferableImage = new TransferableImage(image);
-            Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-            clipboard.setContents(transferableImage, (clipboard1, contents) -> {
-                // Do nothing. It's normal to lose ownership when another app copies something to the clipboard
-            });
+            copyImageToClipboard(image);
             capture.addExport(new Export(getExporterName(), null, null, false));
             complete(context, capture, "Image copied to clipboard");
         }
@@ -97,4 +97,49 @@ public class ClipboardExporter extends Exporter {
             failed(context, "Error copying capture");
         }
     }
+
+    private void exportVideo(ExportContext context, Capture capture) {
+        // Kept in the temp dir, as the clipboard only refers to it
+        final File gifFile = new File(Ginj.getTempDir(), capture.getId() + Misc.IMAGE_EXTENSION_GIF);
+        try {
+            renderGif(context, capture, gifFile, 0, 90);
+            copyFileToClipboard(gifFile);
+            capture.addExport(new Export(getExporterName(), null, null, false));
+            complete(context, capture, "Animated GIF copied to clipboard");
+        }
+        catch (CancellationException e) {
+            failed(context, "Export cancelled");
+        }
+        catch (Exception e) {
+            UI.alertException(context.getParentFrame(), "Export error", "There was an error copying the video to the clipboard as an animated GIF", e, logger);
+            failed(context, "Error copying capture");
+        }
+    }
+
+    /**
+     * Puts the given image on the system clipboard.
+     * This is the only step of the export that is needed when copying a capture straight to the clipboard,
+     * without going through the editor and the export machinery.
+     *
+     * @param image the image to copy
+     */
+    public static void copyImageToClipboard(Image image) {
+        TransferableImage transferableImage = new TransferableImage(image);
+        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        clipboard.setContents(transferableImage, (clipboard1, contents) -> {
+            // Do nothing. It's normal to lose ownership when another app copies something to the clipboard
+        });
+    }
+
+    /**
+     * Puts the given file on the system clipboard, so that it can be pasted in other applications
+     *
+     * @param file the file to copy
+     */
+    public static void copyFileToClipboard(File file) {
+        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        clipboard.setContents(new TransferableFile(file), (clipboard1, contents) -> {
+            // Do nothing. It's normal to lose ownership when another app copies something to the clipboard
+        });
+    }
 }
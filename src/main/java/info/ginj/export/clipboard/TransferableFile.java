@@ -0,0 +1,46 @@
+package info.ginj.export.clipboard;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Puts a file on the clipboard, as file managers do.
+ * This is how contents that have no clipboard flavor of their own (e.g. an animated GIF, as the image flavor only
+ * holds a single frame) can be pasted into other applications.
+ */
+class TransferableFile implements Transferable {
+
+    File file;
+
+    public TransferableFile(File file) {
+        this.file = file;
+    }
+
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+        if (flavor.equals(DataFlavor.javaFileListFlavor) && file != null) {
+            return List.of(file);
+        }
+        else {
+            throw new UnsupportedFlavorException(flavor);
+        }
+    }
+
+    public DataFlavor[] getTransferDataFlavors() {
+        DataFlavor[] flavors = new DataFlavor[1];
+        flavors[0] = DataFlavor.javaFileListFlavor;
+        return flavors;
+    }
+
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        DataFlavor[] flavors = getTransferDataFlavors();
+        for (DataFlavor dataFlavor : flavors) {
+            if (flavor.equals(dataFlavor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -26,7 +26,8 @@ import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException;
 
 /**
- * This exporter saves the image as a PNG file to disk, and optionally copies its path to the clipboard
+ * This exporter saves the image as a PNG file to disk, and optionally copies its path to the clipboard.
+ * Videos are saved as MP4, or converted to an animated GIF, depending on the target settings.
  */
 public class DiskExporter extends Exporter {
 
@@ -35,6 +36,7 @@ public class DiskExporter extends Exporter {
     public static final String NAME = "Disk";
     public static final int PROGRESS_SAVE_CALC_DESTINATION = 5;
     public static final int PROGRESS_SAVE = 50;
+    public static final int PROGRESS_GIF_RENDERED = 95;
 
 
     @Override
@@ -102,6 +104,9 @@ public class DiskExporter extends Exporter {
 
         // Default destination file
         File destinationFile = new File(saveDirName, capture.computeUploadFilename());
+        if (capture.isVideo()) {
+            destinationFile = replaceExtension(destinationFile, getVideoExtension(target));
+        }
 
         if (!askForLocation) {
             // Set destination file with default
@@ -135,8 +140,9 @@ public class DiskExporter extends Exporter {
 
         // Make sure selected filename ends with the expected extension
         if (capture.isVideo()) {
-            if (!destinationFile.getName().toLowerCase().endsWith(Misc.VIDEO_EXTENSION)) {
-                destinationFile = new File(destinationFile.getAbsolutePath() + Misc.VIDEO_EXTENSION);
+            final String videoExtension = getVideoExtension(target);
+            if (!destinationFile.getName().toLowerCase().endsWith(videoExtension)) {
+                destinationFile = new File(destinationFile.getAbsolutePath() + videoExtension);
             }
         }
         else {
@@ -189,7 +195,8 @@ public class DiskExporter extends Exporter {
             fileChooser.removeChoosableFileFilter(choosableFileFilter);
         }
 
-        FileNameExtensionFilter videoExtensionFilter = getFilenameExtensionFilter(Misc.VIDEO_EXTENSION);
+        final String videoExtension = getVideoExtension(target);
+        FileNameExtensionFilter videoExtensionFilter = getFilenameExtensionFilter(videoExtension);
         FileNameExtensionFilter pngExtensionFilter = getFilenameExtensionFilter(Misc.IMAGE_EXTENSION_PNG);
         FileNameExtensionFilter jpegExtensionFilter = getFilenameExtensionFilter(Misc.IMAGE_EXTENSION_JPEG);
         if (capture.isVideo()) {
@@ -232,7 +239,7 @@ public class DiskExporter extends Exporter {
                         String newExt = "";
 
                         if (newFilter == videoExtensionFilter) {
-                            newExt = Misc.VIDEO_EXTENSION;
+                            newExt = videoExtension;
                         }
                         else if (newFilter == pngExtensionFilter) {
                             newExt = Misc.IMAGE_EXTENSION_PNG;
@@ -270,6 +277,10 @@ public class DiskExporter extends Exporter {
         return null;
     }
 
+    private static String getVideoExtension(Target target) {
+        return target.getSettings().getPreferredVideoFileFormat() == ExportSettings.VideoFileFormat.GIF ? Misc.IMAGE_EXTENSION_GIF : Misc.VIDEO_EXTENSION;
+    }
+
     private static FileNameExtensionFilter getFilenameExtensionFilter(String extension1) {
         return new FileNameExtensionFilter(extension1.substring(1).toUpperCase() + " (*" + extension1 + ")", extension1.substring(1));
     }
@@ -288,9 +299,12 @@ public class DiskExporter extends Exporter {
         File destinationFile = ((DiskExportContext)context).getDestinationFile();
         try {
             logProgress(context.getExportMonitor(), "Saving capture", PROGRESS_SAVE);
-            if (capture.isVideo() || capture.getRenderedImage() == null) {
+            if (capture.isVideo() && target.getSettings().getPreferredVideoFileFormat() == ExportSettings.VideoFileFormat.GIF) {
+                renderGif(context, capture, destinationFile, PROGRESS_SAVE, PROGRESS_GIF_RENDERED);
+            }
+            else if (capture.isVideo() || capture.getRenderedImage() == null) {
                 // TODO make this a block copy loop that can be cancelled (and doesn't freeze the UI) for large video files
-                Files.copy(capture.getRenderedFile().toPath(), destinationFile.toPath());
+                Files.copy(getRenderedFile(context, capture).toPath(), destinationFile.toPath());
             }
             else {
                 // Save image
@@ -10,11 +10,11 @@ import info.ginj.export.online.exception.AuthorizationException;
 import info.ginj.export.online.exception.CommunicationException;
 import info.ginj.export.online.exception.UploadException;
 import info.ginj.model.*;
+import info.ginj.util.HttpClientService;
 import info.ginj.util.UI;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
@@ -172,7 +172,7 @@ public class DropboxExporter extends AbstractOAuth2Exporter {
 
 
     protected Profile getProfile(String accessToken) throws CommunicationException, AuthorizationException {
-        CloseableHttpClient client = HttpClients.createDefault();
+        CloseableHttpClient client = HttpClientService.getClient();
 
         HttpPost httpPost;
         try {
@@ -236,12 +236,12 @@ public class DropboxExporter extends AbstractOAuth2Exporter {
             throw new UploadException("Error preparing file to upload", e);
         }
 
-        if (isCancelRequested()) {
+        if (isCancelRequested(context)) {
             cancel();
             return null;
         }
 
-        final CloseableHttpClient client = HttpClients.createDefault();
+        final CloseableHttpClient client = HttpClientService.getClient();
 
         // Step 1: Upload the file
         final FileMetadata fileMetadata = uploadFile(context, client, target, capture);
@@ -262,7 +262,7 @@ public class DropboxExporter extends AbstractOAuth2Exporter {
 
         String sessionId;
 
-        final File file = capture.getRenderedFile();
+        final File file = getRenderedFile(context, capture);
 
         int maxChunkSize = CHUNK_SIZE;
         byte[] buffer = new byte[maxChunkSize];
@@ -319,7 +319,7 @@ public class DropboxExporter extends AbstractOAuth2Exporter {
 
 
             // Step 2: Append to session with more CHUNKS, if needed
-            while (remainingBytes > CHUNK_SIZE && !isCancelRequested()) {
+            while (remainingBytes > CHUNK_SIZE && !isCancelRequested(context)) {
                 logProgress(context.getExportMonitor(), "Uploading", (int) (PROGRESS_UPLOAD_START + ((PROGRESS_UPLOAD_END - PROGRESS_UPLOAD_START) * offset) / file.length()), offset, file.length());
                 httpPost = new HttpPost("https://content.dropboxapi.com/2/files/upload_session/append_v2");
 
@@ -356,7 +356,7 @@ public class DropboxExporter extends AbstractOAuth2Exporter {
                 remainingBytes = file.length() - offset;
             }
 
-            if (isCancelRequested()) {
+            if (isCancelRequested(context)) {
                 cancel();
                 return null;
             }
@@ -468,29 +468,27 @@ public class DropboxExporter extends AbstractOAuth2Exporter {
         ));
 
         // Send request
-        CloseableHttpResponse response;
-        try {
-            response = client.execute(httpPost);
-        }
-        catch (IOException e) {
-            throw new CommunicationException("Error getting metadata", e);
-        }
-        if (isStatusOK(response.getCode())) {
-            final String responseText;
-            try {
-                responseText = EntityUtils.toString(response.getEntity());
-                return new Gson().fromJson(responseText, FileMetadata.class);
+        try (CloseableHttpResponse response = client.execute(httpPost)) {
+            if (isStatusOK(response.getCode())) {
+                final String responseText;
+                try {
+                    responseText = EntityUtils.toString(response.getEntity());
+                    return new Gson().fromJson(responseText, FileMetadata.class);
+                }
+                catch (ParseException | IOException e) {
+                    throw new CommunicationException("Could not parse metadata query response as String: " + response.getEntity());
+                }
             }
-            catch (ParseException | IOException e) {
-                throw new CommunicationException("Could not parse metadata query response as String: " + response.getEntity());
+            else {
+                String responseError = getResponseError(response);
+                if ("path".equals(responseError)) {
+                    throw new FileNotFoundException();
+                }
+                throw new CommunicationException("The server returned the following error when getting metadata:\n" + responseError);
             }
         }
-        else {
-            String responseError = getResponseError(response);
-            if ("path".equals(responseError)) {
-                throw new FileNotFoundException();
-            }
-            throw new CommunicationException("The server returned the following error when getting metadata:\n" + responseError);
+        catch (IOException e) {
+            throw new CommunicationException("Error getting metadata", e);
         }
     }
 
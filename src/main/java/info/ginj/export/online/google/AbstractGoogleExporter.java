@@ -8,10 +8,10 @@ import info.ginj.export.online.exception.AuthorizationException;
 import info.ginj.export.online.exception.CommunicationException;
 import info.ginj.model.Account;
 import info.ginj.model.Profile;
+import info.ginj.util.HttpClientService;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
@@ -32,7 +32,6 @@ import java.util.Map;
  * and
  * https://developers.google.com/identity/protocols/oauth2/native-app#obtainingaccesstokens
  * <p>
- * TODO: only keep a single HttpClient ?
  */
 public abstract class AbstractGoogleExporter extends AbstractOAuth2Exporter {
     public static final ByteArrayEntity EMPTY_ENTITY = new ByteArrayEntity(new byte[]{}, ContentType.APPLICATION_OCTET_STREAM);
@@ -92,7 +91,7 @@ public abstract class AbstractGoogleExporter extends AbstractOAuth2Exporter {
      */
     public void checkAuthorizations(ExportContext context, Account account) throws CommunicationException, AuthorizationException {
         logProgress(context.getExportMonitor(), "Checking authorizations", PROGRESS_CHECK_AUTHORIZE_START);
-        CloseableHttpClient client = HttpClients.createDefault();
+        CloseableHttpClient client = HttpClientService.getClient();
         HttpGet httpGet;
         try {
             URIBuilder builder = new URIBuilder("https://www.googleapis.com/oauth2/v3/tokeninfo");
@@ -103,8 +102,7 @@ public abstract class AbstractGoogleExporter extends AbstractOAuth2Exporter {
             throw new CommunicationException(e);
         }
 
-        try {
-            CloseableHttpResponse response = client.execute(httpGet);
+        try (CloseableHttpResponse response = client.execute(httpGet)) {
             if (isStatusOK(response.getCode())) {
                 final String responseText;
                 try {
@@ -155,7 +153,7 @@ public abstract class AbstractGoogleExporter extends AbstractOAuth2Exporter {
 
     @Override
     protected Profile getProfile(String accessToken) throws CommunicationException, AuthorizationException {
-        CloseableHttpClient client = HttpClients.createDefault();
+        CloseableHttpClient client = HttpClientService.getClient();
 
         HttpGet httpGet;
         try {
@@ -168,8 +166,7 @@ public abstract class AbstractGoogleExporter extends AbstractOAuth2Exporter {
 
         httpGet.addHeader("Authorization", "Bearer " + accessToken);
 
-        try {
-            CloseableHttpResponse response = client.execute(httpGet);
+        try (CloseableHttpResponse response = client.execute(httpGet)) {
             if (isStatusOK(response.getCode())) {
                 final String responseText;
                 try {
@@ -10,13 +10,13 @@ import info.ginj.export.online.exception.UploadException;
 import info.ginj.model.Capture;
 import info.ginj.model.Export;
 import info.ginj.model.Target;
+import info.ginj.util.HttpClientService;
 import info.ginj.util.UI;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpPut;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.ParseException;
@@ -134,7 +134,7 @@ public class GoogleDriveExporter extends AbstractGoogleExporter {
             throw new UploadException("Error preparing file to upload", e);
         }
 
-        final CloseableHttpClient client = HttpClients.createDefault();
+        final CloseableHttpClient client = HttpClientService.getClient();
 
         // Step 1: Upload the file
 
@@ -168,7 +168,7 @@ public class GoogleDriveExporter extends AbstractGoogleExporter {
      * @throws UploadException        if an upload-specific error occurs
      */
     private FilesResource uploadFile(ExportContext context, CloseableHttpClient client, Target target, Capture capture) throws AuthorizationException, CommunicationException, UploadException {
-        final File file = capture.getRenderedFile();
+        final File file = getRenderedFile(context, capture);
 
         // Step 1: Initiating an upload session
         logProgress(context.getExportMonitor(), "Uploading", PROGRESS_UPLOAD_START);
@@ -241,8 +241,7 @@ public class GoogleDriveExporter extends AbstractGoogleExporter {
 
                 httpPut.setEntity(new ByteArrayEntity(buffer, 0, bytesRead, ContentType.APPLICATION_OCTET_STREAM));
 
-                try {
-                    CloseableHttpResponse response = client.execute(httpPut);
+                try (CloseableHttpResponse response = client.execute(httpPut)) {
                     if (offset + CHUNK_SIZE < file.length() && response.getCode() == 308) {
                         // All chunks except the last should get a 308 Resume Incomplete - This is normal
                         try {
@@ -342,20 +341,21 @@ public class GoogleDriveExporter extends AbstractGoogleExporter {
             httpGet.setEntity(EMPTY_ENTITY);
 
             // Send request
-            CloseableHttpResponse response = client.execute(httpGet);
-            if (isStatusOK(response.getCode())) {
-                try {
-                    String responseText = EntityUtils.toString(response.getEntity());
-                    logger.info("Response: " + responseText);
-                    return new Gson().fromJson(responseText, FilesResource.class);
+            try (CloseableHttpResponse response = client.execute(httpGet)) {
+                if (isStatusOK(response.getCode())) {
+                    try {
+                        String responseText = EntityUtils.toString(response.getEntity());
+                        logger.info("Response: " + responseText);
+                        return new Gson().fromJson(responseText, FilesResource.class);
+                    }
+                    catch (ParseException e) {
+                        throw new CommunicationException("Could not parse media upload response as String:\n" + response.getEntity());
+                    }
                 }
-                catch (ParseException e) {
-                    throw new CommunicationException("Could not parse media upload response as String:\n" + response.getEntity());
+                else {
+                    throw new CommunicationException("The server returned the following error when creating shared link:\n" + getResponseError(response));
                 }
             }
-            else {
-                throw new CommunicationException("The server returned the following error when creating shared link:\n" + getResponseError(response));
-            }
         }
         catch (IOException | URISyntaxException e) {
             throw new CommunicationException("Error creating shared link", e);
@@ -13,12 +13,12 @@ import info.ginj.export.online.exception.UploadException;
 import info.ginj.model.Capture;
 import info.ginj.model.Export;
 import info.ginj.model.Target;
+import info.ginj.util.HttpClientService;
 import info.ginj.util.UI;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.ParseException;
@@ -165,7 +165,7 @@ public class GooglePhotosExporter extends AbstractGoogleExporter {
             throw new UploadException("Error preparing file to upload", e);
         }
 
-        final CloseableHttpClient client = HttpClients.createDefault();
+        final CloseableHttpClient client = HttpClientService.getClient();
 
         // Step 1: Retrieve Ginj album ID, or create it if needed
         // + Optionally share the album (one cannot share a single media using the API)
@@ -293,8 +293,7 @@ public class GooglePhotosExporter extends AbstractGoogleExporter {
         httpGet.addHeader("Authorization", "Bearer " + getAccessToken(target.getAccount()));
         httpGet.addHeader("Content-type", "application/json");
 
-        try {
-            CloseableHttpResponse response = client.execute(httpGet);
+        try (CloseableHttpResponse response = client.execute(httpGet)) {
             if (isStatusOK(response.getCode())) {
                 final String responseText;
                 try {
@@ -381,8 +380,7 @@ public class GooglePhotosExporter extends AbstractGoogleExporter {
         httpGet.addHeader("Authorization", "Bearer " + getAccessToken(target.getAccount()));
         httpGet.addHeader("Content-type", "application/json");
 
-        try {
-            CloseableHttpResponse response = client.execute(httpGet);
+        try (CloseableHttpResponse response = client.execute(httpGet)) {
             if (isStatusOK(response.getCode())) {
                 final String responseText;
                 try {
@@ -510,7 +508,7 @@ public class GooglePhotosExporter extends AbstractGoogleExporter {
     private String uploadFileBytes(ExportContext context, CloseableHttpClient client, Target target, Capture capture) throws AuthorizationException, UploadException, CommunicationException {
         String uploadToken = null;
 
-        final File file = capture.getRenderedFile();
+        final File file = getRenderedFile(context, capture);
 
         // Step 1: Initiating an upload session
         logProgress(context.getExportMonitor(), "Uploading", PROGRESS_UPLOAD_START);
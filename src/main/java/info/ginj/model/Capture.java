@@ -9,7 +9,9 @@ import java.awt.image.BufferedImage;
 import java.beans.Transient;
 import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -17,6 +19,12 @@ import java.util.List;
  */
 public class Capture implements Cloneable {
     public static final String VERSION_SEPARATOR = "_v";
+    // Appended to the ids of captures taken in the same second as a previous one
+    private static final String SAME_SECOND_SEPARATOR = "_";
+
+    // Last generated id, see newId()
+    private static String lastDateTimeId;
+    private static int sameSecondCount;
 
     String id;
     int version = 1;
@@ -31,10 +39,28 @@ public class Capture implements Cloneable {
     long videoDurationMs;
     long videoLowerBoundMs;
     long videoHigherBoundMs;
+    RecordingStats recordingStats;
+    List<String> recordingAdaptations = new ArrayList<>();
+    List<Long> videoSegmentBoundariesMs = new ArrayList<>();
 
     public Capture() {
     }
 
+    /**
+     * @return a new capture id, based on the current date and time. Ids are used as history filenames, so captures
+     * taken in the same second (e.g. repeated quick captures) get a counter suffix instead of overwriting each other
+     */
+    public static synchronized String newId() {
+        final String dateTimeId = new SimpleDateFormat(Misc.DATETIME_FORMAT_PATTERN).format(new Date());
+        if (!dateTimeId.equals(lastDateTimeId)) {
+            lastDateTimeId = dateTimeId;
+            sameSecondCount = 1;
+            return dateTimeId;
+        }
+        sameSecondCount++;
+        return dateTimeId + SAME_SECOND_SEPARATOR + sameSecondCount;
+    }
+
     public Capture(String id) {
         this.id = id;
     }
@@ -92,7 +118,7 @@ public class Capture implements Cloneable {
         this.exports = exports;
     }
 
-    public void addExport(Export export) {
+    public synchronized void addExport(Export export) {
         exports.add(export);
     }
 
@@ -121,6 +147,40 @@ public class Capture implements Cloneable {
         this.videoHigherBoundMs = videoHigherBoundMs;
     }
 
+    /**
+     * @return the figures measured while recording the video (null for images)
+     */
+    public RecordingStats getRecordingStats() {
+        return recordingStats;
+    }
+
+    public void setRecordingStats(RecordingStats recordingStats) {
+        this.recordingStats = recordingStats;
+    }
+
+    /**
+     * @return the changes of settings made during recording because encoding could not keep up (empty if none)
+     */
+    public List<String> getRecordingAdaptations() {
+        return recordingAdaptations;
+    }
+
+    public void setRecordingAdaptations(List<String> recordingAdaptations) {
+        this.recordingAdaptations = recordingAdaptations;
+    }
+
+    /**
+     * @return the positions in the original video where recording was paused and resumed, or its settings changed
+     * (empty if recorded in one go)
+     */
+    public List<Long> getVideoSegmentBoundariesMs() {
+        return videoSegmentBoundariesMs;
+    }
+
+    public void setVideoSegmentBoundariesMs(List<Long> videoSegmentBoundariesMs) {
+        this.videoSegmentBoundariesMs = videoSegmentBoundariesMs;
+    }
+
     // Note: Transient to prevent being saved to disk
 
     @Transient
@@ -182,7 +242,7 @@ public class Capture implements Cloneable {
      * @return The file
      * @throws IOException in case file had to be created and an error occurred
      */
-    public File toRenderedFile() throws IOException {
+    public synchronized File toRenderedFile() throws IOException {
         if (renderedFile == null) {
             renderedFile = new File(Ginj.getTempDir(), id + Misc.IMAGE_EXTENSION_PNG);
             ImageIO.write(renderedImage, Misc.IMAGE_FORMAT_PNG, renderedFile);
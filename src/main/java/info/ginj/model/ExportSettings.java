@@ -28,11 +28,29 @@ public class ExportSettings {
         }
     }
 
+    public enum VideoFileFormat {
+        MP4("MP4 video"),
+        GIF("Animated GIF");
+
+        private final String friendlyName;
+
+        VideoFileFormat(String friendlyName) {
+            this.friendlyName = friendlyName;
+        }
+
+        @Override
+        public String toString() {
+            return friendlyName;
+        }
+    }
+
     // Warning: all these fields must be handled by the copyToMap() & moveFromMap() methods
     public static final String MUST_ALWAYS_ASK_LOCATION_KEY = "must_always_ask_location";
     public static final String DEST_LOCATION_KEY = "dest_location";
     public static final String MUST_REMEMBER_LAST_LOCATION_KEY = "must_remember_last_location";
     public static final String PREFERRED_FILE_FORMAT_KEY = "preferred_file_format";
+    public static final String PREFERRED_VIDEO_FILE_FORMAT_KEY = "preferred_video_file_format";
+    public static final String MAX_VIDEO_SIZE_MB_KEY = "max_video_size_mb";
     public static final String MUST_SHARE_KEY = "must_share";
     public static final String MUST_COPY_PATH_KEY = "must_copy_path";
     public static final String ALBUM_GRANULARITY_KEY = "album_granularity";
@@ -45,6 +63,8 @@ public class ExportSettings {
     private String lastCustomDestLocation;
     private Boolean mustRememberLastLocation;
     private FileFormat preferredFileFormat = FileFormat.PNG;
+    private VideoFileFormat preferredVideoFileFormat = VideoFileFormat.MP4;
+    private Integer maxVideoSizeMb;
     private Boolean mustShare;
     private Boolean mustCopyPath;
     private GooglePhotosExporter.Granularity albumGranularity;
@@ -99,6 +119,25 @@ public class ExportSettings {
         this.preferredFileFormat = preferredFileFormat;
     }
 
+    public VideoFileFormat getPreferredVideoFileFormat() {
+        return preferredVideoFileFormat;
+    }
+
+    public void setPreferredVideoFileFormat(VideoFileFormat preferredVideoFileFormat) {
+        this.preferredVideoFileFormat = preferredVideoFileFormat;
+    }
+
+    /**
+     * @return the max size of exported videos, in MB, or null (or 0) if videos are exported whatever their size
+     */
+    public Integer getMaxVideoSizeMb() {
+        return maxVideoSizeMb;
+    }
+
+    public void setMaxVideoSizeMb(Integer maxVideoSizeMb) {
+        this.maxVideoSizeMb = maxVideoSizeMb;
+    }
+
     public Boolean getMustShare() {
         return mustShare;
     }
@@ -133,6 +172,9 @@ public class ExportSettings {
         if (getDestLocation() != null) map.put(DEST_LOCATION_KEY, getDestLocation());
         if (getMustRememberLastLocation() != null) map.put(MUST_REMEMBER_LAST_LOCATION_KEY, getMustRememberLastLocation());
         if (getPreferredFileFormat() != null) map.put(PREFERRED_FILE_FORMAT_KEY, getPreferredFileFormat());
+        if (getPreferredVideoFileFormat() != null) map.put(PREFERRED_VIDEO_FILE_FORMAT_KEY, getPreferredVideoFileFormat());
+        // Edited as text
+        if (getMaxVideoSizeMb() != null) map.put(MAX_VIDEO_SIZE_MB_KEY, String.valueOf(getMaxVideoSizeMb()));
         if (getMustShare() != null) map.put(MUST_SHARE_KEY, getMustShare());
         if (getMustCopyPath() != null) map.put(MUST_COPY_PATH_KEY, getMustCopyPath());
         if (getAlbumGranularity() != null) map.put(ALBUM_GRANULARITY_KEY, getAlbumGranularity());
@@ -187,6 +229,26 @@ public class ExportSettings {
         }
 
 
+        if (map.containsKey(PREFERRED_VIDEO_FILE_FORMAT_KEY)) {
+            setPreferredVideoFileFormat((VideoFileFormat) map.get(PREFERRED_VIDEO_FILE_FORMAT_KEY));
+            map.remove(PREFERRED_VIDEO_FILE_FORMAT_KEY);
+        }
+        else {
+            missingSettings.add(PREFERRED_VIDEO_FILE_FORMAT_KEY);
+        }
+
+
+        if (map.containsKey(MAX_VIDEO_SIZE_MB_KEY)) {
+            // Edited as text. Anything but a positive number means no limit
+            final String maxVideoSizeMb = String.valueOf(map.get(MAX_VIDEO_SIZE_MB_KEY)).trim();
+            setMaxVideoSizeMb(maxVideoSizeMb.matches("\\d{1,6}") && Integer.parseInt(maxVideoSizeMb) > 0 ? Integer.valueOf(maxVideoSizeMb) : null);
+            map.remove(MAX_VIDEO_SIZE_MB_KEY);
+        }
+        else {
+            missingSettings.add(MAX_VIDEO_SIZE_MB_KEY);
+        }
+
+
         if (map.containsKey(MUST_SHARE_KEY)) {
             setMustShare((Boolean) map.get(MUST_SHARE_KEY));
             map.remove(MUST_SHARE_KEY);
@@ -39,10 +39,26 @@ public class Prefs {
         STAR_WINDOW_DISTANCE_FROM_CORNER_PERCENT("star.window.distance.from.corner.percent", "This indicates the distance from the top or left edge of the screen to the 'Star' icon", true, String.valueOf(50)),
         STAR_WINDOW_DISPLAY_NUMBER("star.window.display.number", "This is the number of the display the 'Star' icon should be displayed on (0=Main, 1=Secondary, ...)", true, String.valueOf(0)),
         CAPTURE_HOTKEY("capture.hotkey", "This is the combination to type to trigger a new capture", false),
+        CLIPBOARD_CAPTURE_HOTKEY("clipboard.capture.hotkey", "This is the combination to type to select an area and copy it straight to the clipboard, without opening the editor", true),
+        REPEAT_LAST_CAPTURE_HOTKEY("repeat.last.capture.hotkey", "This is the combination to type to capture the same area as the last image capture and copy it straight to the clipboard", true),
         FFMPEG_BIN_DIR("ffmpeg.bin.dir", "Folder where the ffmpeg binary executable can be founs", true),
         VIDEO_FRAMERATE("video.framerate", "The framerate of the video captures", true, String.valueOf(10)),
         VIDEO_CAPTURE_MOUSE_CURSOR("video.capture.mouse.cursor", "If true, the mouse cursor is captured in the video", true),
-        VIDEO_IMAGE_UPDATE_DELAY_MS("video.image.update.delay.ms", "Delay before update of the image when dragging the slider on the timeline of a video capture", true, String.valueOf(150)),
+        VIDEO_JAVA_GRABBER("video.java.grabber", "If true, the screen is grabbed by Java instead of by ffmpeg. Frames where nothing changed are not encoded, but grabbing may be slower", true, String.valueOf(false)),
+        VIDEO_ADAPTIVE_RECORDING("video.adaptive.recording", "If true, the framerate is lowered during a recording when encoding cannot keep up", true, String.valueOf(true)),
+        VIDEO_MIN_FRAMERATE("video.min.framerate", "The lowest framerate an adaptive recording can fall back to", true, String.valueOf(5)),
+        INSTANT_REPLAY_ENABLED("instant.replay.enabled", "If true, the last seconds of a display are continuously recorded in background, so they can be saved retroactively using the instant replay hotkey", true, String.valueOf(false)),
+        INSTANT_REPLAY_HOTKEY("instant.replay.hotkey", "This is the combination to type to save the last seconds recorded in background as a new video capture", true, "ctrl shift R"),
+        INSTANT_REPLAY_DURATION_S("instant.replay.duration.s", "The number of seconds kept by the instant replay recorder", true, String.valueOf(30)),
+        INSTANT_REPLAY_SEGMENT_DURATION_S("instant.replay.segment.duration.s", "The duration of each recycled segment of the instant replay recorder. Smaller values waste less disk space but increase overhead", true, String.valueOf(2)),
+        INSTANT_REPLAY_DISPLAY_NUMBER("instant.replay.display.number", "The number of the display recorded by the instant replay recorder (0=Main, 1=Secondary, ...)", true, String.valueOf(0)),
+        INSTANT_REPLAY_MAX_BITRATE_KBPS("instant.replay.max.bitrate.kbps", "The max bitrate of the instant replay recording, which bounds the disk space used by segments", true, String.valueOf(4000)),
+        VIDEO_FRAME_CACHE_SIZE_MB("video.frame.cache.size.mb", "Max memory used to keep decoded frames of the video being edited, so that moving the slider on the timeline does not decode them again", true, String.valueOf(256)),
+        VIDEO_FRAME_PREFETCH_MS("video.frame.prefetch.ms", "Duration of video decoded in advance after, and then before, the position of the slider on the timeline of a video capture", true, String.valueOf(2000)),
+        EXPORT_MAX_CONCURRENT_JOBS("export.max.concurrent.jobs", "The max number of exports performed at the same time. Other exports wait in a queue", true, String.valueOf(2)),
+        EXPORT_PARALLEL_ENCODING("export.parallel.encoding", "If enabled, long videos that must be re-encoded for export are split and encoded by several processes at the same time, to use all cores", true, String.valueOf(true)),
+        EXPORT_GIF_MAX_FRAMERATE("export.gif.max.framerate", "The max framerate of videos exported as animated GIF. Lower values make much smaller files", true, String.valueOf(10)),
+        EXPORT_GIF_MAX_WIDTH("export.gif.max.width", "The max width of videos exported as animated GIF, in pixels. Wider videos are scaled down", true, String.valueOf(800)),
         USE_TRAY_NOTIFICATION_ON_EXPORT_COMPLETION("use.tray.notification.on.export.completion", "If enabled, the 'end of export' window is replaced by an OS tray notification", true, String.valueOf(true)),
         TEMP_DIR("temp.dir", "The directory to store temporary captures", true),
         DEBUG_NO_OPACITY_CHANGE("debug.no.opacity.change", "Debug param to try to avoid the transparent grey background", true),
@@ -0,0 +1,194 @@
+package info.ginj.model;
+
+import java.beans.Transient;
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Figures measured while recording a video, as reported by ffmpeg.
+ * A live snapshot is displayed during recording, and the final one is stored with the capture, so that the frame
+ * rate can be tuned for the machine based on actual numbers.
+ */
+public class RecordingStats implements Serializable {
+    private int requestedFrameRate;
+    private int frameRate;
+    private long frameCount;
+    private long durationMs;
+    private double averageFps;
+    private double currentFps;
+    private double speed;
+    private double lowestSpeed;
+    private double bitrateKbps;
+    private long sizeBytes;
+    private long droppedFrames;
+    private long duplicatedFrames;
+
+    public RecordingStats() {
+    }
+
+    /**
+     * @return the frame rate set in preferences when recording started
+     */
+    public int getRequestedFrameRate() {
+        return requestedFrameRate;
+    }
+
+    public void setRequestedFrameRate(int requestedFrameRate) {
+        this.requestedFrameRate = requestedFrameRate;
+    }
+
+    /**
+     * @return the frame rate recorded last. It is lower than the requested one if recording had to be lightened
+     */
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public void setFrameRate(int frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * @return the number of frames written, including duplicated ones
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public void setFrameCount(long frameCount) {
+        this.frameCount = frameCount;
+    }
+
+    /**
+     * @return the wall clock time since recording started
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * @return the number of frames actually captured (not duplicated) per second of recording
+     */
+    public double getAverageFps() {
+        return averageFps;
+    }
+
+    public void setAverageFps(double averageFps) {
+        this.averageFps = averageFps;
+    }
+
+    /**
+     * @return the number of frames actually captured per second over the last progress interval
+     */
+    @Transient
+    public double getCurrentFps() {
+        return currentFps;
+    }
+
+    @Transient
+    public void setCurrentFps(double currentFps) {
+        this.currentFps = currentFps;
+    }
+
+    /**
+     * @return the last encoding speed reported, relative to real time (1.0 means encoding keeps up)
+     */
+    @Transient
+    public double getSpeed() {
+        return speed;
+    }
+
+    @Transient
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @return the lowest encoding speed reported once warmed up, relative to real time (0 if unknown)
+     */
+    public double getLowestSpeed() {
+        return lowestSpeed;
+    }
+
+    public void setLowestSpeed(double lowestSpeed) {
+        this.lowestSpeed = lowestSpeed;
+    }
+
+    /**
+     * @return the last bitrate reported, in kbits per second
+     */
+    public double getBitrateKbps() {
+        return bitrateKbps;
+    }
+
+    public void setBitrateKbps(double bitrateKbps) {
+        this.bitrateKbps = bitrateKbps;
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    /**
+     * @return the number of frames dropped by ffmpeg because they arrived too fast, or missed by the Java grabber
+     * because grabbing or encoding could not keep up
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public void setDroppedFrames(long droppedFrames) {
+        this.droppedFrames = droppedFrames;
+    }
+
+    /**
+     * @return the number of frames duplicated by ffmpeg to fill gaps because the capture could not keep up
+     */
+    public long getDuplicatedFrames() {
+        return duplicatedFrames;
+    }
+
+    public void setDuplicatedFrames(long duplicatedFrames) {
+        this.duplicatedFrames = duplicatedFrames;
+    }
+
+    /**
+     * @return a short description of the current state of the recording, for display
+     */
+    @Transient
+    public String getSummary() {
+        String summary = String.format(Locale.ROOT, "%.1f/%d fps - %.2fx - %.0f kb/s - %.1f MB",
+                currentFps, frameRate, speed, bitrateKbps, sizeBytes / (1024.0 * 1024.0));
+        if (droppedFrames > 0 || duplicatedFrames > 0) {
+            summary += " - Dropped " + droppedFrames + " / Duplicated " + duplicatedFrames;
+        }
+        return summary;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingStats{" +
+                "requestedFrameRate=" + requestedFrameRate +
+                ", frameRate=" + frameRate +
+                ", frameCount=" + frameCount +
+                ", durationMs=" + durationMs +
+                ", averageFps=" + averageFps +
+                ", lowestSpeed=" + lowestSpeed +
+                ", bitrateKbps=" + bitrateKbps +
+                ", sizeBytes=" + sizeBytes +
+                ", droppedFrames=" + droppedFrames +
+                ", duplicatedFrames=" + duplicatedFrames +
+                '}';
+    }
+}
@@ -0,0 +1,186 @@
+package info.ginj.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A screen capture made of one image ("tile") per display, instead of a single "mega-image" covering the union of
+ * all displays.
+ * On multi-monitor setups with displays of different sizes, a large part of the mega-image is dead space, so
+ * capturing each display separately (and in parallel) saves both time and memory.
+ * <p>
+ * Note: tile bounds are expressed in the coordinate system of the "mega-window" (see CaptureSelectionFrame),
+ * that is relative to the top left corner of the union of all displays, so all coordinates are positive.
+ */
+public class TiledScreenCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(TiledScreenCapture.class);
+
+    private final Dimension size;
+    private final List<Tile> tiles;
+
+    public TiledScreenCapture(Dimension size, List<Tile> tiles) {
+        this.size = size;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Captures the given display areas, one tile per area.
+     * If there are several areas, they are captured in parallel.
+     *
+     * @param areas             the visible areas of each display, in device coordinates
+     * @param allDisplaysBounds the union of all areas, in device coordinates
+     * @return the tiled capture
+     * @throws AWTException if the platform does not allow screen capture
+     */
+    public static TiledScreenCapture capture(List<Rectangle> areas, Rectangle allDisplaysBounds) throws AWTException {
+        // Mirrored displays report the same area twice. Only capture it once
+        List<Rectangle> distinctAreas = new ArrayList<>();
+        for (Rectangle area : areas) {
+            boolean isCovered = false;
+            for (Rectangle distinctArea : distinctAreas) {
+                if (distinctArea.contains(area)) {
+                    isCovered = true;
+                    break;
+                }
+            }
+            if (!isCovered) {
+                distinctAreas.add(area);
+            }
+        }
+
+        BufferedImage[] images = new BufferedImage[distinctAreas.size()];
+        if (distinctAreas.size() == 1) {
+            // No need for a thread pool
+            images[0] = new Robot().createScreenCapture(distinctAreas.get(0));
+        }
+        else {
+            // Note: Robot.createScreenCapture() is synchronized on the Robot instance, so use one Robot per thread
+            ExecutorService executor = Executors.newFixedThreadPool(distinctAreas.size());
+            try {
+                List<Future<BufferedImage>> futures = new ArrayList<>();
+                for (Rectangle area : distinctAreas) {
+                    futures.add(executor.submit(() -> new Robot().createScreenCapture(area)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    images[i] = futures.get(i).get();
+                }
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof AWTException) {
+                    throw (AWTException) e.getCause();
+                }
+                throw new RuntimeException("Error capturing display", e.getCause());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while capturing displays", e);
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+
+        List<Tile> tiles = new ArrayList<>();
+        for (int i = 0; i < distinctAreas.size(); i++) {
+            Rectangle tileBounds = new Rectangle(distinctAreas.get(i));
+            tileBounds.translate(-allDisplaysBounds.x, -allDisplaysBounds.y);
+            tiles.add(new Tile(tileBounds, images[i]));
+        }
+        return new TiledScreenCapture(new Dimension(allDisplaysBounds.width, allDisplaysBounds.height), tiles);
+    }
+
+    /**
+     * @return the size of the union of all tiles
+     */
+    public Dimension getSize() {
+        return size;
+    }
+
+    public List<Tile> getTiles() {
+        return tiles;
+    }
+
+    /**
+     * @return the total number of pixels held by this capture (excluding dead space between displays)
+     */
+    public long getPixelCount() {
+        long pixelCount = 0;
+        for (Tile tile : tiles) {
+            pixelCount += (long) tile.getBounds().width * tile.getBounds().height;
+        }
+        return pixelCount;
+    }
+
+    /**
+     * Paints all tiles at their position. Area between tiles is left untouched.
+     *
+     * @param g        the graphics to paint on, in "mega-window" coordinates
+     * @param observer the observer to notify
+     */
+    public void paint(Graphics g, ImageObserver observer) {
+        for (Tile tile : tiles) {
+            g.drawImage(tile.getImage(), tile.getBounds().x, tile.getBounds().y, observer);
+        }
+    }
+
+    /**
+     * Returns the image corresponding to the given area.
+     * The pixels are always copied to a new image of the size of the area: unlike getSubimage(), which shares the
+     * raster of its parent, this makes sure the full tiles can be garbage collected as soon as the selection frame
+     * is closed, instead of being retained through editing, export and history.
+     * Dead space between displays is left black.
+     *
+     * @param area the area to extract, in "mega-window" coordinates
+     * @return a compact image of that area
+     */
+    public BufferedImage crop(Rectangle area) {
+        BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.translate(-area.x, -area.y);
+        int tileCount = 0;
+        for (Tile tile : tiles) {
+            if (tile.getBounds().intersects(area)) {
+                g2d.drawImage(tile.getImage(), tile.getBounds().x, tile.getBounds().y, null);
+                tileCount++;
+            }
+        }
+        g2d.dispose();
+        if (tileCount > 1) {
+            logger.debug("Selection " + area + " spans " + tileCount + " displays");
+        }
+        return image;
+    }
+
+
+    /**
+     * The capture of a single display
+     */
+    public static class Tile {
+        private final Rectangle bounds;
+        private final BufferedImage image;
+
+        public Tile(Rectangle bounds, BufferedImage image) {
+            this.bounds = bounds;
+            this.image = image;
+        }
+
+        public Rectangle getBounds() {
+            return bounds;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+    }
+}
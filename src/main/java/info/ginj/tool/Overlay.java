@@ -1,6 +1,5 @@
 package info.ginj.tool;
 
-import com.jhlabs.image.GaussianFilter;
 import info.ginj.ui.CaptureEditingFrame;
 import info.ginj.util.UI;
 import org.slf4j.Logger;
@@ -9,12 +8,13 @@ import org.slf4j.LoggerFactory;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.awt.image.BufferedImageOp;
 import java.beans.Transient;
 
 /**
- * An overlay is a transparent panel (canvas) that covers the capture,
- * upon which a single widget is drawn, optionally with its handles or button bar.
+ * An overlay is a single widget drawn over the capture, optionally with its handles or button bar.
+ * Overlays are still transparent panels covering the capture (which keeps their persistence format and lets them
+ * host components such as a text area), but they don't paint themselves: all overlays are rendered by their
+ * ImageEditorPane on a single canvas, only within their render bounds.
  */
 public abstract class Overlay extends JPanel {
 
@@ -27,6 +27,12 @@ public abstract class Overlay extends JPanel {
     public static final int SHADOW_BLUR_RADIUS = 8;
     public static final int SHADOW_OFFSET = 3;
 
+    // Margin around handles that is enough to contain strokes, arrow heads, shadow blur and handle images
+    public static final int RENDER_MARGIN = SHADOW_BLUR_RADIUS + HANDLE_WIDTH;
+
+    // Distance from a drawn line under which a click is still considered to be on that line
+    public static final int HIT_TOLERANCE = 4;
+
     // Parent
     private CaptureEditingFrame frame;
 
@@ -93,17 +99,42 @@ public abstract class Overlay extends JPanel {
     }
 
     /**
-     * This is the main drawing method called to render the component.
+     * Overlays are rendered by their ImageEditorPane, see render()
+     * @param g the graphics canvas to draw on
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        // Nothing to paint here
+    }
+
+    /**
+     * This is the main drawing method called to render the component in the editor.
      * This method draws:
      * 1. the drop shadow (if required by the overlay and if not dragging/resizing),
      * 2. the overlay itself
      * 3. its handles (if selected)
-     * @param g the graphics canvas to draw on
+     * @param g2d the graphics canvas to draw on, in capture coordinates
      */
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+    public void render(Graphics2D g2d) {
+        layoutChildren();
+        renderDrawing(g2d);
+
+        // Draw handles
+        if (selected) {
+            for (Point handle : getHandles()) {
+                drawHandle(g2d, handle);
+            }
+        }
+    }
+
+    /**
+     * Draws the drop shadow (if required by the overlay and if not dragging/resizing) and the overlay itself, but
+     * not its handles. This is what ends up in the rendered capture.
+     * This method only draws, and does not touch the Swing components hosted by this overlay, so it can be called
+     * from any thread.
+     * @param g2d the graphics canvas to draw on, in capture coordinates
+     */
+    public void renderDrawing(Graphics2D g2d) {
         g2d.setRenderingHints(UI.ANTI_ALIASING_ON);
 
         // Draw shadow
@@ -115,11 +146,32 @@ public abstract class Overlay extends JPanel {
 
         // Draw component
         drawComponent(g2d, 0, 0);
+    }
 
-        // Draw handles
-        if (selected) {
-            for (Point handle : getHandles()) {
-                drawHandle(g2d, handle);
+    /**
+     * Lays out the Swing components hosted by this overlay (such as the text area of a text overlay) according to
+     * the overlay geometry. Does nothing by default.
+     * Must be called on the EDT.
+     */
+    public void layoutChildren() {
+        // No hosted components by default
+    }
+
+    /**
+     * Paints the Swing components hosted by this overlay (such as the text area of a text overlay), the same way
+     * Swing paints them in the editor. Only needed when rendering outside of the editor.
+     * Must be called on the EDT, after layoutChildren().
+     * @param g2d the graphics canvas to draw on, in capture coordinates
+     */
+    public void renderChildren(Graphics2D g2d) {
+        final Component[] children = getComponents();
+        // Like Swing, paint from the last child to the first one
+        for (int i = children.length - 1; i >= 0; i--) {
+            final Component child = children[i];
+            if (child.isVisible()) {
+                final Graphics childGraphics = g2d.create(getX() + child.getX(), getY() + child.getY(), child.getWidth(), child.getHeight());
+                child.paint(childGraphics);
+                childGraphics.dispose();
             }
         }
     }
@@ -153,9 +205,33 @@ public abstract class Overlay extends JPanel {
         graphics2D.drawImage(handleImg, point.x - 5, point.y - 5, null);
     }
 
+    /**
+     * Returns the area that this overlay may paint on, including its shadow and handles.
+     * Only this area needs to be repainted when the overlay changes, and the overlay can be skipped when painting
+     * outside of it.
+     * @return the render bounds, in capture coordinates
+     */
+    @Transient
+    public Rectangle getRenderBounds() {
+        Rectangle bounds = null;
+        for (Point handle : getHandles()) {
+            if (bounds == null) {
+                bounds = new Rectangle(handle);
+            }
+            else {
+                bounds.add(handle);
+            }
+        }
+        //noinspection ConstantConditions all overlays have handles
+        bounds.add(new Point(bounds.x + bounds.width + SHADOW_OFFSET, bounds.y + bounds.height + SHADOW_OFFSET));
+        bounds.grow(RENDER_MARGIN, RENDER_MARGIN);
+        return bounds;
+    }
+
     /**
      * Hit detection: this method is called to know if a given point is on the overlay (and can be used to select or drag it).
      * Note: this is similar to overriding contains(), except it is called only on click (and not on mouseover).
+     * The test is purely geometric, so it never needs to render the overlay or its shadow.
      * TODO: ? see if we can get back to "contains()" and change mouse pointer onHover() now that it is optimized
      * @param point the point to test
      * @return true if the point is on the overlay
@@ -164,14 +240,24 @@ public abstract class Overlay extends JPanel {
         // First see if we're in a handle
         if (isSelected() && getHandleIndexAt(point) != NO_INDEX) return true;
 
-        // Then see if we're in the bounding rectangle of the shadow
-        final Rectangle shadowBounds = getShadowBounds();
-        if (!shadowBounds.contains(point)) return false;
+        // Then quickly exclude points outside the area the overlay can paint on
+        if (!getRenderBounds().contains(point)) return false;
 
-        // And Return true if the pixel at (x,y) is not transparent (incl shadow)
-        final BufferedImage shadowImage = getShadowImage();
-        final int rgb = shadowImage.getRGB(point.x - shadowBounds.x, point.y - shadowBounds.y);
-        return ((rgb & 0xFF000000) != 0);
+        // And test the actual shape of the overlay
+        return isOnDrawing(point);
+    }
+
+    /**
+     * Returns true if the given outline, drawn with the given stroke width, passes at the given point (with HIT_TOLERANCE)
+     * @param outline the shape as drawn by the overlay
+     * @param strokeWidth the width of the stroke used to draw it
+     * @param point the point to test
+     * @return true if the point is on the outline
+     */
+    protected static boolean isOnOutline(Shape outline, float strokeWidth, Point point) {
+        return new BasicStroke(strokeWidth + 2 * HIT_TOLERANCE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND)
+                .createStrokedShape(outline)
+                .contains(point);
     }
 
     @Transient
@@ -179,7 +265,6 @@ public abstract class Overlay extends JPanel {
         if (shadowImageCache == null) {
             // Only redraw the area in the real overlay bounds (by scanning handles) + shadow margin
             shadowBoundsCache = getShadowBounds();
-            BufferedImageOp op = new GaussianFilter(SHADOW_BLUR_RADIUS);
             BufferedImage maskImage = new BufferedImage(shadowBoundsCache.width, shadowBoundsCache.height, BufferedImage.TYPE_INT_ARGB);
             final Graphics2D maskImageG2D = maskImage.createGraphics();
             drawComponent(maskImageG2D, SHADOW_OFFSET - shadowBoundsCache.x, SHADOW_OFFSET - shadowBoundsCache.y);
@@ -187,7 +272,8 @@ public abstract class Overlay extends JPanel {
             maskImageG2D.setColor(Color.BLACK);
             maskImageG2D.fillRect(0, 0, shadowBoundsCache.width, shadowBoundsCache.height);
             maskImageG2D.dispose();
-            shadowImageCache = op.filter(maskImage, null);
+            // Moving the overlay, or undoing a change, produces the same mask, whose shadow is then reused
+            shadowImageCache = ShadowRenderer.getShadow(maskImage, SHADOW_BLUR_RADIUS);
         }
         return shadowImageCache;
     }
@@ -353,6 +439,15 @@ public abstract class Overlay extends JPanel {
     public abstract void drawComponent(Graphics2D g2d, int xOffset, int yOffset);
 
 
+    /**
+     * Precise hit test, based on the geometry of the drawing (not on its rendering). Called by containsPoint() only
+     * for points within the render bounds.
+     * @param point the point to test
+     * @return true if the point is on the drawing itself
+     */
+    protected abstract boolean isOnDrawing(Point point);
+
+
     /**
      * Returns all handles of the component. Handles are squares displayed over the selected overlay, providing ways to change its shape.
      * By convention, when a component is first drawn, getHandles()[0] is the handle at the "end" of the drawing (arrowhead or second point of rectangle).
@@ -0,0 +1,225 @@
+package info.ginj.tool;
+
+import com.jhlabs.image.GaussianFilter;
+import com.jhlabs.image.PixelUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the blurred drop shadows of overlays.
+ * <p>
+ * Shadow masks are black shapes where only the alpha channel varies, so only that channel is blurred, with the same
+ * separable Gaussian kernel and rounding as com.jhlabs.image.GaussianFilter (results are identical).
+ * Scratch buffers are reused between calls (up to a size), large masks are blurred in parallel row bands, and blurred shadows are
+ * cached by mask contents. As the mask is drawn relative to the shadow bounds, moving an overlay, or undoing and
+ * redoing a change, finds the previous shadow in the cache instead of blurring again.
+ */
+public class ShadowRenderer {
+
+    // Below this number of pixels, blurring a band of rows is not worth forking
+    private static final int PARALLEL_THRESHOLD_PIXELS = 64 * 1024;
+    // Max number of pixels of all cached shadows (masks are retained as well, so memory is twice that x 4 bytes)
+    private static final long CACHE_MAX_PIXELS = 4 * 1024 * 1024;
+    // Max number of pixels of the scratch buffers kept by each thread (8 bytes per pixel). Larger masks, which are rare,
+    // use temporary buffers instead, so that a single huge shadow does not pin its buffers for the life of the thread
+    private static final int MAX_RETAINED_SCRATCH_PIXELS = 1024 * 1024;
+
+    // Caching
+    private static final Map<Integer, float[]> kernelCache = new ConcurrentHashMap<>();
+    private static final ThreadLocal<int[][]> scratchBuffers = ThreadLocal.withInitial(() -> new int[2][0]);
+    private static final LinkedHashMap<MaskKey, BufferedImage> shadowCache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedPixels = 0;
+
+    /**
+     * Returns the shadow of the given mask, from the cache if an identical mask was blurred before
+     *
+     * @param mask   an ARGB image of the shape casting the shadow. It must not be modified afterwards
+     * @param radius the blur radius
+     * @return the blurred shadow
+     */
+    public static BufferedImage getShadow(BufferedImage mask, int radius) {
+        final MaskKey key = new MaskKey(mask, radius);
+        synchronized (shadowCache) {
+            final BufferedImage shadow = shadowCache.get(key);
+            if (shadow != null) {
+                return shadow;
+            }
+        }
+        final BufferedImage shadow = blur(mask, radius);
+        synchronized (shadowCache) {
+            if (shadowCache.put(key, shadow) == null) {
+                cachedPixels += key.pixels.length;
+            }
+            final Iterator<MaskKey> iterator = shadowCache.keySet().iterator();
+            while (cachedPixels > CACHE_MAX_PIXELS && iterator.hasNext()) {
+                // Least recently used first
+                cachedPixels -= iterator.next().pixels.length;
+                iterator.remove();
+            }
+        }
+        return shadow;
+    }
+
+    /**
+     * Blurs the alpha channel of the given mask, without using the cache.
+     * The RGB channels of the result are black.
+     *
+     * @param mask   an ARGB image of the shape casting the shadow
+     * @param radius the blur radius
+     * @return a new image containing the blurred shadow
+     */
+    public static BufferedImage blur(BufferedImage mask, int radius) {
+        final int width = mask.getWidth();
+        final int height = mask.getHeight();
+        final int size = width * height;
+        final int[] maskPixels = getPixels(mask);
+
+        int[][] buffers = scratchBuffers.get();
+        if (buffers[0].length < size) {
+            buffers = new int[][]{new int[size], new int[size]};
+            if (size <= MAX_RETAINED_SCRATCH_PIXELS) {
+                scratchBuffers.set(buffers);
+            }
+        }
+        final int[] alphas = buffers[0];
+        final int[] transposedAlphas = buffers[1];
+        for (int i = 0; i < size; i++) {
+            alphas[i] = maskPixels[i] >>> 24;
+        }
+
+        if (radius > 0) {
+            final float[] kernel = kernelCache.computeIfAbsent(radius, r -> GaussianFilter.makeKernel(r).getKernelData(null));
+            blurAndTranspose(kernel, alphas, transposedAlphas, width, height);
+            blurAndTranspose(kernel, transposedAlphas, alphas, height, width);
+        }
+
+        final BufferedImage shadow = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final int[] shadowPixels = getPixels(shadow);
+        for (int i = 0; i < size; i++) {
+            shadowPixels[i] = alphas[i] << 24;
+        }
+        return shadow;
+    }
+
+    public static void clearCache() {
+        synchronized (shadowCache) {
+            shadowCache.clear();
+            cachedPixels = 0;
+        }
+    }
+
+    private static void blurAndTranspose(float[] kernel, int[] in, int[] out, int width, int height) {
+        if ((long) width * height < PARALLEL_THRESHOLD_PIXELS) {
+            blurAndTransposeRows(kernel, in, out, width, height, 0, height);
+        }
+        else {
+            ForkJoinPool.commonPool().invoke(new BlurRowsTask(kernel, in, out, width, height, 0, height));
+        }
+    }
+
+    /**
+     * Single channel version of GaussianFilter.convolveAndTranspose() with clamped edges, for rows in [fromRow, toRow[
+     */
+    private static void blurAndTransposeRows(float[] kernel, int[] in, int[] out, int width, int height, int fromRow, int toRow) {
+        final int cols2 = kernel.length / 2;
+        for (int y = fromRow; y < toRow; y++) {
+            int index = y;
+            final int ioffset = y * width;
+            for (int x = 0; x < width; x++) {
+                float a = 0;
+                for (int col = -cols2; col <= cols2; col++) {
+                    final float f = kernel[cols2 + col];
+                    if (f != 0) {
+                        int ix = x + col;
+                        if (ix < 0) {
+                            ix = 0;
+                        }
+                        else if (ix >= width) {
+                            ix = width - 1;
+                        }
+                        a += f * in[ioffset + ix];
+                    }
+                }
+                out[index] = PixelUtils.clamp((int) (a + 0.5));
+                index += height;
+            }
+        }
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            throw new IllegalArgumentException("Shadow masks must be of type TYPE_INT_ARGB");
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static class BlurRowsTask extends RecursiveAction {
+        private final float[] kernel;
+        private final int[] in;
+        private final int[] out;
+        private final int width;
+        private final int height;
+        private final int fromRow;
+        private final int toRow;
+
+        BlurRowsTask(float[] kernel, int[] in, int[] out, int width, int height, int fromRow, int toRow) {
+            this.kernel = kernel;
+            this.in = in;
+            this.out = out;
+            this.width = width;
+            this.height = height;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (toRow - fromRow) * width <= PARALLEL_THRESHOLD_PIXELS || toRow - fromRow < 2) {
+                blurAndTransposeRows(kernel, in, out, width, height, fromRow, toRow);
+            }
+            else {
+                final int middleRow = (fromRow + toRow) >>> 1;
+                invokeAll(new BlurRowsTask(kernel, in, out, width, height, fromRow, middleRow),
+                        new BlurRowsTask(kernel, in, out, width, height, middleRow, toRow));
+            }
+        }
+    }
+
+    /**
+     * Identifies a mask by its contents
+     */
+    private static class MaskKey {
+        private final int width;
+        private final int radius;
+        private final int[] pixels;
+        private final int hash;
+
+        MaskKey(BufferedImage mask, int radius) {
+            this.width = mask.getWidth();
+            this.radius = radius;
+            this.pixels = getPixels(mask);
+            this.hash = 31 * (31 * width + radius) + Arrays.hashCode(pixels);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MaskKey)) return false;
+            final MaskKey other = (MaskKey) o;
+            return hash == other.hash && width == other.width && radius == other.radius && Arrays.equals(pixels, other.pixels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
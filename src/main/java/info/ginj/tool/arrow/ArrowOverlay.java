@@ -47,6 +47,12 @@ public class ArrowOverlay extends Overlay {
         drawArrowLine(g2d, start.x + xOffset, start.y + yOffset, end.x + xOffset, end.y + yOffset);
     }
 
+    @Override
+    protected boolean isOnDrawing(Point point) {
+        // The head is twice as wide as the shaft, so be tolerant on the whole length
+        return isOnOutline(new Line2D.Float(start, end), 2 * getHeadWidth(start.distance(end)), point);
+    }
+
     /**
      * Returns all handles of the component. Handles are squares displayed over the selected overlay, providing ways to change its shape.
      * By convention, when a component is first drawn, getHandles()[0] is the end of the drawing (arrowhead or second point of rectangle)
@@ -74,6 +80,10 @@ public class ArrowOverlay extends Overlay {
     }
 
 
+    private static int getHeadWidth(double arrowLength) {
+        return Math.min(8, (int)arrowLength/3);
+    }
+
     /**
      * Draw an arrow line between two points.
      * from https://stackoverflow.com/a/27461352/13551878
@@ -93,7 +103,7 @@ public class ArrowOverlay extends Overlay {
 
         // The width of the arrow (the length of the base of the triangle, perpendicular to the shaft)
         // Normally 10, except for very small arrows - ENHANCEMENT
-        int headWidth = Math.min(8, (int)hyp/3);
+        int headWidth = getHeadWidth(hyp);
         // the length of the head (from the tip to the center of the base)
         int headLength = 2 * headWidth;
 
@@ -5,6 +5,8 @@ import info.ginj.tool.RectangleOverlay;
 import java.awt.*;
 
 public class FrameOverlay extends RectangleOverlay {
+    private static final int STROKE_WIDTH = 4;
+
     @Override
     public String getPresentationName() {
         return "Frame";
@@ -13,7 +15,12 @@ public class FrameOverlay extends RectangleOverlay {
     @Override
     public void drawComponent(Graphics2D g2d, int xOffset, int yOffset) {
         g2d.setColor(getColor());
-        g2d.setStroke(new BasicStroke(4));
+        g2d.setStroke(new BasicStroke(STROKE_WIDTH));
         g2d.drawRect(rectangle.x + xOffset, rectangle.y + yOffset, rectangle.width, rectangle.height);
     }
+
+    @Override
+    protected boolean isOnDrawing(Point point) {
+        return isOnOutline(rectangle, STROKE_WIDTH, point);
+    }
 }
@@ -11,17 +11,8 @@ public class HighlightOverlay extends RectangleOverlay {
         return "Highlight";
     }
 
-    /**
-     * Simplified version as highlights don't have a shadow
-     * @param point the point to test
-     * @return
-     */
     @Override
-    public boolean containsPoint(Point point) {
-        // First see if we're in a handle
-        if (isSelected() && getHandleIndexAt(point) != NO_INDEX) return true;
-
-        // Otherwise, see if we're in the rectangle
+    protected boolean isOnDrawing(Point point) {
         return rectangle.contains(point);
     }
 
@@ -3,9 +3,12 @@ package info.ginj.tool.oval;
 import info.ginj.tool.RectangleOverlay;
 
 import java.awt.*;
+import java.awt.geom.Ellipse2D;
 
 /** ENHANCEMENT oval overlay support */
 public class OvalOverlay extends RectangleOverlay {
+    private static final int STROKE_WIDTH = 4;
+
     @Override
     public String getPresentationName() {
         return "Oval";
@@ -14,7 +17,12 @@ public class OvalOverlay extends RectangleOverlay {
     @Override
     public void drawComponent(Graphics2D g2d, int xOffset, int yOffset) {
         g2d.setColor(getColor());
-        g2d.setStroke(new BasicStroke(4));
+        g2d.setStroke(new BasicStroke(STROKE_WIDTH));
         g2d.drawOval(rectangle.x + xOffset, rectangle.y + yOffset, rectangle.width, rectangle.height);
     }
+
+    @Override
+    protected boolean isOnDrawing(Point point) {
+        return isOnOutline(new Ellipse2D.Float(rectangle.x, rectangle.y, rectangle.width, rectangle.height), STROKE_WIDTH, point);
+    }
 }
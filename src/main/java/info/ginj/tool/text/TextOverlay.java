@@ -118,7 +118,10 @@ public class TextOverlay extends RectangleOverlay {
         this.backgroundAlpha = backgroundAlpha;
         // TODO highlight button if transparent (not in the listener because it can be restored from disk)
         clearShadow();
-        repaint();
+        if (getFrame() != null) {
+            // Overlays are rendered by the image pane
+            getFrame().getImagePane().repaintOverlay(this);
+        }
     }
     public int getStrokeWidth() {
         return strokeWidth;
@@ -224,13 +227,17 @@ public class TextOverlay extends RectangleOverlay {
     }
 
     @Override
-    public void drawComponent(Graphics2D g2d, int xOffset, int yOffset) {
+    public void layoutChildren() {
         Rectangle textRectangle = new Rectangle(rectangle);
         textRectangle.grow(-10, -8);
         textArea.setBounds(textRectangle);
         textArea.setForeground(getColor());
+        textArea.setOpaque(backgroundAlpha != 0);
+    }
+
+    @Override
+    public void drawComponent(Graphics2D g2d, int xOffset, int yOffset) {
         if (backgroundAlpha == 0) {
-            textArea.setOpaque(false);
             if (isSelected()) {
                 // Semi transparent border to be able to grab and move the overlay
                 g2d.setColor(new Color(128,128,128,64));
@@ -239,7 +246,6 @@ public class TextOverlay extends RectangleOverlay {
             }
         }
         else {
-            textArea.setOpaque(true);
             g2d.setColor(backgroundColor);
             g2d.fillRoundRect(rectangle.x + 2 + xOffset, rectangle.y + 2 + yOffset, rectangle.width - 4, rectangle.height - 4, 8, 8);
             g2d.setColor(getColor());
@@ -248,6 +254,14 @@ public class TextOverlay extends RectangleOverlay {
         }
     }
 
+    @Override
+    protected boolean isOnDrawing(Point point) {
+        // The inside is covered by the text area, so only the border (and background, if any) can be hit
+        final Rectangle outerBounds = new Rectangle(rectangle);
+        outerBounds.grow(strokeWidth / 2 + HIT_TOLERANCE, strokeWidth / 2 + HIT_TOLERANCE);
+        return outerBounds.contains(point);
+    }
+
     public void setSelected(boolean selected) {
         super.setSelected(selected);
         if (backgroundAlpha == 0) {
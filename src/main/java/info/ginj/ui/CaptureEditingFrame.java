@@ -2,17 +2,25 @@ package info.ginj.ui;
 
 import info.ginj.Ginj;
 import info.ginj.action.AbstractUndoableAction;
+import info.ginj.export.CaptureRenderer;
 import info.ginj.export.ExportContext;
+import info.ginj.export.ExportJob;
+import info.ginj.export.ExportMonitor;
+import info.ginj.export.ExportScheduler;
 import info.ginj.export.Exporter;
+import info.ginj.export.HistorySaver;
 import info.ginj.model.Capture;
+import info.ginj.model.ExportSettings;
 import info.ginj.model.Prefs;
 import info.ginj.model.Target;
 import info.ginj.tool.GinjTool;
 import info.ginj.tool.Overlay;
 import info.ginj.ui.component.*;
+import info.ginj.util.FilmstripGenerator;
 import info.ginj.util.Jaffree;
 import info.ginj.util.Misc;
 import info.ginj.util.UI;
+import info.ginj.util.VideoFrameDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,8 +39,17 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.ObjIntConsumer;
 
 import static info.ginj.ui.component.BoundedTimelineRangeModel.THUMB_NONE;
 
@@ -40,6 +57,9 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
 
     private static final Logger logger = LoggerFactory.getLogger(CaptureEditingFrame.class);
 
+    // Max wait for the first frame of a video, before falling back to a one-shot decode
+    private static final long FIRST_FRAME_TIMEOUT_MS = 10_000;
+
     public static final int TOOL_BUTTON_ICON_WIDTH = 24;
     public static final int TOOL_BUTTON_ICON_HEIGHT = 24;
     public static final int MINI_TOOL_BUTTON_ICON_WIDTH = 10;
@@ -59,10 +79,9 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
 
     GinjTool currentTool;
     private JPanel actionPanel;
-    private Timer videoImageUpdateTimer = null;
+    private VideoFrameDecoder videoFrameDecoder = null;
+    private FilmstripGenerator filmstripGenerator = null;
     private int displayedVideoImagePositionMs = 0;
-    // Delay of slider pause between image refresh
-    private int videoImageUpdateMs;
     private JTimelineSlider positionSlider = null;
     private boolean available;
 
@@ -89,18 +108,53 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
     }
 
     public void open(Capture capture) {
+        if (capture.isVideo()) {
+            // Indexing keyframes and decoding the first frame can take seconds on long videos, so do it in the
+            // background, and only build the window (on the EDT) once the first frame is available
+            new Thread(() -> {
+                final VideoFrameDecoder decoder = new VideoFrameDecoder(capture.getOriginalFile());
+                BufferedImage firstFrame = decoder.getFrame(capture.getVideoLowerBoundMs(), FIRST_FRAME_TIMEOUT_MS);
+                if (firstFrame == null) {
+                    // Fall back to a one-shot decode
+                    firstFrame = Jaffree.grabImage(capture.getOriginalFile(), capture.getVideoLowerBoundMs());
+                }
+                final BufferedImage originalImage = firstFrame;
+                SwingUtilities.invokeLater(() -> {
+                    videoFrameDecoder = decoder;
+                    open(capture, originalImage);
+                });
+            }).start();
+        }
+        else {
+            BufferedImage originalImage = capture.getOriginalImage();
+            if (originalImage == null) {
+                try {
+                    originalImage = ImageIO.read(capture.getOriginalFile());
+                }
+                catch (IOException e) {
+                    UI.alertException(this, "Load error", "Error loading capture file '" + capture.getOriginalFile() + "'", e, logger);
+                    originalImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+                }
+            }
+            open(capture, originalImage);
+        }
+    }
+
+    /**
+     * Builds and shows the window
+     *
+     * @param originalImage the captured image or, for a video, the frame at its lower bound
+     */
+    private void open(Capture capture, BufferedImage originalImage) {
         this.capture = capture;
 
         starWindow.addTargetChangeListener(this);
 
         undoManager = new UndoManager();
 
-        videoImageUpdateMs = Prefs.getAsInt(Prefs.Key.VIDEO_IMAGE_UPDATE_DELAY_MS);
-
         // Prepare main image panel first because it will be needed in ActionHandlers
-        BufferedImage originalImage;
         if (capture.isVideo()) {
-            originalImage = Jaffree.grabImage(capture.getOriginalFile(), capture.getVideoLowerBoundMs());
+            displayedVideoImagePositionMs = (int) capture.getVideoLowerBoundMs();
 
             // For video playback, JavaFX could be an option...:
             // (from https://stackoverflow.com/questions/52038982/how-to-play-mp4-video-in-java-swing-app )
@@ -133,19 +187,6 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
 //            videoPanel.setLayout(new BorderLayout());
 //            videoPanel.add(VFXPanel, BorderLayout.CENTER);
 //            player.play();
-
-        }
-        else {
-            originalImage = capture.getOriginalImage();
-            if (originalImage == null) {
-                try {
-                    originalImage = ImageIO.read(capture.getOriginalFile());
-                }
-                catch (IOException e) {
-                    UI.alertException(this, "Load error", "Error loading capture file '" + capture.getOriginalFile() + "'", e, logger);
-                    originalImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
-                }
-            }
         }
         imagePane = new ImageEditorPane(this, originalImage);
 
@@ -258,27 +299,25 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
                     (int) capture.getVideoHigherBoundMs(),
                     (int) capture.getVideoLowerBoundMs());
             positionSlider.setMajorTickSpacing(1000);
+            // Show where recording was paused and resumed
+            positionSlider.setMarkers(capture.getVideoSegmentBoundariesMs().stream()
+                    .filter(boundaryMs -> boundaryMs < capture.getVideoDurationMs())
+                    .mapToInt(Long::intValue)
+                    .toArray());
+            filmstripGenerator = new FilmstripGenerator(capture.getOriginalFile(), capture.getId(), capture.getVideoDurationMs());
+            positionSlider.setFilmstrip(filmstripGenerator.getFilmstrip());
+            filmstripGenerator.start();
             transportPanel.add(positionSlider, BorderLayout.CENTER);
             positionSlider.addChangeListener(e -> {
                 JTimelineSlider source = (JTimelineSlider)e.getSource();
                 Duration position = Duration.ofMillis(positionSlider.getValue());
                 positionLabel.setText(String.format("%02d:%02d:%02d", position.toHours(), position.toMinutesPart(), position.toSecondsPart()));
+                // Frames are cached and decoded ahead, so the image can follow the thumb during drag
                 if (source.getAdjustingThumbIndex() != THUMB_NONE) {
-                    // During drag, wait for value to settle
-                    if (videoImageUpdateTimer == null) {
-                        videoImageUpdateTimer = new Timer(videoImageUpdateMs, e1 -> updateVideoImage(capture, positionSlider.getThumbValue(positionSlider.getAdjustingThumbIndex())));
-                    }
-                    else {
-                        videoImageUpdateTimer.stop();
-                    }
-                    videoImageUpdateTimer.start();
+                    updateVideoImage(positionSlider.getThumbValue(positionSlider.getAdjustingThumbIndex()));
                 }
                 else {
-                    if (videoImageUpdateTimer != null) {
-                        videoImageUpdateTimer.stop();
-                        videoImageUpdateTimer = null;
-                        updateVideoImage(capture, positionSlider.getValue());
-                    }
+                    updateVideoImage(positionSlider.getValue());
                 }
             });
 
@@ -413,9 +452,13 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
 
         starWindow.removeTargetChangeListener(this);
 
-        if (videoImageUpdateTimer != null) {
-            videoImageUpdateTimer.stop();
-            videoImageUpdateTimer = null;
+        if (videoFrameDecoder != null) {
+            videoFrameDecoder.close();
+            videoFrameDecoder = null;
+        }
+        if (filmstripGenerator != null) {
+            filmstripGenerator.stop();
+            filmstripGenerator = null;
         }
 
         // free all references so they are garbage collected
@@ -439,13 +482,17 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
         this.available = available;
     }
 
-    private void updateVideoImage(Capture capture, int positionInMillis) {
+    private void updateVideoImage(int positionInMillis) {
         if (positionInMillis != displayedVideoImagePositionMs) {
-            // update image
-            imagePane.setCapturedImg(Jaffree.grabImage(capture.getOriginalFile(), positionInMillis));
-            imagePane.invalidate();
-            imagePane.repaint();
             displayedVideoImagePositionMs = positionInMillis;
+            // Completed immediately if cached, or later by the decoder (unless superseded by a newer request)
+            videoFrameDecoder.requestFrame(positionInMillis).thenAccept(image -> SwingUtilities.invokeLater(() -> {
+                if (imagePane != null && positionInMillis == displayedVideoImagePositionMs) {
+                    imagePane.setCapturedImg(image);
+                    imagePane.invalidate();
+                    imagePane.repaint();
+                }
+            }));
         }
     }
 
@@ -477,6 +524,13 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
             }
         }
 
+        if (Prefs.isTrue(Prefs.Key.USE_SMALL_BUTTONS_FOR_ONLINE_TARGETS)) {
+            // There is no "Share..." menu to offer it
+            LowerButton severalTargetsButton = new LowerButton("Several...", UI.createIcon(getClass().getResource("/img/icon/share.png"), 16, 16, UI.ICON_ENABLED_COLOR));
+            severalTargetsButton.addActionListener(e -> onExportToSeveralTargets());
+            buttonBar.add(severalTargetsButton);
+        }
+
         final JButton cancelButton = new LowerButton("Cancel", UI.createIcon(getClass().getResource("/img/icon/cancel.png"), 16, 16, UI.ICON_ENABLED_COLOR));
         cancelButton.addActionListener(e -> onCancel());
         buttonBar.add(cancelButton);
@@ -614,19 +668,24 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
 
 
     private void onExport(Target target) {
-        // 1. Render image and overlays, but no handles
+        onExport(List.of(target));
+    }
+
+    /**
+     * Exports the capture to the given targets, each in its own export job.
+     * The capture is rendered only once, by the first job to start, and the other jobs wait for it before exporting
+     * the same rendered file. The capture is saved to history once, when all jobs have ended.
+     *
+     * @param targets the targets to export the capture to
+     */
+    private void onExport(List<Target> targets) {
+        // 1. Collect what needs to be rendered. Actual rendering is performed by the export jobs
         imagePane.setSelectedOverlay(null);
+        final BufferedImage originalImage = imagePane.getCapturedImg();
         if (capture.isVideo()) {
             capture.setVideoLowerBoundMs(positionSlider.getLower());
             capture.setVideoHigherBoundMs(positionSlider.getHigher());
         }
-        else {
-            BufferedImage renderedImage = new BufferedImage(imagePane.getWidth(), imagePane.getHeight(), BufferedImage.TYPE_INT_RGB);
-            Graphics g = renderedImage.createGraphics();
-            imagePane.paint(g);
-            g.dispose();
-            capture.setRenderedImage(renderedImage);
-        }
 
         // Save name and overlays
         capture.setName(nameTextField.getText());
@@ -639,52 +698,224 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
         }
         capture.setOverlays(overlays);
 
-        // 2. Perform export
-        Exporter exporter = target.getExporter();
-
+        // 2. Prepare exports
         // Risk of memory leak: https://stackoverflow.com/questions/39437481/jframe-is-never-garbage-collected
         // ExportFrame should not hold any field
         logger.debug("Creating exportFrame");
         ExportFrame exportFrame = new ExportFrame(this);
 
-        logger.debug("Preparing exporter");
-        ExportContext exportContext = exporter.prepare(this, starWindow, exportFrame, capture, target);
-        if (exportContext != null) {
-            Thread exportThread = new Thread(() -> {
-                logger.debug("ExportThread: renderCapture");
-                renderCapture(capture);
-                logger.debug("ExportThread: exportCapture");
-                exporter.exportCapture(exportContext, capture, target);
-                logger.debug("ExportThread: done.");
-                // Close
-                close();
+        final Capture exportedCapture = capture;
+        final List<ExportJob> exportJobs = new ArrayList<>();
+        final List<ExportMonitor> exportMonitors = new ArrayList<>();
+        // Run by the first job to start. Others wait for it to complete, so it is only stopped if all jobs are cancelled
+        final FutureTask<Void> renderTask = new FutureTask<>(() -> renderCapture(exportedCapture, originalImage, exportMonitors, () -> isAllCancelled(exportJobs)), null);
+        // Videos re-encoded to fit a size limit, by limit in MB, so that targets with the same limit share them
+        final Map<Integer, FutureTask<File>> sizedFiles = new ConcurrentHashMap<>();
+        for (Target target : targets) {
+            Exporter exporter = target.getExporter();
+            final ExportFrame.TargetMonitor targetMonitor = exportFrame.addTarget(target);
+            logger.debug("Preparing exporter for " + target);
+            ExportContext exportContext = exporter.prepare(this, starWindow, targetMonitor, exportedCapture, target);
+            if (exportContext == null) {
+                logger.info("Export to " + target + " aborted");
+                exportFrame.removeTarget(targetMonitor);
+                continue;
+            }
+            exportContext.setHistorySaveDeferred(true);
+            final ExportJob exportJob = new ExportJob(exportedCapture, target, exportContext, () -> {
+                logger.debug("ExportJob: renderCapture");
+                renderTask.run();
+                try {
+                    renderTask.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while rendering", e);
+                }
+                catch (ExecutionException e) {
+                    throw new RuntimeException("Error rendering capture", e.getCause());
+                }
+                // The context now holds the monitor of the job, which follows its progress
+                fitToTarget(exportedCapture, target, exportContext, sizedFiles, exportJobs);
+                if (exportContext.getCancellationToken().isCancelled()) {
+                    // The job reports the cancellation itself
+                    return;
+                }
+                logger.debug("ExportJob: exportCapture");
+                exporter.exportCapture(exportContext, exportedCapture, target);
+                logger.debug("ExportJob: done.");
             });
-            logger.debug("Starting export thread");
-            exportThread.start();
-            logger.debug("Hiding capture window");
-            setVisible(false);
+            targetMonitor.setExportJob(exportJob);
+            exportJobs.add(exportJob);
+            exportMonitors.add(exportContext.getExportMonitor());
         }
-        else {
+
+        if (exportJobs.isEmpty()) {
             logger.info("Export aborted");
             logger.debug("Closing this window");
             exportFrame.close();
+            return;
+        }
+
+        // 3. Perform exports
+        final int previousExportCount = exportedCapture.getExports().size();
+        final AtomicInteger remainingJobs = new AtomicInteger(exportJobs.size());
+        for (ExportJob exportJob : exportJobs) {
+            exportJob.setEndAction(() -> {
+                if (remainingJobs.decrementAndGet() == 0) {
+                    onExportsEnded(exportedCapture, previousExportCount);
+                }
+            });
         }
+        exportFrame.open();
+        logger.debug("Submitting export jobs");
+        for (ExportJob exportJob : exportJobs) {
+            ExportScheduler.submit(exportJob);
+        }
+        logger.debug("Hiding capture window");
+        setVisible(false);
         logger.debug("CaptureEditingFrame.onExport returning");
     }
 
-    private void renderCapture(Capture capture) {
+    /**
+     * Called once all export jobs of the capture have ended
+     */
+    private void onExportsEnded(Capture capture, int previousExportCount) {
+        if (capture.getExports().size() == previousExportCount) {
+            // All exports failed or were cancelled. The export frame normally shows this window again. If it did not
+            // (e.g. jobs cancelled before they started, from the tray menu), nothing can show this hidden window
+            // anymore, so close it to return it to the pool
+            SwingUtilities.invokeLater(() -> {
+                if (this.capture == capture && !isVisible()) {
+                    logger.debug("Closing capture window left hidden by cancelled exports");
+                    close();
+                }
+            });
+            return;
+        }
+        // Store capture in history once, with all its exports
+        HistorySaver.save(this, capture);
+        // Close
+        close();
+    }
+
+    /**
+     * Renders the capture, for all targets
+     *
+     * @param exportMonitors the monitors of all export jobs, which all display the rendering progress
+     * @param cancelRequest  tells if the rendering is not needed anymore, in which case it is stopped
+     */
+    private void renderCapture(Capture capture, BufferedImage originalImage, List<ExportMonitor> exportMonitors, BooleanSupplier cancelRequest) {
+        final ObjIntConsumer<String> progress = (state, percent) -> {
+            for (ExportMonitor exportMonitor : exportMonitors) {
+                exportMonitor.log(state, percent);
+            }
+        };
         if (capture.isVideo()) {
             // By default, just point to the original file
             File renderedFile = capture.getOriginalFile();
 
-            if (capture.getVideoLowerBoundMs() > 0 || capture.getVideoHigherBoundMs() < capture.getVideoDurationMs()) {
-                // TODO should also "render" video file if it has overlays
+            if (!capture.getOverlays().isEmpty()) {
+                // Overlays are rendered once, then composited over each frame while trimming
+                renderedFile = new File(Ginj.getTempDir(), capture.getId() + "_render" +  Misc.VIDEO_EXTENSION);
+                final BufferedImage layerImage = CaptureRenderer.renderOverlayLayer(capture, originalImage.getWidth(), originalImage.getHeight());
+                try {
+                    progress.accept("Rendering video", 0);
+                    if (Prefs.isTrue(Prefs.Key.EXPORT_PARALLEL_ENCODING)) {
+                        Jaffree.renderWithLayerInParallel(capture.getOriginalFile(), capture.getVideoLowerBoundMs(), capture.getVideoHigherBoundMs(), layerImage, renderedFile,
+                                percent -> progress.accept("Rendering video", percent), cancelRequest);
+                    }
+                    else {
+                        Jaffree.renderWithLayer(capture.getOriginalFile(), capture.getVideoLowerBoundMs(), capture.getVideoHigherBoundMs(), layerImage, renderedFile, cancelRequest);
+                    }
+                }
+                catch (IOException e) {
+                    UI.alertException(this, "Render error", "Could not render overlays over the video. It will be exported without them.", e, logger);
+                    renderedFile = capture.getOriginalFile();
+                }
+            }
+            else if (capture.getVideoLowerBoundMs() > 0 || capture.getVideoHigherBoundMs() < capture.getVideoDurationMs()) {
                 renderedFile = new File(Ginj.getTempDir(), capture.getId() + "_trim" +  Misc.VIDEO_EXTENSION);
-                Jaffree.trim(capture.getOriginalFile(), capture.getVideoLowerBoundMs(), capture.getVideoHigherBoundMs(), renderedFile);
+                Jaffree.smartTrim(capture.getOriginalFile(), capture.getVideoLowerBoundMs(), capture.getVideoHigherBoundMs(), renderedFile);
             }
 
             capture.setRenderedFile(renderedFile);
         }
+        else {
+            capture.setRenderedImage(CaptureRenderer.render(capture, originalImage));
+        }
+    }
+
+    /**
+     * Re-encodes the rendered video if it is larger than allowed by the target, and sets the result in the context.
+     * GIFs are converted from the rendered video, so a limit makes no sense for them
+     *
+     * @param sizedFiles the encodings of the video for the targets of the same capture, by size limit in MB
+     * @param exportJobs the export jobs of the capture. An encoding is stopped if all jobs sharing it are cancelled
+     */
+    private void fitToTarget(Capture capture, Target target, ExportContext exportContext, Map<Integer, FutureTask<File>> sizedFiles, List<ExportJob> exportJobs) {
+        final Integer maxVideoSizeMb = target.getSettings().getMaxVideoSizeMb();
+        final File renderedFile = capture.getRenderedFile();
+        if (!capture.isVideo() || maxVideoSizeMb == null || maxVideoSizeMb <= 0 || target.getSettings().getPreferredVideoFileFormat() == ExportSettings.VideoFileFormat.GIF
+                || renderedFile.length() <= maxVideoSizeMb * 1024L * 1024L) {
+            return;
+        }
+        if (exportContext.getCancellationToken() != null && exportContext.getCancellationToken().isCancelled()) {
+            // No need to encode, the exporter will notice the cancellation
+            return;
+        }
+        final ExportMonitor exportMonitor = exportContext.getExportMonitor();
+        // Only targets with the same limit share the encoding: the first one runs it, and the others wait for its result
+        final FutureTask<File> sizingTask = sizedFiles.computeIfAbsent(maxVideoSizeMb, limitMb -> new FutureTask<>(() -> {
+            final File sizedFile = new File(Ginj.getTempDir(), capture.getId() + "_sized_" + limitMb + Misc.VIDEO_EXTENSION);
+            final long durationMs = renderedFile.equals(capture.getOriginalFile()) ? capture.getVideoDurationMs() : capture.getVideoHigherBoundMs() - capture.getVideoLowerBoundMs();
+            final List<ExportJob> sharingJobs = new ArrayList<>();
+            for (ExportJob exportJob : exportJobs) {
+                if (limitMb.equals(exportJob.getTarget().getSettings().getMaxVideoSizeMb())) {
+                    sharingJobs.add(exportJob);
+                }
+            }
+            try {
+                exportMonitor.log("Reducing video size", 0);
+                Jaffree.encodeToSize(renderedFile, durationMs, limitMb * 1024L * 1024L, sizedFile, percent -> exportMonitor.log("Reducing video size", percent),
+                        () -> isAllCancelled(sharingJobs));
+                return sizedFile;
+            }
+            catch (CancellationException e) {
+                logger.info("Reduction of video size to " + limitMb + "MB cancelled");
+                return null;
+            }
+            catch (IOException | RuntimeException e) {
+                UI.alertException(this, "Render error", "Could not reduce the video to " + limitMb + "MB. It will be exported at its current size.", e, logger);
+                return null;
+            }
+        }));
+        exportMonitor.log("Reducing video size");
+        sizingTask.run();
+        try {
+            final File sizedFile = sizingTask.get();
+            if (sizedFile != null) {
+                exportContext.setRenderedFile(sizedFile);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            logger.error("Error reducing video size", e.getCause());
+        }
+    }
+
+    /**
+     * @return true if all given jobs are cancelled, so that the work they share can be stopped
+     */
+    private static boolean isAllCancelled(List<ExportJob> exportJobs) {
+        for (ExportJob exportJob : exportJobs) {
+            if (!exportJob.getCancellationToken().isCancelled()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void onCancel() {
@@ -709,6 +940,10 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
             }
         }
 
+        menuItem = new JMenuItem("Several targets...", UI.createIcon(getClass().getResource("/img/icon/share.png"), 24, 24));
+        menuItem.addActionListener(e -> onExportToSeveralTargets());
+        popup.add(menuItem);
+
         menuItem = new JMenuItem("Manage targets...", UI.createIcon(getClass().getResource("/img/icon/share.png"), 24, 24));
         menuItem.addActionListener(e -> onConfigureTargets());
         popup.add(menuItem);
@@ -716,6 +951,31 @@ public class CaptureEditingFrame extends JFrame implements TargetListChangeListe
         popup.show(button, button.getWidth() / 2, button.getHeight() / 2);
     }
 
+    private void onExportToSeveralTargets() {
+        JPanel targetPanel = new JPanel(new GridLayout(0, 1));
+        Map<JCheckBox, Target> targetCheckBoxes = new LinkedHashMap<>();
+        for (Target target : Ginj.getTargetPrefs().getTargetList()) {
+            Exporter exporter = target.getExporter();
+            if ((capture.isVideo() && exporter.isVideoSupported()) || (!capture.isVideo() && exporter.isImageSupported())) {
+                JCheckBox checkBox = new JCheckBox(target.getDisplayName());
+                targetPanel.add(checkBox);
+                targetCheckBoxes.put(checkBox, target);
+            }
+        }
+        if (JOptionPane.OK_OPTION != JOptionPane.showConfirmDialog(this, targetPanel, "Export to several targets", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE)) {
+            return;
+        }
+        List<Target> targets = new ArrayList<>();
+        for (Map.Entry<JCheckBox, Target> entry : targetCheckBoxes.entrySet()) {
+            if (entry.getKey().isSelected()) {
+                targets.add(entry.getValue());
+            }
+        }
+        if (!targets.isEmpty()) {
+            onExport(targets);
+        }
+    }
+
     private void onConfigureTargets() {
         starWindow.openTargetManagementFrame();
     }
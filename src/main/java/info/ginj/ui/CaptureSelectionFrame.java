@@ -5,11 +5,13 @@ import info.ginj.Ginj;
 import info.ginj.jna.DisplayInfo;
 import info.ginj.model.Capture;
 import info.ginj.model.Prefs;
+import info.ginj.model.TiledScreenCapture;
 import info.ginj.ui.component.BorderedLabel;
 import info.ginj.ui.component.DoubleBorderedPanel;
 import info.ginj.ui.component.LowerButton;
 import info.ginj.ui.component.LowerButtonBar;
 import info.ginj.util.Coords;
+import info.ginj.util.FrameTimeCounter;
 import info.ginj.util.Jaffree;
 import info.ginj.util.Misc;
 import info.ginj.util.UI;
@@ -25,9 +27,10 @@ import java.awt.font.LineMetrics;
 import java.awt.font.TextAttribute;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.image.BufferedImage;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -41,10 +44,11 @@ import java.util.Map;
  * If secondary displays are positioned to the right and/or below it, all their points are in the (+,+) quadrant,
  * but if a secondary display is above or to the left, one or both of its coordinates will be negative.
  * The logic is that all physical displays' bounds are first union'ed to create a mega-rectangle encompassing all displays.
- * Then, that mega-rectangle is captured to create a mega-image.
+ * Then, each display is captured separately (and in parallel) to create one "tile" per display. Capturing the
+ * mega-rectangle as a single mega-image would waste memory on the dead space between displays of different sizes.
  * Finally, a mega-window is created and displayed at the top-left corner of the mega-rectangle (maybe in negative space)
- * and painted with the mega-image, so it gives the impression you're selecting part of the screen while in fact
- * you're selecting part of the already captured image.
+ * and painted with the tiles, so it gives the impression you're selecting part of the screen while in fact
+ * you're selecting part of the already captured images.
  * Note that it is possible that the top left corner in question is outside of all displays (e.g. the leftmost display
  * could be a small one with its bottom aligned with a large central one)
  * Anyway, inside that mega-window, the whole image is in a positive coordinate system, so an offset must be applied
@@ -78,7 +82,8 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
 
 
     // Current state
-    private BufferedImage capturedScreenImg;
+    private TiledScreenCapture screenCapture;
+    private long openRequestNanos; // for capture-to-first-paint latency measurement
     private Point rememberedReferenceOffset = null; // filled when selecting or dragging
     private int currentOperation = OPERATION_NONE;
     private boolean isInitialSelectionDone;
@@ -89,12 +94,15 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
     private JButton videoButton;
     private KeyEventDispatcher keyEventDispatcher;
     private MouseAdapter mouseAdapter;
+    private CaptureMainPane captureMainPane;
+    private boolean isDirectToClipboard = false;
 
     public CaptureSelectionFrame(StarWindow starWindow) {
         super(starWindow, Ginj.getAppName() + " Selection");
     }
 
     public void open() {
+        openRequestNanos = System.nanoTime();
         super.open();
 
         addKeyboardBehaviour();
@@ -103,8 +111,20 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
         resetSelection();
     }
 
+    /**
+     * @param isDirectToClipboard if true, the captured image is copied straight to the clipboard instead of being opened in the editor
+     */
+    public void setDirectToClipboard(boolean isDirectToClipboard) {
+        this.isDirectToClipboard = isDirectToClipboard;
+    }
+
     public void close() {
-        capturedScreenImg = null;
+        if (captureMainPane != null) {
+            logger.debug("Selection frame times: " + captureMainPane.getFrameTimeCounter());
+            captureMainPane.releaseImages();
+            captureMainPane = null;
+        }
+        screenCapture = null;
 
         removeKeyboardBehaviour();
         removeMouseBehaviour();
@@ -137,32 +157,79 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
     }
 
     protected CaptureMainPane createContentPane() {
-        return new CaptureMainPane();
+        captureMainPane = new CaptureMainPane();
+        return captureMainPane;
     }
 
 
+    /**
+     * The main pane paints the captured tiles, dimmed outside the selection, and "decorations" above them:
+     * the selection rectangle, the cross lines and the cursor box.
+     * To keep mouse tracking fluid on large desktops, mouse events do not repaint the whole pane but only invalidate
+     * the regions where decorations were painted previously and where they will be painted now.
+     */
     public class CaptureMainPane extends JPanel {
+        // Margin around decorations to account for stroke width and antialiasing
+        private static final int DECORATION_MARGIN = 3;
+
         // Caching
-        private final Image dimmedScreenImg;
+        // Dimmed & greyscale version of each tile, filled lazily in background. Only accessed from the EDT
+        private final List<Image> dimmedTileImgs = new ArrayList<>();
         private Font font;
         private FontRenderContext fontRenderContext;
+        private boolean isFirstPaintDone = false;
+
+        // Dirty region tracking
+        private Decorations currentDecorations; // what is (or is about to be) painted on screen
+        private final List<Rectangle> dirtyRegions = new ArrayList<>();
+        private boolean isPaintScheduled = false;
+        private final FrameTimeCounter frameTimeCounter = new FrameTimeCounter();
+        private boolean isPaintingDirtyRegions = false;
 
         public CaptureMainPane() {
             try {
-                Robot robot = new Robot();
-
 // Simulate small screen to be able to debug in parallel of "full screen" capture window on top
 // allDisplaysBounds = new Rectangle(0,0,800,600);
-                logger.info("Capturing area: " + allDisplaysBounds);
-                capturedScreenImg = robot.createScreenCapture(allDisplaysBounds);
+                logger.info("Capturing areas: " + visibleAreas);
+                screenCapture = TiledScreenCapture.capture(visibleAreas, allDisplaysBounds);
+                logger.info("Captured " + screenCapture.getPixelCount() + " pixels instead of " + ((long) allDisplaysBounds.width * allDisplaysBounds.height) + " for the whole area.");
                 logRam("After capture");
             }
             catch (AWTException e) {
                 logger.error("Error performing robot capture", e);
             }
 
-            // Prepared a dimmed & greyscale version to be used for "unselected area"
-            dimmedScreenImg = UI.makeDimmedImage(capturedScreenImg);
+            // Prepare a dimmed & greyscale version of each tile to be used for "unselected area".
+            // The greyscale conversion of a large desktop takes a while, so it is performed in background, tile by tile,
+            // and the selection is shown immediately. Until a dimmed tile is ready, a cheap dim is composited at paint time.
+            prepareDimmedTilesInBackground(screenCapture);
+        }
+
+        private void prepareDimmedTilesInBackground(TiledScreenCapture capture) {
+            final List<TiledScreenCapture.Tile> tiles = capture.getTiles();
+            for (int i = 0; i < tiles.size(); i++) {
+                dimmedTileImgs.add(null);
+            }
+            Thread dimmingThread = new Thread(() -> {
+                final long startNanos = System.nanoTime();
+                for (int i = 0; i < tiles.size(); i++) {
+                    final TiledScreenCapture.Tile tile = tiles.get(i);
+                    final Image dimmedTileImg = UI.makeDimmedImage(tile.getImage());
+                    final int tileIndex = i;
+                    SwingUtilities.invokeLater(() -> {
+                        // Ignore result if the frame was closed or reopened in the meantime
+                        if (screenCapture == capture) {
+                            dimmedTileImgs.set(tileIndex, dimmedTileImg);
+                            if (selection != null) {
+                                repaint(tile.getBounds());
+                            }
+                        }
+                    });
+                }
+                logger.debug("Dimmed tiles ready after " + (System.nanoTime() - startNanos) / 1_000_000 + "ms (time the selection window used to wait for before showing up)");
+            });
+            dimmingThread.setDaemon(true);
+            dimmingThread.start();
         }
 
         @Override
@@ -170,10 +237,95 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
             return new Dimension(allDisplaysBounds.width, allDisplaysBounds.height);
         }
 
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g.create();
+        /**
+         * Drops references to the (large) screen images, so that they can be garbage collected even if
+         * the pane itself is still referenced somewhere (e.g. by a pending event)
+         */
+        public void releaseImages() {
+            dimmedTileImgs.clear();
+            currentDecorations = null;
+            dirtyRegions.clear();
+        }
+
+        /**
+         * @return the statistics of the time taken to paint after mouse events
+         */
+        public FrameTimeCounter getFrameTimeCounter() {
+            return frameTimeCounter;
+        }
+
+        /**
+         * Called when the selection, the mouse position or the keyboard state changed.
+         * Only the regions covered by the previous and new decorations are repainted, except if the selection
+         * appeared or disappeared, in which case the whole screen switches between dimmed and non-dimmed.
+         */
+        public void updateDecorations() {
+            final Decorations previousDecorations = currentDecorations;
+            currentDecorations = computeDecorations();
+            if (previousDecorations == null || (previousDecorations.selectionToDraw == null) != (currentDecorations.selectionToDraw == null)) {
+                dirtyRegions.clear();
+                repaint();
+                return;
+            }
+            dirtyRegions.addAll(previousDecorations.getRegions());
+            dirtyRegions.addAll(currentDecorations.getRegions());
+            if (!isPaintScheduled) {
+                // Coalesce all events received until the EDT is idle into a single "frame"
+                isPaintScheduled = true;
+                SwingUtilities.invokeLater(this::paintDirtyRegions);
+            }
+        }
+
+        private void paintDirtyRegions() {
+            isPaintScheduled = false;
+            if (!isShowing()) {
+                dirtyRegions.clear();
+                return;
+            }
+            // Note: repaint(Rectangle) would have the RepaintManager union all regions into their bounding box,
+            // which covers the whole screen as soon as cross lines are involved. So paint each region separately
+            final long startNanos = frameTimeCounter.start();
+            isPaintingDirtyRegions = true;
+            for (Rectangle region : mergeRegions(dirtyRegions)) {
+                paintImmediately(region);
+            }
+            isPaintingDirtyRegions = false;
+            dirtyRegions.clear();
+            frameTimeCounter.stop(startNanos);
+        }
+
+        /**
+         * Merge regions that overlap enough so that painting their union is not more expensive than painting them separately
+         */
+        private List<Rectangle> mergeRegions(List<Rectangle> regions) {
+            List<Rectangle> merged = new ArrayList<>();
+            for (Rectangle region : regions) {
+                if (!region.isEmpty()) merged.add(new Rectangle(region));
+            }
+            boolean hasMerged = true;
+            while (hasMerged) {
+                hasMerged = false;
+                for (int i = 0; i < merged.size() && !hasMerged; i++) {
+                    for (int j = i + 1; j < merged.size() && !hasMerged; j++) {
+                        final Rectangle a = merged.get(i);
+                        final Rectangle b = merged.get(j);
+                        final Rectangle union = a.union(b);
+                        if ((long) union.width * union.height <= (long) a.width * a.height + (long) b.width * b.height) {
+                            merged.set(i, union);
+                            merged.remove(j);
+                            hasMerged = true;
+                        }
+                    }
+                }
+            }
+            return merged;
+        }
+
+        /**
+         * Determines what must be painted above the captured image according to the current state
+         */
+        private Decorations computeDecorations() {
+            Decorations decorations = new Decorations();
 
             Point mousePosition;
             if (OS.IS_WINDOWS && Prefs.isTrue(Prefs.Key.USE_JNA_FOR_WINDOWS_MONITORS)) {
@@ -201,43 +353,15 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
                 // If the bounds extend to negative coordinates, fix the (always >0) returned position
                 mousePosition.translate(-allDisplaysBounds.x, -allDisplaysBounds.y);
             }
+            decorations.mousePosition = mousePosition;
 
-            Rectangle rectangleToDraw = null;
-
-            // Determine rectangle to draw (if any)
+            // Determine rectangle to draw (if any). Copy it as the selection is modified in place during drag
             if (selection != null) {
                 // Selection done
-                rectangleToDraw = selection;
+                decorations.selectionToDraw = new Rectangle(selection);
             }
 
-            if (rectangleToDraw != null) {
-                // Draw the dimmed image as background
-                g2d.drawImage(dimmedScreenImg, 0, 0, this);
-
-                // Draw part of the original image over the dimmed image
-                g2d.setClip(rectangleToDraw);
-                g2d.drawImage(capturedScreenImg, 0, 0, this);
-                g2d.setClip(0, 0, allDisplaysBounds.width, allDisplaysBounds.height);
-
-                // Draw the selection rectangle
-                g2d.setColor(UI.AREA_SELECTION_COLOR);
-                g2d.setStroke(SELECTED_AREA_STROKE);
-                g2d.drawRect(rectangleToDraw.x, rectangleToDraw.y, rectangleToDraw.width, rectangleToDraw.height);
-            }
-            else {
-                // Draw the non-dimmed image on the whole screen
-                g2d.drawImage(capturedScreenImg, 0, 0, this);
-            }
-
-            if (!isInitialSelectionDone && mousePosition != null) {
-                // First selection in progress
-
-                // Draw cross lines
-                g2d.setColor(UI.AREA_SELECTION_COLOR);
-                g2d.setStroke(new BasicStroke(3));
-                g2d.drawLine(mousePosition.x, allDisplaysBounds.y, mousePosition.x, (int) allDisplaysBounds.getHeight());
-                g2d.drawLine(allDisplaysBounds.x, mousePosition.y, (int) allDisplaysBounds.getWidth(), mousePosition.y);
-            }
+            decorations.mustDrawCrossLines = !isInitialSelectionDone && mousePosition != null;
 
             // Determine cursorText to print in size box
             String cursorText = null;
@@ -248,16 +372,17 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
                     if (jnaPosition != null) {
                         cursorText += " / p=" + jnaPosition.x + "," + jnaPosition.y;
                     }
+                    cursorText += String.format(Locale.US, " / %.1fms", frameTimeCounter.getLastMs());
                 }
                 else {
-                    if (rectangleToDraw == null) {
+                    if (decorations.selectionToDraw == null) {
                         // No (partial) selection yet, show screen size
                         // TODO : "capturedArea" to be replaced by "hovered window" when window detection is implemented
                         cursorText = allDisplaysBounds.width + " x " + allDisplaysBounds.height;
                     }
                     else {
                         // We're dragging, show current size
-                        cursorText = rectangleToDraw.width + " x " + rectangleToDraw.height;
+                        cursorText = decorations.selectionToDraw.width + " x " + decorations.selectionToDraw.height;
                     }
                 }
             }
@@ -266,20 +391,16 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
             }
 
             if (cursorText != null && mousePosition != null) {
-                // Use antialiasing
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
                 // Prepare font
                 if (font == null) {
-                    font = g2d.getFont();
-                    fontRenderContext = g2d.getFontRenderContext();
+                    font = getFont();
+                    fontRenderContext = getFontMetrics(font).getFontRenderContext();
                     Map<TextAttribute, Object> attributes = new HashMap<>();
                     attributes.put(TextAttribute.FAMILY, font.getFamily());
                     attributes.put(TextAttribute.WEIGHT, TextAttribute.WEIGHT_EXTRABOLD);
                     attributes.put(TextAttribute.SIZE, font.getSize() * 0.9);
                     font = Font.getFont(attributes);
                 }
-                g2d.setFont(font);
 
                 // Compute text size
                 int textWidth = (int) font.getStringBounds(cursorText, fontRenderContext).getWidth();
@@ -297,19 +418,133 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
                     cursorBoxY = mousePosition.y - CURSOR_BOX_OFFSET - CURSOR_BOX_HEIGHT;
                 }
 
+                decorations.cursorText = cursorText;
+                decorations.cursorBox = new Rectangle(cursorBoxX, cursorBoxY, cursorBoxWidth, CURSOR_BOX_HEIGHT);
                 // Compute text position
-                int textX = cursorBoxX + (cursorBoxWidth - textWidth) / 2;
-                int textY = cursorBoxY + (int) ((CURSOR_BOX_HEIGHT + textHeight) / 2 - ln.getDescent());
+                decorations.textLocation = new Point(cursorBoxX + (cursorBoxWidth - textWidth) / 2, cursorBoxY + (int) ((CURSOR_BOX_HEIGHT + textHeight) / 2 - ln.getDescent()));
+            }
+
+            return decorations;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            final long startNanos = frameTimeCounter.start();
+            super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g.create();
+
+            if (currentDecorations == null || !isPaintingDirtyRegions) {
+                // Full repaint (first paint, window exposed, etc.): take the current state into account
+                currentDecorations = computeDecorations();
+            }
+            final Decorations decorations = currentDecorations;
+            final Rectangle rectangleToDraw = decorations.selectionToDraw;
+            final Rectangle clipBounds = g2d.getClipBounds() != null ? g2d.getClipBounds() : new Rectangle(0, 0, allDisplaysBounds.width, allDisplaysBounds.height);
+
+            // Area between displays (if any) is not captured
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(clipBounds.x, clipBounds.y, clipBounds.width, clipBounds.height);
+
+            if (rectangleToDraw != null) {
+                // Draw the dimmed tiles as background
+                final List<TiledScreenCapture.Tile> tiles = screenCapture.getTiles();
+                for (int i = 0; i < tiles.size(); i++) {
+                    final Rectangle tileBounds = tiles.get(i).getBounds();
+                    if (!tileBounds.intersects(clipBounds)) continue;
+                    if (dimmedTileImgs.get(i) != null) {
+                        g2d.drawImage(dimmedTileImgs.get(i), tileBounds.x, tileBounds.y, this);
+                    }
+                    else {
+                        // Not ready yet
+                        UI.drawQuickDimmedImage(g2d, tiles.get(i).getImage(), tileBounds.x, tileBounds.y, this);
+                    }
+                }
+
+                // Draw part of the original tiles over the dimmed ones
+                g2d.clip(rectangleToDraw);
+                screenCapture.paint(g2d, this);
+                g2d.setClip(clipBounds);
+
+                // Draw the selection rectangle
+                g2d.setColor(UI.AREA_SELECTION_COLOR);
+                g2d.setStroke(SELECTED_AREA_STROKE);
+                g2d.drawRect(rectangleToDraw.x, rectangleToDraw.y, rectangleToDraw.width, rectangleToDraw.height);
+            }
+            else {
+                // Draw the non-dimmed tiles on the whole screen
+                screenCapture.paint(g2d, this);
+            }
 
+            final Point mousePosition = decorations.mousePosition;
+            if (decorations.mustDrawCrossLines) {
+                // First selection in progress
+
+                // Draw cross lines
+                g2d.setColor(UI.AREA_SELECTION_COLOR);
+                g2d.setStroke(new BasicStroke(3));
+                g2d.drawLine(mousePosition.x, allDisplaysBounds.y, mousePosition.x, (int) allDisplaysBounds.getHeight());
+                g2d.drawLine(allDisplaysBounds.x, mousePosition.y, (int) allDisplaysBounds.getWidth(), mousePosition.y);
+            }
 
+            if (decorations.cursorText != null) {
+                // Use antialiasing
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setFont(font);
+
+                final Rectangle cursorBox = decorations.cursorBox;
                 g2d.setColor(UI.SELECTION_SIZE_BOX_COLOR);
-                g2d.fillRoundRect(cursorBoxX, cursorBoxY, cursorBoxWidth, CURSOR_BOX_HEIGHT, 4, 4);
+                g2d.fillRoundRect(cursorBox.x, cursorBox.y, cursorBox.width, cursorBox.height, 4, 4);
 
                 g2d.setColor(UI.AREA_SELECTION_COLOR);
-                g2d.drawString(cursorText, textX, textY);
+                g2d.drawString(decorations.cursorText, decorations.textLocation.x, decorations.textLocation.y);
             }
 
             g2d.dispose();
+
+            if (!isFirstPaintDone) {
+                isFirstPaintDone = true;
+                logger.info("Capture to first paint: " + (System.nanoTime() - openRequestNanos) / 1_000_000 + "ms");
+            }
+            else if (!isPaintingDirtyRegions) {
+                frameTimeCounter.stop(startNanos);
+            }
+        }
+
+        /**
+         * A snapshot of what is painted above the captured image.
+         * Painting a dirty region must use the same snapshot as the one used to compute that region,
+         * otherwise decorations could be painted partly at their old position, partly at their new one.
+         */
+        private class Decorations {
+            Point mousePosition;
+            Rectangle selectionToDraw;
+            boolean mustDrawCrossLines;
+            String cursorText;
+            Rectangle cursorBox;
+            Point textLocation;
+
+            /**
+             * @return the regions of the pane covered by these decorations
+             */
+            List<Rectangle> getRegions() {
+                List<Rectangle> regions = new ArrayList<>();
+                if (selectionToDraw != null) {
+                    // The whole selection, because its contents switch between dimmed and non-dimmed when it changes
+                    Rectangle region = new Rectangle(selectionToDraw);
+                    region.grow(SELECTED_AREA_STROKE_WIDTH + DECORATION_MARGIN, SELECTED_AREA_STROKE_WIDTH + DECORATION_MARGIN);
+                    regions.add(region);
+                }
+                if (mustDrawCrossLines) {
+                    regions.add(new Rectangle(mousePosition.x - DECORATION_MARGIN, 0, 2 * DECORATION_MARGIN + 1, allDisplaysBounds.height));
+                    regions.add(new Rectangle(0, mousePosition.y - DECORATION_MARGIN, allDisplaysBounds.width, 2 * DECORATION_MARGIN + 1));
+                }
+                if (cursorBox != null) {
+                    Rectangle region = new Rectangle(cursorBox);
+                    region.grow(DECORATION_MARGIN, DECORATION_MARGIN);
+                    regions.add(region);
+                }
+                return regions;
+            }
         }
     }
 
@@ -347,7 +582,7 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
 
                 @Override
                 public void mouseExited(MouseEvent e) {
-                    window.repaint();
+                    captureMainPane.updateDecorations();
                 }
 
                 @Override
@@ -404,7 +639,7 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
                         rememberedReferenceOffset = new Point(0, 0);
                         isInitialSelectionDone = false; // TODO redundant ?
                     }
-                    window.repaint();
+                    captureMainPane.updateDecorations();
                 }
 
                 @Override
@@ -418,7 +653,7 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
                     isInitialSelectionDone = true;
                     window.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
                     setActionPanelVisible(true);
-                    window.repaint();
+                    captureMainPane.updateDecorations();
                 }
 
                 @Override
@@ -459,7 +694,7 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
                         }
                     }
                     // Paint rectangle (and cross lines if making selection)
-                    window.repaint();
+                    captureMainPane.updateDecorations();
                 }
 
                 @Override
@@ -467,7 +702,7 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
                     if (selection == null) {
                         // Selection not done yet
                         // Paint cross lines
-                        window.repaint();
+                        captureMainPane.updateDecorations();
                     }
                     else {
                         // Selection done
@@ -603,7 +838,7 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
     }
 
     private Capture createNewCapture(boolean isVideo) {
-        Capture capture = new Capture(new SimpleDateFormat(Misc.DATETIME_FORMAT_PATTERN).format(new Date()));
+        Capture capture = new Capture(Capture.newId());
         capture.setVideo(isVideo);
         return capture;
     }
@@ -614,7 +849,17 @@ public class CaptureSelectionFrame extends AbstractAllDisplaysFrame {
 
     private void onCaptureImage() {
         final Rectangle croppedSelection = getCroppedSelection();
-        final BufferedImage capturedImg = capturedScreenImg.getSubimage(croppedSelection.x, croppedSelection.y, croppedSelection.width, croppedSelection.height);
+        // The cropped image is a compact copy, so the full screen tiles can be released by close()
+        final BufferedImage capturedImg = screenCapture.crop(croppedSelection);
+        // Remember the area in device coordinates, so it can be captured again without selection
+        final Rectangle region = new Rectangle(croppedSelection);
+        region.translate(allDisplaysBounds.x, allDisplaysBounds.y);
+        QuickClipboardCapture.setLastRegion(region);
+        if (isDirectToClipboard) {
+            QuickClipboardCapture.copyToClipboard(capturedImg);
+            close();
+            return;
+        }
         final Capture capture = createNewCapture(false);
         capture.setOriginalImage(capturedImg);
         final CaptureEditingFrame captureEditingFrame = CaptureEditingFrame.getInstance(starWindow);
@@ -1,7 +1,9 @@
 package info.ginj.ui;
 
 import info.ginj.Ginj;
+import info.ginj.export.ExportJob;
 import info.ginj.export.ExportMonitor;
+import info.ginj.model.Target;
 import info.ginj.ui.component.YellowLabel;
 import info.ginj.util.Misc;
 import info.ginj.util.UI;
@@ -10,21 +12,28 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * This "small" progress window is responsible for starting, monitoring, and controlling an export in background.
+ * This "small" progress window is responsible for monitoring and controlling exports in background.
+ * It shows one progress line per target the capture is exported to, each with its own Cancel button.
+ * The window closes itself when all exports have ended.
  */
-public class ExportFrame extends JFrame implements ExportMonitor {
+public class ExportFrame extends JFrame {
 
     private static final Logger logger = LoggerFactory.getLogger(ExportFrame.class);
     public static final String MSG_CANCELLATION_REQUESTED = "Cancellation requested";
 
-    private JLabel stateLabel;
-    private JLabel sizeLabel;
-    private BoundedRangeModel progressModel;
+    private static final int WIDTH = 280;
+    private static final int TARGET_HEIGHT = 70;
+
+    private final JPanel mainPanel;
     private Window parentWindow;
-    private boolean isCancelRequested = false;
-    private final JButton cancelButton;
+
+    // Current state
+    private final List<TargetMonitor> targetMonitors = new ArrayList<>();
+    private boolean isClosed = false;
 
     public ExportFrame(Window parentWindow) {
         super();
@@ -39,150 +48,283 @@ public class ExportFrame extends JFrame implements ExportMonitor {
         // Note: setDefaultLookAndFeelDecorated(true); must not have been called anywhere for this to work
         setUndecorated(true);
 
-        JPanel mainPanel = new JPanel();
+        mainPanel = new JPanel();
         mainPanel.setLayout(new GridBagLayout());
 
-        // Add state label
-        stateLabel = new YellowLabel("Exporting...");
-
-        GridBagConstraints c = new GridBagConstraints();
-        c.gridx = 0;
-        c.gridy = 0;
-        c.gridwidth = 2;
-        c.anchor = GridBagConstraints.WEST;
-        c.insets = new Insets(4, 16, 0, 16);
-        mainPanel.add(stateLabel, c);
-
-
-        // Add progress bar
-        progressModel = new DefaultBoundedRangeModel();
-        JProgressBar progressBar = new JProgressBar(progressModel);
-
-        c = new GridBagConstraints();
-        c.gridx = 0;
-        c.gridy = 1;
-        c.gridwidth = 1;
-        c.weightx = 1;
-        c.insets = new Insets(4, 16, 4, 16);
-        mainPanel.add(progressBar, c);
-
-        // Add cancel button
-        cancelButton = new JButton("Cancel");
-        cancelButton.addActionListener(e -> onCancel());
-
-        c = new GridBagConstraints();
-        c.gridx = 1;
-        c.gridy = 1;
-        c.gridwidth = 1;
-        c.weightx = 0;
-        c.insets = new Insets(0, 0, 0, 16);
-        mainPanel.add(cancelButton, c);
-
-        // Add size label
-        sizeLabel = new YellowLabel(" ");
-
-        c = new GridBagConstraints();
-        c.gridx = 0;
-        c.gridy = 2;
-        c.gridwidth = 2;
-        c.anchor = GridBagConstraints.WEST;
-        c.insets = new Insets(0, 16, 4, 16);
-        mainPanel.add(sizeLabel, c);
-
-
         // Add default "draggable window" behaviour
         UI.addDraggableWindowMouseBehaviour(this, mainPanel);
 
         getContentPane().add(mainPanel);
 
-        pack();
-        setSize(280, 70);
-
         UI.addEscKeyShortcut(this, e -> onCancel());
-
-        // Position window
-        Ginj.starWindow.positionFrameNextToStarIcon(this);
-
-        logger.debug("ExportFrame: setVisible(true)");
-        setVisible(true);
     }
 
-    @Override
-    public void log(String state, int progress, long currentSizeBytes, long totalSizeBytes) {
-        stateLabel.setText(state);
-        progressModel.setValue(progress);
-        sizeLabel.setText(Misc.getPrettySizeRatio(currentSizeBytes, totalSizeBytes));
+    /**
+     * Adds a progress line for an export to the given target
+     *
+     * @param target the target of the export
+     * @return the monitor to pass to the exporter of this target
+     */
+    public TargetMonitor addTarget(Target target) {
+        final TargetMonitor targetMonitor = new TargetMonitor(target, targetMonitors.size());
+        targetMonitors.add(targetMonitor);
+        return targetMonitor;
     }
 
-    @Override
-    public void log(String state, int progress, String sizeProgress) {
-        stateLabel.setText(state);
-        progressModel.setValue(progress);
-        sizeLabel.setText(sizeProgress);
+    /**
+     * Removes the progress line of an export that will not take place after all (e.g. aborted while being prepared)
+     */
+    public void removeTarget(TargetMonitor targetMonitor) {
+        targetMonitors.remove(targetMonitor);
+        targetMonitor.removeFromPanel();
     }
 
-    @Override
-    public void log(String state, int progress) {
-        stateLabel.setText(state);
-        progressModel.setValue(progress);
-    }
+    /**
+     * Shows the window, once all targets are added
+     */
+    public void open() {
+        final boolean showTargetNames = targetMonitors.size() > 1;
+        for (TargetMonitor targetMonitor : targetMonitors) {
+            targetMonitor.setShowTargetName(showTargetNames);
+        }
 
-    @Override
-    public void log(String state) {
-        stateLabel.setText(state);
+        pack();
+        setSize(WIDTH, TARGET_HEIGHT * targetMonitors.size());
+
+        // Position window
+        Ginj.starWindow.positionFrameNextToStarIcon(this);
+
+        logger.debug("ExportFrame: setVisible(true)");
+        setVisible(true);
     }
 
     private void onCancel() {
         logger.debug("ExportFrame.onCancel");
-        isCancelRequested = true;
-        if (MSG_CANCELLATION_REQUESTED.equals(stateLabel.getText())) {
-            logger.debug("(second call)");
-            // Second time "cancel" is called. Something weird happened... Closing?
-            // TODO prompt to send log
-            close();
-        }
-        else {
-            stateLabel.setText(MSG_CANCELLATION_REQUESTED);
-            cancelButton.setText("Close");
+        for (TargetMonitor targetMonitor : new ArrayList<>(targetMonitors)) {
+            targetMonitor.onCancel();
         }
     }
 
-    @Override
-    public boolean isCancelRequested() {
-        logger.debug("ExportFrame.isCancelRequested");
-        if (isCancelRequested) {
-            // This request is taken into account, close the monitor
-            close();
+    /**
+     * Called when a monitored export has ended. Closes the window when it was the last one
+     */
+    private synchronized void onTargetEnded() {
+        if (isClosed) {
+            return;
         }
-        return isCancelRequested;
-    }
-
-    @Override
-    public void complete(String state) {
-        logger.debug("ExportFrame.complete");
-        close();
-    }
-
-    @Override
-    public void failed(String state) {
-        logger.debug("ExportFrame.failed");
-        // "Reopen" the capture window
-        if (parentWindow != null) {
+        boolean hasSucceeded = false;
+        for (TargetMonitor targetMonitor : targetMonitors) {
+            if (!targetMonitor.isEnded) {
+                return;
+            }
+            hasSucceeded |= targetMonitor.isSucceeded;
+        }
+        if (!hasSucceeded && parentWindow != null) {
+            // "Reopen" the capture window
             logger.debug("ExportFrame: Showing parent Window");
             parentWindow.setVisible(true);
         }
         close();
     }
 
-    public void close() {
+    public synchronized void close() {
         logger.debug("ExportFrame.close");
-        stateLabel = null;
-        sizeLabel = null;
-        progressModel = null;
+        isClosed = true;
         parentWindow = null;
+        targetMonitors.clear();
 
         setVisible(false);
 
         dispose();
     }
+
+
+    /**
+     * The progress line of the export to one target
+     */
+    public class TargetMonitor implements ExportMonitor {
+        private final Target target;
+        private final JLabel stateLabel;
+        private final JLabel sizeLabel;
+        private final BoundedRangeModel progressModel;
+        private final JProgressBar progressBar;
+        private final JButton cancelButton;
+        private boolean showTargetName = false;
+        private ExportJob exportJob;
+
+        // Current state
+        private volatile boolean isCancelRequested = false;
+        private volatile boolean isEnded = false;
+        private volatile boolean isSucceeded = false;
+
+        private TargetMonitor(Target target, int index) {
+            this.target = target;
+
+            // Add state label
+            stateLabel = new YellowLabel("Exporting...");
+
+            GridBagConstraints c = new GridBagConstraints();
+            c.gridx = 0;
+            c.gridy = 3 * index;
+            c.gridwidth = 2;
+            c.anchor = GridBagConstraints.WEST;
+            c.insets = new Insets(4, 16, 0, 16);
+            mainPanel.add(stateLabel, c);
+
+
+            // Add progress bar
+            progressModel = new DefaultBoundedRangeModel();
+            progressBar = new JProgressBar(progressModel);
+
+            c = new GridBagConstraints();
+            c.gridx = 0;
+            c.gridy = 3 * index + 1;
+            c.gridwidth = 1;
+            c.weightx = 1;
+            c.insets = new Insets(4, 16, 4, 16);
+            mainPanel.add(progressBar, c);
+
+            // Add cancel button
+            cancelButton = new JButton("Cancel");
+            cancelButton.addActionListener(e -> onCancel());
+
+            c = new GridBagConstraints();
+            c.gridx = 1;
+            c.gridy = 3 * index + 1;
+            c.gridwidth = 1;
+            c.weightx = 0;
+            c.insets = new Insets(0, 0, 0, 16);
+            mainPanel.add(cancelButton, c);
+
+            // Add size label
+            sizeLabel = new YellowLabel(" ");
+
+            c = new GridBagConstraints();
+            c.gridx = 0;
+            c.gridy = 3 * index + 2;
+            c.gridwidth = 2;
+            c.anchor = GridBagConstraints.WEST;
+            c.insets = new Insets(0, 16, 4, 16);
+            mainPanel.add(sizeLabel, c);
+        }
+
+        /**
+         * @param exportJob the job monitored by this line, which is cancelled by the Cancel button
+         */
+        public void setExportJob(ExportJob exportJob) {
+            this.exportJob = exportJob;
+        }
+
+        private void setShowTargetName(boolean showTargetName) {
+            this.showTargetName = showTargetName;
+            setState(stateLabel.getText());
+        }
+
+        private void removeFromPanel() {
+            mainPanel.remove(stateLabel);
+            mainPanel.remove(progressBar);
+            mainPanel.remove(cancelButton);
+            mainPanel.remove(sizeLabel);
+        }
+
+        private void setState(String state) {
+            stateLabel.setText(showTargetName ? target.getDisplayName() + ": " + state : state);
+        }
+
+        @Override
+        public void log(String state, int progress, long currentSizeBytes, long totalSizeBytes) {
+            if (isEnded) {
+                return;
+            }
+            setState(state);
+            progressModel.setValue(progress);
+            sizeLabel.setText(Misc.getPrettySizeRatio(currentSizeBytes, totalSizeBytes));
+        }
+
+        @Override
+        public void log(String state, int progress, String sizeProgress) {
+            if (isEnded) {
+                return;
+            }
+            setState(state);
+            progressModel.setValue(progress);
+            sizeLabel.setText(sizeProgress);
+        }
+
+        @Override
+        public void log(String state, int progress) {
+            if (isEnded) {
+                // Keep the final state, e.g. when a render shared with other targets progresses after this export was cancelled
+                return;
+            }
+            setState(state);
+            progressModel.setValue(progress);
+        }
+
+        @Override
+        public void log(String state) {
+            if (isEnded) {
+                return;
+            }
+            setState(state);
+        }
+
+        private void onCancel() {
+            logger.debug("ExportFrame.onCancel: " + target);
+            if (isEnded) {
+                return;
+            }
+            isCancelRequested = true;
+            if (exportJob != null && exportJob.cancel()) {
+                // The job had not started yet, and this line was ended as the export failed
+                return;
+            }
+            if (cancelButton.getText().equals("Close")) {
+                logger.debug("(second call)");
+                // Second time "cancel" is called. Something weird happened... Closing?
+                // TODO prompt to send log
+                end(false);
+            }
+            else {
+                setState(MSG_CANCELLATION_REQUESTED);
+                cancelButton.setText("Close");
+            }
+        }
+
+        @Override
+        public boolean isCancelRequested() {
+            logger.debug("ExportFrame.isCancelRequested: " + target);
+            if (isCancelRequested) {
+                // This request is taken into account, end this line
+                end(false);
+            }
+            return isCancelRequested;
+        }
+
+        @Override
+        public void complete(String state) {
+            logger.debug("ExportFrame.complete: " + target);
+            setState(state);
+            progressModel.setValue(100);
+            end(true);
+        }
+
+        @Override
+        public void failed(String state) {
+            logger.debug("ExportFrame.failed: " + target);
+            setState(state);
+            end(false);
+        }
+
+        private void end(boolean isSucceeded) {
+            if (isEnded) {
+                return;
+            }
+            this.isSucceeded = isSucceeded;
+            isEnded = true;
+            exportJob = null;
+            cancelButton.setEnabled(false);
+            onTargetEnded();
+        }
+    }
 }
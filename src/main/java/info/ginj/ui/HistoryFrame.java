@@ -9,6 +9,7 @@ import info.ginj.ui.component.HistoryButtonPanel;
 import info.ginj.ui.component.HistoryToggleButton;
 import info.ginj.ui.component.YellowLabel;
 import info.ginj.ui.layout.WrapLayout;
+import info.ginj.util.FilmstripGenerator;
 import info.ginj.util.Misc;
 import info.ginj.util.UI;
 import org.slf4j.Logger;
@@ -494,6 +495,11 @@ public class HistoryFrame extends JFrame {
         ok = ok && new File(Ginj.getHistoryFolder(), capture.getBaseFilename() + Misc.THUMBNAIL_EXTENSION).delete();
         if (deleteFullSizeImage) {
             ok = ok && getCaptureFile(capture).delete();
+            // Only exists for videos that were opened in the editor
+            File filmstripFile = FilmstripGenerator.getCacheFile(getCaptureFile(capture), capture.getId());
+            if (filmstripFile.exists()) {
+                ok = ok && filmstripFile.delete();
+            }
         }
         if (!ok) {
             UI.alertError(this, "Delete error", "There was an error deleting history files for capture\n" + capture.toString());
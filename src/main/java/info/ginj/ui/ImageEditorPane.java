@@ -15,7 +15,16 @@ import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The pane showing the captured image and its overlays.
+ * This pane is the single canvas on which all overlays are rendered, in layer order. Overlays are kept as child
+ * components (for layer management and to host e.g. text areas) but don't paint themselves, so that a repaint only
+ * renders the overlays intersecting the repainted area, and changes to an overlay only repaint its render bounds.
+ */
 public class ImageEditorPane extends JLayeredPane {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageEditorPane.class);
@@ -26,6 +35,9 @@ public class ImageEditorPane extends JLayeredPane {
 
     private Overlay selectedOverlay;
 
+    // Spatial index of overlays, for hit-testing
+    private final OverlayIndex overlayIndex = new OverlayIndex();
+
     public ImageEditorPane(CaptureEditingFrame frame, BufferedImage capturedImg) {
         super();
         this.frame = frame;
@@ -37,6 +49,10 @@ public class ImageEditorPane extends JLayeredPane {
         addKeyboardShortcuts(this);
     }
 
+    public BufferedImage getCapturedImg() {
+        return capturedImg;
+    }
+
     public void setCapturedImg(BufferedImage capturedImg) {
         this.capturedImg = capturedImg;
         capturedImgSize = new Dimension(capturedImg.getWidth(), capturedImg.getHeight());
@@ -47,6 +63,84 @@ public class ImageEditorPane extends JLayeredPane {
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g.create();
         g2d.drawImage(capturedImg, 0, 0, this);
+
+        // Render overlays from bottom to top.
+        // Note: JLayeredPane guarantees components are returned based on their layer order, topmost first
+        final Rectangle clipBounds = g2d.getClipBounds();
+        final Component[] components = getComponents();
+        for (int i = components.length - 1; i >= 0; i--) {
+            if (components[i] instanceof Overlay) {
+                final Overlay overlay = (Overlay) components[i];
+                if (clipBounds == null || overlay.getRenderBounds().intersects(clipBounds)) {
+                    final Graphics2D overlayG2d = (Graphics2D) g2d.create();
+                    overlay.render(overlayG2d);
+                    overlayG2d.dispose();
+                }
+            }
+        }
+        g2d.dispose();
+    }
+
+    /**
+     * Repaints the area covered by the given overlay.
+     * Call it before and after a change to the overlay, so that both the old and new areas are refreshed.
+     * @param overlay the overlay to repaint
+     */
+    public void repaintOverlay(Overlay overlay) {
+        if (overlay != null) {
+            repaint(overlay.getRenderBounds());
+        }
+    }
+
+    /**
+     * Keeps the spatial index in sync when overlays are added, whatever the path (action, undo/redo, history restore)
+     */
+    @Override
+    protected void addImpl(Component comp, Object constraints, int index) {
+        super.addImpl(comp, constraints, index);
+        if (comp instanceof Overlay) {
+            overlayIndex.add((Overlay) comp);
+        }
+    }
+
+    /**
+     * Keeps the spatial index in sync when overlays are removed. Note: all remove() variants end up here
+     */
+    @Override
+    public void remove(int index) {
+        final Component comp = getComponent(index);
+        super.remove(index);
+        if (comp instanceof Overlay) {
+            overlayIndex.remove((Overlay) comp);
+        }
+    }
+
+    /**
+     * Must be called each time an overlay has moved or has been resized, so that it can still be hit-tested
+     * @param overlay the overlay whose geometry changed
+     */
+    public void overlayGeometryChanged(Overlay overlay) {
+        overlayIndex.update(overlay);
+    }
+
+    /**
+     * Returns the topmost overlay at the given point.
+     * Only the overlays whose render bounds contain the point are tested precisely, so hit-testing does not depend on
+     * the total number of overlays.
+     * @param point the location to test
+     * @return the overlay at that point, or null if there is none
+     */
+    public Overlay getOverlayAt(Point point) {
+        final List<Overlay> candidates = new ArrayList<>(overlayIndex.getCandidatesAt(point));
+        // Check closest first.
+        // Note: JLayeredPane guarantees components are indexed based on their layer order, topmost first
+        candidates.sort(Comparator.comparingInt(this::getIndexOf));
+        for (Overlay overlay : candidates) {
+            if (overlay.containsPoint(point)) {
+                return overlay;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -63,27 +157,15 @@ public class ImageEditorPane extends JLayeredPane {
         MouseInputListener mouseListener = new DragInsensitiveMouseClickListener(3, new MouseInputAdapter() {
             private int selectedHandleIndex;
             Point clicked;
+            Point dragged; // last position the overlay was moved to during drag
             AbstractUndoableAction currentAction = null;
 
             public void mousePressed(MouseEvent e) {
                 clicked = e.getPoint();
+                dragged = clicked;
 
                 // Find clicked component
-                Overlay foundOverlay = null;
-                // Iterate in reverse direction to check closest first
-                // Note: JLayeredPane guarantees components are returned based on their layer order. See implementation of JLayeredPane.highestLayer()
-                for (Component component : ImageEditorPane.this.getComponents()) {
-                    if (component instanceof Overlay) {
-                        Overlay overlay = (Overlay) component;
-                        if (overlay.containsPoint(clicked)) {
-                            foundOverlay = overlay;
-                            break;
-                        }
-                    }
-                    else {
-                        logger.error("Encountered unexpected component: " + component, e);
-                    }
-                }
+                final Overlay foundOverlay = getOverlayAt(clicked);
                 setSelectedOverlay(foundOverlay);
 
                 if (selectedOverlay != null) {
@@ -96,11 +178,11 @@ public class ImageEditorPane extends JLayeredPane {
                     selectedHandleIndex = selectedOverlay.getHandleIndexAt(clicked);
                     if (selectedHandleIndex == Overlay.NO_INDEX) {
                         // Initate a move
-                        currentAction = new MoveOverlayAction(selectedOverlay, e.getPoint());
+                        currentAction = new MoveOverlayAction(selectedOverlay, ImageEditorPane.this, e.getPoint());
                     }
                     else {
                         // Initiate a resize
-                        currentAction = new ResizeOverlayAction(selectedOverlay, selectedHandleIndex, selectedOverlay.getHandles()[selectedHandleIndex]);
+                        currentAction = new ResizeOverlayAction(selectedOverlay, ImageEditorPane.this, selectedHandleIndex, selectedOverlay.getHandles()[selectedHandleIndex]);
                     }
                 }
                 else {
@@ -119,21 +201,24 @@ public class ImageEditorPane extends JLayeredPane {
                     currentAction.execute();
                     selectedHandleIndex = 0;
                 }
-                repaint();
+                repaintOverlay(selectedOverlay);
             }
 
             public void mouseDragged(MouseEvent e) {
                 final Point mousePosition = e.getPoint();
+                repaintOverlay(selectedOverlay);
                 if (selectedHandleIndex == Overlay.NO_INDEX) {
                     // Whole component is dragged
-                    // During drag, we move the whole component (which is a canvas of the same size as the image) to follow the mouse
-                    selectedOverlay.setLocation(mousePosition.x - clicked.x, mousePosition.y - clicked.y);
+                    // During drag, we move the drawing to follow the mouse. Upon release, it is moved back and the
+                    // move is performed once again by the (undoable) action
+                    selectedOverlay.moveDrawing(mousePosition.x - dragged.x, mousePosition.y - dragged.y);
+                    dragged = mousePosition;
                 }
                 else {
                     // Only a handle is dragged
                     selectedHandleIndex = selectedOverlay.moveHandle(selectedHandleIndex, mousePosition);
                 }
-                repaint();
+                repaintOverlay(selectedOverlay);
             }
 
             public void mouseReleased(MouseEvent e) {
@@ -142,6 +227,11 @@ public class ImageEditorPane extends JLayeredPane {
                 }
                 else {
                     final Point released = e.getPoint();
+                    repaintOverlay(selectedOverlay);
+                    if (currentAction instanceof MoveOverlayAction) {
+                        // Upon release, we revert the moves performed during drag
+                        selectedOverlay.moveDrawing(clicked.x - dragged.x, clicked.y - dragged.y);
+                    }
                     if (!hasMouseMoved(clicked, released)) {
                         if (currentAction instanceof AddOverlayAction) {
                             // Mouse hasn't moved during add => False operation
@@ -151,17 +241,17 @@ public class ImageEditorPane extends JLayeredPane {
                     else {
                         currentAction.setTargetPoint(released);
                         if (currentAction instanceof MoveOverlayAction) {
-                            // Upon release, we reset the canvas position to 0,0 and execute the action that moves the drawing itself on the canvas
-                            selectedOverlay.setLocation(0, 0);
+                            // and execute the action that moves the drawing in one step
                             currentAction.execute();
                         }
                         selectedOverlay.setSelected(true); // Seems useless but makes sure focus is given to the textarea of Text overlays
                         frame.addUndoableAction(currentAction);
                         currentAction = null;
                     }
+                    overlayGeometryChanged(selectedOverlay);
                     selectedOverlay.setEditInProgress(false);
                     selectedOverlay.setButtonBarVisible(true);
-                    repaint();
+                    repaintOverlay(selectedOverlay);
                 }
             }
 
@@ -173,6 +263,7 @@ public class ImageEditorPane extends JLayeredPane {
                         currentAction = new BringOverlayToFrontAction(selectedOverlay, ImageEditorPane.this);
                         currentAction.execute();
                         frame.addUndoableAction(currentAction);
+                        repaintOverlay(selectedOverlay);
                     }
                 }
             }
@@ -217,6 +308,7 @@ public class ImageEditorPane extends JLayeredPane {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (selectedOverlay != null) {
+                    repaintOverlay(selectedOverlay);
                     final DeleteOverlayAction deleteOverlayAction = new DeleteOverlayAction(selectedOverlay, imageEditorPane);
                     deleteOverlayAction.execute();
                     frame.addUndoableAction(deleteOverlayAction);
@@ -227,7 +319,6 @@ public class ImageEditorPane extends JLayeredPane {
                             setSelectedOverlay((Overlay) component);
                         }
                     }
-                    repaint();
                 }
             }
         });
@@ -245,6 +336,7 @@ public class ImageEditorPane extends JLayeredPane {
         if (selectedOverlay != overlay) {
             // De-select previous one
             if (selectedOverlay != null) {
+                repaintOverlay(selectedOverlay);
                 selectedOverlay.setSelected(false);
                 selectedOverlay.setButtonBarVisible(false);
                 // Give focus back to the image pane. In case it was a text component, it is required otherwise keystrokes (e.g. DEL) are still directed to the text area
@@ -257,7 +349,7 @@ public class ImageEditorPane extends JLayeredPane {
                 selectedOverlay.setButtonBarVisible(true);
             }
         }
-        repaint();
+        repaintOverlay(selectedOverlay);
     }
 
     public void setColorOfSelectedOverlay(Color color) {
@@ -265,7 +357,7 @@ public class ImageEditorPane extends JLayeredPane {
             final ChangeOverlayColorAction action = new ChangeOverlayColorAction(selectedOverlay, color);
             frame.addUndoableAction(action);
             action.execute();
-            repaint();
+            repaintOverlay(selectedOverlay);
         }
     }
 }
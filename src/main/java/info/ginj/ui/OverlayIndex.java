@@ -0,0 +1,89 @@
+package info.ginj.ui;
+
+import info.ginj.tool.Overlay;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * A uniform grid over the render bounds of overlays, so that hit-testing only considers the overlays that may be
+ * under the cursor instead of all of them.
+ * The grid must be notified of each overlay addition, removal or change of geometry.
+ */
+class OverlayIndex {
+    private static final int CELL_SIZE = 64;
+
+    private final Map<Long, List<Overlay>> cells = new HashMap<>();
+    // Bounds under which each overlay is currently indexed, so it can be removed from the right cells
+    private final Map<Overlay, Rectangle> indexedBounds = new IdentityHashMap<>();
+
+    public void add(Overlay overlay) {
+        final Rectangle bounds = overlay.getRenderBounds();
+        indexedBounds.put(overlay, bounds);
+        forEachCell(bounds, key -> cells.computeIfAbsent(key, k -> new ArrayList<>()).add(overlay));
+    }
+
+    public void remove(Overlay overlay) {
+        final Rectangle bounds = indexedBounds.remove(overlay);
+        if (bounds != null) {
+            forEachCell(bounds, key -> {
+                final List<Overlay> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(overlay);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Re-indexes the given overlay after its geometry changed
+     * @param overlay the overlay that moved or was resized
+     */
+    public void update(Overlay overlay) {
+        if (indexedBounds.containsKey(overlay)) {
+            final Rectangle newBounds = overlay.getRenderBounds();
+            if (!newBounds.equals(indexedBounds.get(overlay))) {
+                remove(overlay);
+                add(overlay);
+            }
+        }
+    }
+
+    /**
+     * @param point the location to test
+     * @return the overlays whose render bounds contain that point, in no particular order
+     */
+    public Set<Overlay> getCandidatesAt(Point point) {
+        final List<Overlay> cell = cells.get(getCellKey(Math.floorDiv(point.x, CELL_SIZE), Math.floorDiv(point.y, CELL_SIZE)));
+        if (cell == null) {
+            return Collections.emptySet();
+        }
+        final Set<Overlay> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Overlay overlay : cell) {
+            if (indexedBounds.get(overlay).contains(point)) {
+                candidates.add(overlay);
+            }
+        }
+        return candidates;
+    }
+
+    private void forEachCell(Rectangle bounds, java.util.function.LongConsumer consumer) {
+        final int minCellX = Math.floorDiv(bounds.x, CELL_SIZE);
+        final int maxCellX = Math.floorDiv(bounds.x + bounds.width, CELL_SIZE);
+        final int minCellY = Math.floorDiv(bounds.y, CELL_SIZE);
+        final int maxCellY = Math.floorDiv(bounds.y + bounds.height, CELL_SIZE);
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                consumer.accept(getCellKey(cellX, cellY));
+            }
+        }
+    }
+
+    private static long getCellKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
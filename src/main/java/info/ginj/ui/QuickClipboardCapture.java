@@ -0,0 +1,83 @@
+package info.ginj.ui;
+
+import info.ginj.export.HistorySaver;
+import info.ginj.export.clipboard.ClipboardExporter;
+import info.ginj.model.Capture;
+import info.ginj.model.Export;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Fast path to copy a capture straight to the clipboard, without opening the editor nor going through the export
+ * machinery (ExportFrame, export thread, completion notification).
+ * Saving to history is deferred to a background queue so that the image reaches the clipboard as fast as possible.
+ */
+public class QuickClipboardCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuickClipboardCapture.class);
+
+    // Caching
+    private static Robot robot;
+
+    // Current state
+    private static Rectangle lastRegion; // in device coordinates
+
+    /**
+     * Remembers the region of the last image capture, so it can be captured again with captureLastRegion()
+     *
+     * @param region the captured region, in device coordinates
+     */
+    public static void setLastRegion(Rectangle region) {
+        lastRegion = new Rectangle(region);
+    }
+
+    public static Rectangle getLastRegion() {
+        return lastRegion;
+    }
+
+    /**
+     * Captures the same region as the last image capture and copies it to the clipboard
+     *
+     * @return the new capture, or null if no region was captured yet
+     * @throws AWTException if the platform does not allow screen capture
+     */
+    public static Capture captureLastRegion() throws AWTException {
+        if (lastRegion == null) {
+            return null;
+        }
+        final long startNanos = System.nanoTime();
+        final BufferedImage image = getRobot().createScreenCapture(lastRegion);
+        final Capture capture = copyToClipboard(image);
+        logger.debug("Last region copied to clipboard in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+        return capture;
+    }
+
+    /**
+     * Copies the given image to the clipboard, then queues the corresponding capture to be saved to history
+     *
+     * @param image the captured image
+     * @return the new capture
+     */
+    public static Capture copyToClipboard(BufferedImage image) {
+        ClipboardExporter.copyImageToClipboard(image);
+
+        final Capture capture = new Capture(Capture.newId());
+        capture.setOriginalImage(image);
+        // No overlays: the rendered image is the original one
+        capture.setRenderedImage(image);
+        capture.addExport(new Export(ClipboardExporter.NAME, null, null, false));
+        HistorySaver.saveInBackground(capture);
+        return capture;
+    }
+
+    private static Robot getRobot() throws AWTException {
+        // Creating a Robot is not free, and this path is all about latency
+        if (robot == null) {
+            robot = new Robot();
+        }
+        return robot;
+    }
+}
@@ -3,9 +3,15 @@ package info.ginj.ui;
 import com.github.jjYBdx4IL.utils.awt.Desktop;
 import com.tulskiy.keymaster.common.Provider;
 import info.ginj.Ginj;
+import info.ginj.export.ExportJob;
+import info.ginj.export.ExportScheduler;
+import info.ginj.model.Capture;
 import info.ginj.model.Export;
 import info.ginj.model.Prefs;
 import info.ginj.ui.listener.DragInsensitiveMouseClickListener;
+import info.ginj.util.HttpClientService;
+import info.ginj.util.InstantReplayRecorder;
+import info.ginj.util.Jaffree;
 import info.ginj.util.Misc;
 import info.ginj.util.UI;
 import org.apache.commons.lang3.SystemUtils;
@@ -22,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -38,7 +45,9 @@ public class StarWindow extends JWindow {
 
     private Provider hotKeyProvider;
     private TrayIcon trayIcon;
+    private Menu exportsMenu;
     private Export lastExport = null;
+    private InstantReplayRecorder instantReplayRecorder;
 
     // We only have a single instance of CaptureSelectionFrame that we reuse to avoid memory leaks
     // See https://stackoverflow.com/questions/39437481/jframe-is-never-garbage-collected
@@ -51,6 +60,9 @@ public class StarWindow extends JWindow {
     public static final int CIRCLE_WIDTH_PIXELS = 50;
     public static final int CIRCLE_HEIGHT_PIXELS = 50;
 
+    // Time given to cancelled exports to stop before exiting
+    private static final long EXIT_DRAIN_TIMEOUT_MS = 10_000;
+
     public static final int STAR_WIDTH_PIXELS = 150;
     public static final int STAR_HEIGHT_PIXELS = 150;
 
@@ -144,6 +156,16 @@ public class StarWindow extends JWindow {
             }
         });
 
+        if (Prefs.isTrue(Prefs.Key.INSTANT_REPLAY_ENABLED)) {
+            if (Jaffree.IS_AVAILABLE) {
+                instantReplayRecorder = new InstantReplayRecorder();
+                instantReplayRecorder.start();
+            }
+            else {
+                logger.warn("Instant replay is enabled but FFmpeg is not available.");
+            }
+        }
+
         registerHotKey();
 
         addWindowListener(new WindowAdapter() {
@@ -171,11 +193,13 @@ public class StarWindow extends JWindow {
             // Create a popup menu components
             MenuItem captureItem = new MenuItem("Capture");
             MenuItem historyItem = new MenuItem("History");
+            exportsMenu = new Menu("Exports");
             MenuItem moreItem = new MenuItem("More");
             MenuItem checkForUpdatesItem = new MenuItem("Check for updates");
             MenuItem exitItem = new MenuItem(Misc.getExitQuitText());
             popup.add(captureItem);
             popup.add(historyItem);
+            popup.add(exportsMenu);
             popup.add(moreItem);
             popup.add(checkForUpdatesItem);
             popup.add(exitItem);
@@ -193,6 +217,10 @@ public class StarWindow extends JWindow {
             trayIcon.setImageAutoSize(true);
             trayIcon.setToolTip(Ginj.getAppName());
 
+            // Follow queued and running exports
+            refreshExportsMenu();
+            ExportScheduler.addChangeListener(e -> SwingUtilities.invokeLater(this::refreshExportsMenu));
+
             // On balloon notification click (or icon double click), pop-up the last export, if possible
             // Note that in Windows 10, notifications are historized but I see no way of knowing which one was clicked in the
             // notification history. So for now the click works only once...
@@ -266,6 +294,34 @@ public class StarWindow extends JWindow {
         if (!Prefs.isTrue(Prefs.Key.DEBUG_NO_REQUEST_FOCUS_IN_RECOVERY)) requestFocus();
     }
 
+    /**
+     * Lists active exports in the tray menu, where they can be cancelled, and sums them up in the tray tooltip
+     */
+    private void refreshExportsMenu() {
+        final List<ExportJob> jobs = ExportScheduler.getActiveJobs();
+        exportsMenu.removeAll();
+        if (jobs.isEmpty()) {
+            exportsMenu.setLabel("Exports");
+            final MenuItem noExportItem = new MenuItem("No export in progress");
+            noExportItem.setEnabled(false);
+            exportsMenu.add(noExportItem);
+            trayIcon.setToolTip(Ginj.getAppName());
+            return;
+        }
+        exportsMenu.setLabel("Exports (" + jobs.size() + ")");
+        for (ExportJob job : jobs) {
+            final MenuItem jobItem = new MenuItem(job + " - Cancel...");
+            jobItem.addActionListener(e -> {
+                if (JOptionPane.YES_OPTION == JOptionPane.showConfirmDialog(this, "Cancel export to " + job.getTarget() + "?", "Cancel export", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE)) {
+                    job.cancel();
+                }
+            });
+            exportsMenu.add(jobItem);
+        }
+        final long runningCount = jobs.stream().filter(job -> job.getState() == ExportJob.State.RUNNING).count();
+        trayIcon.setToolTip(Ginj.getAppName() + " - " + runningCount + " export(s) running, " + (jobs.size() - runningCount) + " queued");
+    }
+
     public boolean isTrayAvailable() {
         return trayIcon != null;
     }
@@ -287,6 +343,20 @@ public class StarWindow extends JWindow {
             if (keystroke != null && keystroke.length() > 0) {
                 provider.register(KeyStroke.getKeyStroke(keystroke), hotKey -> onCapture());
             }
+            keystroke = Prefs.get(Prefs.Key.CLIPBOARD_CAPTURE_HOTKEY);
+            if (keystroke != null && keystroke.length() > 0) {
+                provider.register(KeyStroke.getKeyStroke(keystroke), hotKey -> onCaptureToClipboard());
+            }
+            keystroke = Prefs.get(Prefs.Key.REPEAT_LAST_CAPTURE_HOTKEY);
+            if (keystroke != null && keystroke.length() > 0) {
+                provider.register(KeyStroke.getKeyStroke(keystroke), hotKey -> onRepeatLastCapture());
+            }
+            if (instantReplayRecorder != null) {
+                keystroke = Prefs.get(Prefs.Key.INSTANT_REPLAY_HOTKEY);
+                if (keystroke != null && keystroke.length() > 0) {
+                    provider.register(KeyStroke.getKeyStroke(keystroke), hotKey -> onSaveInstantReplay());
+                }
+            }
         }
     }
 
@@ -873,9 +943,13 @@ public class StarWindow extends JWindow {
     @Override
     public void dispose() {
         super.dispose();
+        if (instantReplayRecorder != null) {
+            instantReplayRecorder.stop();
+        }
         if (trayIcon != null) {
             SystemTray.getSystemTray().remove(trayIcon);
         }
+        HttpClientService.shutdown();
         logger.info("StarWindow disposed.");
         System.exit(Ginj.ERR_STATUS_OK);
     }
@@ -911,14 +985,52 @@ public class StarWindow extends JWindow {
     // EVENT HANDLERS
 
     void onCapture() {
+        openCaptureSelectionFrame(false);
+    }
+
+    void onCaptureToClipboard() {
+        openCaptureSelectionFrame(true);
+    }
+
+    private void openCaptureSelectionFrame(boolean isDirectToClipboard) {
         if (captureSelectionFrame == null) {
             // Create a new (single) capture selection window
             captureSelectionFrame = new CaptureSelectionFrame(this);
         }
+        captureSelectionFrame.setDirectToClipboard(isDirectToClipboard);
         // Perform the screen capture and show the Frame
         captureSelectionFrame.open();
     }
 
+    void onRepeatLastCapture() {
+        // Hotkeys are received on a separate thread. Stay on it: the fast path does not touch the GUI
+        try {
+            if (QuickClipboardCapture.captureLastRegion() == null) {
+                // Nothing captured yet. Let user select an area
+                SwingUtilities.invokeLater(this::onCaptureToClipboard);
+            }
+        }
+        catch (AWTException e) {
+            SwingUtilities.invokeLater(() -> UI.alertException(this, "Capture error", "There was an error capturing the last area", e, logger));
+        }
+    }
+
+
+    void onSaveInstantReplay() {
+        // Stopping ffmpeg and concatenating segments takes a while, don't block the hotkey thread or the EDT
+        new Thread(() -> {
+            final Capture capture = instantReplayRecorder.save();
+            SwingUtilities.invokeLater(() -> {
+                if (capture == null) {
+                    UI.alertError(this, "Instant replay", "Could not save the instant replay.\nPlease see the log file for more information.");
+                }
+                else {
+                    CaptureEditingFrame.getInstance(this).open(capture);
+                }
+            });
+        }).start();
+    }
+
 
     private void onHistory() {
         if (historyFrame == null) {
@@ -939,8 +1051,25 @@ public class StarWindow extends JWindow {
 
     void onExit(Component parentComponent) {
         if (JOptionPane.YES_OPTION == JOptionPane.showConfirmDialog(parentComponent, "Are you sure you want to " + Misc.getExitQuitText().toLowerCase() + " " + Ginj.getAppName() + "?", Misc.getExitQuitText() + " " + Ginj.getAppName() + "?", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE)) {
+            final List<ExportJob> activeJobs = ExportScheduler.getActiveJobs();
+            long drainTimeoutMs = EXIT_DRAIN_TIMEOUT_MS;
+            if (!activeJobs.isEmpty()) {
+                switch (JOptionPane.showConfirmDialog(parentComponent, activeJobs.size() + " export(s) still in progress.\nWait for them to complete before closing " + Ginj.getAppName() + "?\n(No cancels them)", "Exports in progress", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE)) {
+                    case JOptionPane.YES_OPTION -> drainTimeoutMs = Long.MAX_VALUE;
+                    case JOptionPane.NO_OPTION -> ExportScheduler.cancelAll();
+                    default -> {
+                        return;
+                    }
+                }
+            }
             Prefs.save();
-            dispose();
+            // Let running exports end (or notice their cancellation) without blocking the EDT, then exit
+            final long timeoutMs = drainTimeoutMs;
+            setVisible(false);
+            new Thread(() -> {
+                ExportScheduler.drain(timeoutMs);
+                SwingUtilities.invokeLater(this::dispose);
+            }, "Exit").start();
         }
     }
 
@@ -517,6 +517,8 @@ public class TargetManagementFrame extends JFrame implements TargetListChangeLis
                     "Ask for save location:", alwaysAskCheckBox,
                     "Remember save location:", UI.createWizardCheckBox(ExportSettings.MUST_REMEMBER_LAST_LOCATION_KEY, getWizardDataMap(), true, alwaysAskCheckBox, true),
                     "Preferred image file format:", UI.createWizardList(ExportSettings.PREFERRED_FILE_FORMAT_KEY, ExportSettings.FileFormat.values(), getWizardDataMap(), 0, true, true),
+                    "Preferred video file format:", UI.createWizardList(ExportSettings.PREFERRED_VIDEO_FILE_FORMAT_KEY, ExportSettings.VideoFileFormat.values(), getWizardDataMap(), 0, true, true),
+                    "Max video size (MB):", UI.createWizardTextField(ExportSettings.MAX_VIDEO_SIZE_MB_KEY, getWizardDataMap(), "", true, true),
                     "Copy path to clipboard:", UI.createWizardCheckBox(ExportSettings.MUST_COPY_PATH_KEY, getWizardDataMap(), true, true, true)
             );
 
@@ -585,6 +587,7 @@ public class TargetManagementFrame extends JFrame implements TargetListChangeLis
                         "Username:", UI.createWizardTextField(TargetPrefs.ACCOUNT_USERNAME_KEY, getWizardDataMap(), account.getName(), false, true),
                         "Email:", UI.createWizardTextField(TargetPrefs.ACCOUNT_EMAIL_KEY, getWizardDataMap(), account.getEmail(), false, true),
                         "Display as:", UI.createWizardTextField(TargetPrefs.DISPLAY_NAME_KEY, getWizardDataMap(), displayName, true, true),
+                        "Max video size (MB):", UI.createWizardTextField(ExportSettings.MAX_VIDEO_SIZE_MB_KEY, getWizardDataMap(), "", true, true),
                         "Share capture:", shareCaptureCheckbox,
                         "Copy link to clipboard:", UI.createWizardCheckBox(ExportSettings.MUST_COPY_PATH_KEY, getWizardDataMap(), true, shareCaptureCheckbox, true)
                 );
@@ -627,6 +630,7 @@ public class TargetManagementFrame extends JFrame implements TargetListChangeLis
                         "Username:", UI.createWizardTextField(TargetPrefs.ACCOUNT_USERNAME_KEY, getWizardDataMap(), account.getName(), false, true),
                         "Email:", UI.createWizardTextField(TargetPrefs.ACCOUNT_EMAIL_KEY, getWizardDataMap(), account.getEmail(), false, true),
                         "Display as:", UI.createWizardTextField(TargetPrefs.DISPLAY_NAME_KEY, getWizardDataMap(), displayName, true, true),
+                        "Max video size (MB):", UI.createWizardTextField(ExportSettings.MAX_VIDEO_SIZE_MB_KEY, getWizardDataMap(), "", true, true),
                         "Create one album:", UI.createWizardList(ExportSettings.ALBUM_GRANULARITY_KEY, GooglePhotosExporter.Granularity.values(), getWizardDataMap(), 0, true, true),
                         "Share album:", shareAlbumCheckbox,
                         "Copy link to clipboard:", UI.createWizardCheckBox(ExportSettings.MUST_COPY_PATH_KEY, getWizardDataMap(), true, shareAlbumCheckbox, true)
@@ -670,6 +674,7 @@ public class TargetManagementFrame extends JFrame implements TargetListChangeLis
                         "Username:", UI.createWizardTextField(TargetPrefs.ACCOUNT_USERNAME_KEY, getWizardDataMap(), account.getName(), false, true),
                         "Email:", UI.createWizardTextField(TargetPrefs.ACCOUNT_EMAIL_KEY, getWizardDataMap(), account.getEmail(), false, true),
                         "Display as:", UI.createWizardTextField(TargetPrefs.DISPLAY_NAME_KEY, getWizardDataMap(), displayName, true, true),
+                        "Max video size (MB):", UI.createWizardTextField(ExportSettings.MAX_VIDEO_SIZE_MB_KEY, getWizardDataMap(), "", true, true),
                         "Share capture:", shareCaptureCheckbox,
                         "Copy link to clipboard:", UI.createWizardCheckBox(ExportSettings.MUST_COPY_PATH_KEY, getWizardDataMap(), true, shareCaptureCheckbox, true)
                 );
@@ -1,17 +1,17 @@
 package info.ginj.ui;
 
-import com.github.kokorin.jaffree.ffmpeg.FFmpegResultFuture;
-import com.github.kokorin.jaffree.ffmpeg.ProgressListener;
 import com.tulskiy.keymaster.common.Provider;
 import info.ginj.Ginj;
 import info.ginj.model.Capture;
 import info.ginj.model.Prefs;
+import info.ginj.model.RecordingStats;
 import info.ginj.ui.component.BorderedLabel;
 import info.ginj.ui.component.DoubleBorderedPanel;
 import info.ginj.ui.component.LowerButton;
 import info.ginj.ui.component.LowerButtonBar;
 import info.ginj.util.Jaffree;
 import info.ginj.util.UI;
+import info.ginj.util.VideoRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,6 +20,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.time.Duration;
+import java.util.ArrayList;
 
 /**
  * This frame immediately starts the video recording and shows a frame around the recorded area,
@@ -43,9 +44,11 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
     public static final BasicStroke SELECTION_TOP_BOTTOM_STROKE = new BasicStroke(2);
 
 
+    private JButton pauseButton;
     private JLabel captureDurationLabel;
+    private JLabel recordingStatusLabel;
 
-    private FFmpegResultFuture ffmpegFutureResult = null;
+    private VideoRecorder videoRecorder = null;
     private Capture capture;
 
     private Timer cellPerforationAnimationTimer;
@@ -90,6 +93,7 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
         positionActionPanel();
         actionPanel.setVisible(true);
         captureDurationLabel.setText("00:00:00");
+        recordingStatusLabel.setText(" ");
 
         cellPerforationAnimationTimer = new Timer(50, e -> {
             perforationOffset++;
@@ -106,7 +110,7 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
         cellPerforationAnimationTimer.stop();
         cellPerforationAnimationTimer = null;
         setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
-        ffmpegFutureResult = null;
+        videoRecorder = null;
         capture = null;
         perforationImage = null;
 
@@ -161,9 +165,9 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
         final JButton stopButton = new LowerButton("Finish", UI.createIcon(getClass().getResource("/img/icon/stop.png"), 16, 16, UI.ICON_ENABLED_COLOR));
         stopButton.addActionListener(e -> onStop());
         buttonBar.add(stopButton);
-//        final JButton pauseButton = new LowerButton("Pause", UI.createIcon(getClass().getResource("/img/icon/pause.png"), 16, 16, UI.ICON_ENABLED_COLOR));
-//        pauseButton.addActionListener(e -> onPause());
-//        buttonBar.add(pauseButton);
+        pauseButton = new LowerButton("Pause", UI.createIcon(getClass().getResource("/img/icon/pause.png"), 16, 16, UI.ICON_ENABLED_COLOR));
+        pauseButton.addActionListener(e -> onPauseResume());
+        buttonBar.add(pauseButton);
 //        final JButton unmuteButton = new LowerButton("Unmute", UI.createIcon(getClass().getResource("/img/icon/unmute.png"), 16, 16, UI.ICON_ENABLED_COLOR));
 //        pauseButton.addActionListener(e -> onUnmute());
 //        buttonBar.add(pauseButton);
@@ -177,6 +181,8 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
         Font font = captureDurationLabel.getFont();
         captureDurationLabel.setFont(new Font(font.getName(), font.getStyle(), 18));
         buttonBar.add(captureDurationLabel);
+        recordingStatusLabel = new BorderedLabel(" ");
+        buttonBar.add(recordingStatusLabel);
 
         actionPanel.add(buttonBar);
         return actionPanel;
@@ -193,48 +199,48 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
     }
 
     private void startRecording(Rectangle croppedSelection) {
-
-        int frameRate;
-        try {
-            frameRate = Integer.parseInt(Prefs.get(Prefs.Key.VIDEO_FRAMERATE));
-        }
-        catch (Exception e) {
-            frameRate = 10;
-        }
-
         boolean captureMouseCursor = Prefs.isTrue(Prefs.Key.VIDEO_CAPTURE_MOUSE_CURSOR);
 
-        int finalFrameRate = frameRate;
-        ProgressListener progressListener = progress -> {
-            // Notes:
-            // progress.getTime() is about encoding and has an offset of 5-10 sec compared to actual capture time
-            // progress.getFrame() is accurate
-            // progress.getFps() can be irrelevant at startup before it settles
-            // So using requested frameRate to convert frames to seconds.
-            // TODO what if fps setting is too high and encoding can't keep up. Can we detect it with a drop in progress.getFps() compared to frameRate ?
-            Duration elapsed = Duration.ofMillis(1000 * progress.getFrame() / finalFrameRate);
-            captureDurationLabel.setText(String.format("%02d:%02d:%02d", elapsed.toHours(), elapsed.toMinutesPart(), elapsed.toSecondsPart()));
-        };
-
         // The capture window will lose focus during recording as user interacts with the desktop and apps.
         // Make sure we detect CTRL-S for Stop and ESC for Cancel
         setGlobalRecordingHotkeys();
 
-        // Start actual recording
-        ffmpegFutureResult = Jaffree.startRecording(croppedSelection, frameRate, captureMouseCursor, progressListener, capture.getOriginalFile().getAbsolutePath());
+        // Start actual recording. The frame rate and encoder settings are lowered if encoding can't keep up
+        videoRecorder = new VideoRecorder(croppedSelection, captureMouseCursor, capture.getOriginalFile(), recorder -> SwingUtilities.invokeLater(() -> updateRecordingStatus(recorder)));
+        videoRecorder.start();
+    }
+
+    private void updateRecordingStatus(VideoRecorder recorder) {
+        if (recorder != videoRecorder) {
+            // Late notification of a closed recording
+            return;
+        }
+        Duration elapsed = Duration.ofMillis(recorder.getElapsedMs());
+        captureDurationLabel.setText(String.format("%02d:%02d:%02d", elapsed.toHours(), elapsed.toMinutesPart(), elapsed.toSecondsPart()));
+
+        final RecordingStats stats = recorder.getStats();
+        String status = recorder.isPaused() ? "Paused" : stats.getSummary();
+        if (!recorder.getAdaptations().isEmpty()) {
+            status += " - Settings lowered";
+            recordingStatusLabel.setToolTipText("<html>" + String.join("<br/>", recorder.getAdaptations()) + "</html>");
+        }
+        recordingStatusLabel.setText(status);
+        // Only grow, so that the panel does not jump around as figures change
+        final Dimension preferredSize = actionPanel.getPreferredSize();
+        if (preferredSize.width > actionPanel.getWidth() || preferredSize.height > actionPanel.getHeight()) {
+            actionPanel.setSize(Math.max(preferredSize.width, actionPanel.getWidth()), Math.max(preferredSize.height, actionPanel.getHeight()));
+            actionPanel.validate();
+            positionActionPanel();
+        }
     }
 
     private String getTempVideoFilename() {
         return Ginj.getTempDir().getAbsolutePath() + File.separator + capture.getId() + ".mp4";
     }
 
-    private boolean stopRecording() {
-        // Restore hotkey handling
+    private void restoreHotkeys() {
         removeGlobalRecordingHotkeys();
         starWindow.registerHotKey();
-
-        // Wait and make sure the process has ended
-        return Jaffree.stopRecording(ffmpegFutureResult, logger);
     }
 
     private void setGlobalRecordingHotkeys() {
@@ -242,6 +248,7 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
         provider.reset();
         // TODO add these hotkeys to the Prefs and Options dialog
         provider.register(KeyStroke.getKeyStroke("ctrl S"), hotKey -> onStop());
+        provider.register(KeyStroke.getKeyStroke("ctrl P"), hotKey -> SwingUtilities.invokeLater(this::onPauseResume));
         provider.register(KeyStroke.getKeyStroke("ESCAPE"), hotKey -> onCancel());
     }
 
@@ -255,7 +262,8 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
 
     private void onCancel() {
         setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-        stopRecording();
+        restoreHotkeys();
+        videoRecorder.cancel();
         File videoFile = capture.getOriginalFile();
         if (videoFile.exists()) {
             if (!videoFile.delete()) {
@@ -265,9 +273,47 @@ public class VideoControlFrame extends AbstractAllDisplaysFrame {
         close();
     }
 
+    private void onPauseResume() {
+        if (videoRecorder == null || !pauseButton.isEnabled()) {
+            // Not recording, or still switching
+            return;
+        }
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        pauseButton.setEnabled(false);
+        final VideoRecorder recorder = videoRecorder;
+        // Pausing or resuming waits for ffmpeg to stop or start, don't block the EDT meanwhile
+        new Thread(() -> {
+            if (recorder.isPaused()) {
+                recorder.resume();
+            }
+            else {
+                recorder.pause();
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (recorder.isPaused()) {
+                    pauseButton.setText("Resume");
+                    pauseButton.setIcon(UI.createIcon(getClass().getResource("/img/icon/play.png"), 16, 16, UI.ICON_ENABLED_COLOR));
+                }
+                else {
+                    pauseButton.setText("Pause");
+                    pauseButton.setIcon(UI.createIcon(getClass().getResource("/img/icon/pause.png"), 16, 16, UI.ICON_ENABLED_COLOR));
+                }
+                pauseButton.setEnabled(true);
+                setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+            });
+        }).start();
+    }
+
     private void onStop() {
         setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-        if (stopRecording()) {
+        restoreHotkeys();
+        // Wait and make sure recording has ended
+        if (videoRecorder.stop()) {
+            final RecordingStats stats = videoRecorder.getStats();
+            logger.info("Recording ended: " + stats);
+            capture.setRecordingStats(stats);
+            capture.setRecordingAdaptations(new ArrayList<>(videoRecorder.getAdaptations()));
+            capture.setVideoSegmentBoundariesMs(videoRecorder.getSegmentBoundariesMs());
             final long videoDurationMs = Jaffree.getDuration(capture.getOriginalFile());
             capture.setVideoDurationMs(videoDurationMs);
             capture.setVideoHigherBoundMs(videoDurationMs);
@@ -0,0 +1,101 @@
+package info.ginj.ui.component;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Thumbnails of a video taken at a fixed interval, to be painted along the track of a <code>JTimelineSlider</code>.
+ * Thumbnail i shows the frame at i * interval milliseconds.
+ * Thumbnails can be set from any thread as they become available. Listeners are notified of each change (on that
+ * thread), so that the strip can be painted progressively.
+ */
+public class Filmstrip {
+    private final long intervalMs;
+    private final BufferedImage[] thumbnails;
+    private final EventListenerList listenerList = new EventListenerList();
+    private final ChangeEvent changeEvent = new ChangeEvent(this);
+
+    /**
+     * @param durationMs the duration of the video, in milliseconds
+     * @param intervalMs the time between two thumbnails, in milliseconds
+     */
+    public Filmstrip(long durationMs, long intervalMs) {
+        this.intervalMs = intervalMs;
+        this.thumbnails = new BufferedImage[(int) (durationMs / intervalMs) + 1];
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public int getThumbnailCount() {
+        return thumbnails.length;
+    }
+
+    public void setThumbnail(int index, BufferedImage thumbnail) {
+        synchronized (thumbnails) {
+            thumbnails[index] = thumbnail;
+        }
+        fireStateChanged();
+    }
+
+    public BufferedImage getThumbnail(int index) {
+        synchronized (thumbnails) {
+            return thumbnails[index];
+        }
+    }
+
+    /**
+     * @param positionMs a position in the video, in milliseconds
+     * @return the thumbnail closest to that position, or null if it is not available yet
+     */
+    public BufferedImage getThumbnailAt(long positionMs) {
+        final int index = (int) Math.max(0, Math.min(thumbnails.length - 1, Math.round((double) positionMs / intervalMs)));
+        return getThumbnail(index);
+    }
+
+    /**
+     * @return the size of thumbnails, or null if none is available yet
+     */
+    public Dimension getThumbnailSize() {
+        synchronized (thumbnails) {
+            for (BufferedImage thumbnail : thumbnails) {
+                if (thumbnail != null) {
+                    return new Dimension(thumbnail.getWidth(), thumbnail.getHeight());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if all thumbnails are available
+     */
+    public boolean isComplete() {
+        synchronized (thumbnails) {
+            for (BufferedImage thumbnail : thumbnails) {
+                if (thumbnail == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public void addChangeListener(ChangeListener l) {
+        listenerList.add(ChangeListener.class, l);
+    }
+
+    public void removeChangeListener(ChangeListener l) {
+        listenerList.remove(ChangeListener.class, l);
+    }
+
+    protected void fireStateChanged() {
+        for (ChangeListener listener : listenerList.getListeners(ChangeListener.class)) {
+            listener.stateChanged(changeEvent);
+        }
+    }
+}
@@ -105,6 +105,21 @@ public class JTimelineSlider extends JComponent implements SwingConstants, Acces
     private boolean paintLabels = false;
     private boolean isInverted = false;
 
+    /**
+     * Thumbnails painted along the track, or null to paint the plain track.
+     */
+    private Filmstrip filmstrip;
+
+    /**
+     * Repaints the slider each time a thumbnail of the filmstrip becomes available.
+     */
+    private final ChangeListener filmstripListener = e -> repaint();
+
+    /**
+     * Values marked across the track, e.g. the boundaries between recorded segments.
+     */
+    private int[] markers = new int[0];
+
     /**
      * The data model that handles the numeric maximum value,
      * minimum value, and current-position value for the slider.
@@ -1420,6 +1435,64 @@ public class JTimelineSlider extends JComponent implements SwingConstants, Acces
     }
 
 
+
+    /**
+     * Returns the thumbnails painted along the track.
+     * @return the filmstrip, or null if none is painted
+     * @see #setFilmstrip
+     */
+    public Filmstrip getFilmstrip() {
+        return filmstrip;
+    }
+
+    /**
+     * Sets the thumbnails to paint along the track, so that the position of the thumbs can be related to the
+     * contents of the video. The filmstrip may still be filling in: the slider is repainted as thumbnails arrive.
+     * It is up to the look and feel to honor this property.
+     *
+     * @param filmstrip the filmstrip, whose thumbnails are spread from minimum to maximum, or null to paint the plain track
+     * @see #getFilmstrip
+     */
+    @BeanProperty(visualUpdate = true, description
+            = "The thumbnails painted along the track.")
+    public void setFilmstrip(Filmstrip filmstrip) {
+        Filmstrip oldValue = this.filmstrip;
+        if (oldValue != null) {
+            oldValue.removeChangeListener(filmstripListener);
+        }
+        this.filmstrip = filmstrip;
+        if (filmstrip != null) {
+            filmstrip.addChangeListener(filmstripListener);
+        }
+        firePropertyChange("filmstrip", oldValue, filmstrip);
+        repaint();
+    }
+
+    /**
+     * Returns the values marked across the track.
+     * @return the marked values, possibly empty
+     * @see #setMarkers
+     */
+    public int[] getMarkers() {
+        return markers.clone();
+    }
+
+    /**
+     * Sets values to mark across the track, such as the points where a recording was paused and resumed.
+     * It is up to the look and feel to honor this property.
+     *
+     * @param markers the values to mark, between minimum and maximum
+     * @see #getMarkers
+     */
+    @BeanProperty(visualUpdate = true, description
+            = "The values marked across the track.")
+    public void setMarkers(int... markers) {
+        int[] oldValue = this.markers;
+        this.markers = markers == null ? new int[0] : markers.clone();
+        firePropertyChange("markers", oldValue, this.markers);
+        repaint();
+    }
+
     /**
      * Tells if labels are to be painted.
      * @return true if labels are painted, else false
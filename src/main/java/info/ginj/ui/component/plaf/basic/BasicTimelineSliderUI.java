@@ -27,6 +27,7 @@
 package info.ginj.ui.component.plaf.basic;
 
 import info.ginj.ui.component.BoundedTimelineRangeModel;
+import info.ginj.ui.component.Filmstrip;
 import info.ginj.ui.component.JTimelineSlider;
 import info.ginj.ui.component.PublicSwingUtils;
 import info.ginj.ui.component.UIAction;
@@ -63,6 +64,11 @@ public class BasicTimelineSliderUI extends TimelineSliderUI {
 
     private static final Logger logger = LoggerFactory.getLogger(BasicTimelineSliderUI.class);
 
+    // Painted over the filmstrip outside of the active track
+    private static final Color FILMSTRIP_DIMMING_COLOR = new Color(0, 0, 0, 160);
+    // Painted across the track at each marker
+    private static final Color MARKER_COLOR = new Color(255, 255, 255, 200);
+
     // Old actions forward to an instance of this.
     private static final Actions SHARED_ACTION = new Actions();
 
@@ -1193,9 +1199,16 @@ public class BasicTimelineSliderUI extends TimelineSliderUI {
         if ( slider.getPaintTrack() && clip.intersects( trackRect ) ) {
             paintTrack( g );
         }
-        if ( slider.getPaintTrack() && clip.intersects(activeTrackRect) ) {
+        if ( slider.getPaintTrack() && slider.getFilmstrip() != null && clip.intersects( trackRect ) ) {
+            // The filmstrip shows the active part of the track by itself
+            paintFilmstrip( g );
+        }
+        else if ( slider.getPaintTrack() && clip.intersects(activeTrackRect) ) {
             paintActiveTrack( g );
         }
+        if ( slider.getPaintTrack() && slider.getMarkers().length > 0 && clip.intersects( trackRect ) ) {
+            paintMarkers( g );
+        }
         if ( slider.getPaintTicks() && clip.intersects( tickRect ) ) {
             paintTicks( g );
         }
@@ -1255,6 +1268,57 @@ public class BasicTimelineSliderUI extends TimelineSliderUI {
         g.drawImage(trackImage, trackBounds.x, trackBounds.y, trackBounds.width, trackBounds.height, null);
     }
 
+    /**
+     * Paints the thumbnails of the slider's filmstrip along the track, one tile per thumbnail width, each tile showing
+     * the thumbnail of the value at its center. Tiles whose thumbnail is not available yet leave the track visible.
+     * The parts of the track outside the active track are dimmed.
+     * @param g the graphics
+     */
+    public void paintFilmstrip(Graphics g)  {
+        final Filmstrip filmstrip = slider.getFilmstrip();
+        final Dimension thumbnailSize = filmstrip.getThumbnailSize();
+        if (thumbnailSize == null) {
+            // Nothing decoded yet
+            paintActiveTrack(g);
+            return;
+        }
+        final int tileWidth = Math.max(1, thumbnailSize.width * trackRect.height / thumbnailSize.height);
+
+        final Graphics2D g2d = (Graphics2D) g.create();
+        g2d.clipRect(trackRect.x, trackRect.y, trackRect.width, trackRect.height);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (int x = trackRect.x; x < trackRect.x + trackRect.width; x += tileWidth) {
+            final BufferedImage thumbnail = filmstrip.getThumbnailAt(valueForXPosition(x + tileWidth / 2));
+            if (thumbnail != null) {
+                g2d.drawImage(thumbnail, x, trackRect.y, tileWidth, trackRect.height, null);
+            }
+        }
+
+        g2d.setColor(FILMSTRIP_DIMMING_COLOR);
+        g2d.fillRect(trackRect.x, trackRect.y, activeTrackRect.x - trackRect.x, trackRect.height);
+        final int activeTrackRight = activeTrackRect.x + activeTrackRect.width;
+        g2d.fillRect(activeTrackRight, trackRect.y, trackRect.x + trackRect.width - activeTrackRight, trackRect.height);
+        g2d.dispose();
+    }
+
+    /**
+     * Paints a line across the track at each marker of the slider.
+     * @param g the graphics
+     */
+    public void paintMarkers(Graphics g)  {
+        g.setColor(MARKER_COLOR);
+        for (int marker : slider.getMarkers()) {
+            if ( slider.getOrientation() == JTimelineSlider.HORIZONTAL ) {
+                final int x = xPositionForValue(marker);
+                g.fillRect(x - 1, trackRect.y, 2, trackRect.height);
+            }
+            else {
+                final int y = yPositionForValue(marker);
+                g.fillRect(trackRect.x, y - 1, trackRect.width, 2);
+            }
+        }
+    }
+
     /**
      * Paints track.
      * @param g the graphics
@@ -0,0 +1,192 @@
+package info.ginj.util;
+
+import com.github.kokorin.jaffree.ffmpeg.FFmpegResultFuture;
+import com.github.kokorin.jaffree.ffmpeg.Frame;
+import com.github.kokorin.jaffree.ffmpeg.FrameConsumer;
+import com.github.kokorin.jaffree.ffmpeg.Stream;
+import info.ginj.ui.component.Filmstrip;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Fills the filmstrip of a video, either from its cache file or by decoding the video once.
+ * <p>
+ * Decoding is a single ffmpeg pass streaming down-scaled frames at the filmstrip interval, so thumbnails appear one
+ * after the other while the video is decoded. Once complete, thumbnails are written side by side to a cache file
+ * next to the video (and moved along with it to history), so that the filmstrip of a capture reopened from history
+ * is read from disk instead.
+ */
+public class FilmstripGenerator implements FrameConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilmstripGenerator.class);
+
+    // Thumbnails are decoded at twice the track height, so they remain sharp on HiDPI screens
+    public static final int THUMBNAIL_HEIGHT = 40;
+    // Enough tiles for a wide slider, whatever the duration
+    private static final int MAX_THUMBNAILS = 120;
+    private static final long MIN_INTERVAL_MS = 250;
+
+    private final File videoFile;
+    private final File cacheFile;
+    private final Filmstrip filmstrip;
+
+    // Current state
+    private FFmpegResultFuture future;
+    private long timebase = 1000;
+    private volatile boolean stopped = false;
+
+    /**
+     * @param videoFile  the video to take thumbnails from
+     * @param captureId  the id of the capture the video belongs to, used to name the cache file
+     * @param durationMs the duration of the video, in milliseconds
+     */
+    public FilmstripGenerator(File videoFile, String captureId, long durationMs) {
+        this.videoFile = videoFile;
+        this.cacheFile = getCacheFile(videoFile, captureId);
+        // Interval only depends on the duration, so the cache file can be split again into the same thumbnails
+        final long intervalMs = Math.max(MIN_INTERVAL_MS, (durationMs + MAX_THUMBNAILS - 1) / MAX_THUMBNAILS);
+        this.filmstrip = new Filmstrip(durationMs, intervalMs);
+    }
+
+    /**
+     * @param videoFile the original video of a capture
+     * @param captureId the id of that capture
+     * @return the file the filmstrip of that video is cached to. It is in the same folder as the video.
+     */
+    public static File getCacheFile(File videoFile, String captureId) {
+        return new File(videoFile.getParentFile(), captureId + Misc.FILMSTRIP_EXTENSION);
+    }
+
+    public Filmstrip getFilmstrip() {
+        return filmstrip;
+    }
+
+    /**
+     * Fills the filmstrip from the cache file if it is valid (synchronously, as it is a small image),
+     * or else starts decoding the video in background.
+     */
+    public void start() {
+        if (loadFromCache()) {
+            return;
+        }
+        try {
+            future = Jaffree.startThumbnailExtraction(videoFile, filmstrip.getIntervalMs(), THUMBNAIL_HEIGHT, this);
+        }
+        catch (RuntimeException e) {
+            logger.error("Could not start filmstrip extraction of '" + videoFile.getAbsolutePath() + "'", e);
+        }
+    }
+
+    /**
+     * Stops decoding, if still running. Thumbnails already received remain in the filmstrip.
+     */
+    public void stop() {
+        stopped = true;
+        if (future != null) {
+            try {
+                future.forceStop();
+            }
+            catch (Exception e) {
+                // Jaffree is known to throw when forcing a stop. See Jaffree.stopRecording()
+                logger.debug("Exception stopping filmstrip extraction", e);
+            }
+            future = null;
+        }
+    }
+
+    @Override
+    public void consumeStreams(List<Stream> streams) {
+        for (Stream stream : streams) {
+            if (stream.getType() == Stream.Type.VIDEO && stream.getTimebase() != null) {
+                timebase = stream.getTimebase();
+            }
+        }
+    }
+
+    @Override
+    public void consume(Frame frame) {
+        if (stopped) {
+            return;
+        }
+        if (frame == null) {
+            // End of file
+            saveToCache();
+            return;
+        }
+        if (frame.getImage() == null) {
+            return;
+        }
+        final long frameMs = frame.getPts() * 1000 / timebase;
+        final int index = (int) Math.round((double) frameMs / filmstrip.getIntervalMs());
+        if (index >= 0 && index < filmstrip.getThumbnailCount()) {
+            filmstrip.setThumbnail(index, frame.getImage());
+        }
+    }
+
+
+    ////////////////////////////////
+    // Cache
+
+    private boolean loadFromCache() {
+        if (!cacheFile.exists() || cacheFile.lastModified() < videoFile.lastModified()) {
+            return false;
+        }
+        try {
+            final BufferedImage strip = ImageIO.read(cacheFile);
+            final int count = filmstrip.getThumbnailCount();
+            if (strip == null || strip.getWidth() % count != 0) {
+                logger.warn("Ignoring invalid filmstrip cache file '" + cacheFile.getAbsolutePath() + "'");
+                return false;
+            }
+            final int thumbnailWidth = strip.getWidth() / count;
+            for (int i = 0; i < count; i++) {
+                filmstrip.setThumbnail(i, strip.getSubimage(i * thumbnailWidth, 0, thumbnailWidth, strip.getHeight()));
+            }
+            return true;
+        }
+        catch (IOException e) {
+            logger.warn("Could not read filmstrip cache file '" + cacheFile.getAbsolutePath() + "'", e);
+            return false;
+        }
+    }
+
+    private void saveToCache() {
+        final Dimension thumbnailSize = filmstrip.getThumbnailSize();
+        if (thumbnailSize == null) {
+            logger.warn("No thumbnail could be extracted from '" + videoFile.getAbsolutePath() + "'");
+            return;
+        }
+        final int count = filmstrip.getThumbnailCount();
+        final BufferedImage strip = new BufferedImage(count * thumbnailSize.width, thumbnailSize.height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = strip.createGraphics();
+        BufferedImage thumbnail = null;
+        for (int i = 0; i < count; i++) {
+            // Rounding may leave a position without frame (e.g. at the very end): repeat the previous one
+            if (filmstrip.getThumbnail(i) != null) {
+                thumbnail = filmstrip.getThumbnail(i);
+            }
+            else if (thumbnail != null) {
+                filmstrip.setThumbnail(i, thumbnail);
+            }
+            if (thumbnail != null) {
+                g2d.drawImage(thumbnail, i * thumbnailSize.width, 0, thumbnailSize.width, thumbnailSize.height, null);
+            }
+        }
+        g2d.dispose();
+        try {
+            if (!ImageIO.write(strip, Misc.IMAGE_FORMAT_PNG, cacheFile)) {
+                logger.warn("Could not write filmstrip cache file '" + cacheFile.getAbsolutePath() + "'");
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Could not write filmstrip cache file '" + cacheFile.getAbsolutePath() + "'", e);
+        }
+    }
+}
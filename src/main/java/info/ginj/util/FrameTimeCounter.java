@@ -0,0 +1,76 @@
+package info.ginj.util;
+
+import java.util.Locale;
+
+/**
+ * Simple statistics about the time taken to paint "frames" in an interactive component.
+ * Used to check that mouse tracking keeps up with the display refresh rate.
+ * Not thread safe: meant to be used from the EDT only.
+ */
+public class FrameTimeCounter {
+
+    /**
+     * Time budget of a frame at 60Hz
+     */
+    public static final long FRAME_BUDGET_NANOS = 1_000_000_000L / 60;
+
+    private long frameCount;
+    private long totalNanos;
+    private long maxNanos;
+    private long lastNanos;
+    private long overBudgetCount;
+
+    /**
+     * @return a timestamp to pass to stop() once the frame is painted
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a frame
+     *
+     * @param startNanos the value returned by start() before painting the frame
+     */
+    public void stop(long startNanos) {
+        lastNanos = System.nanoTime() - startNanos;
+        frameCount++;
+        totalNanos += lastNanos;
+        if (lastNanos > maxNanos) maxNanos = lastNanos;
+        if (lastNanos > FRAME_BUDGET_NANOS) overBudgetCount++;
+    }
+
+    public void reset() {
+        frameCount = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        lastNanos = 0;
+        overBudgetCount = 0;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getOverBudgetCount() {
+        return overBudgetCount;
+    }
+
+    public double getLastMs() {
+        return lastNanos / 1_000_000.0;
+    }
+
+    public double getMaxMs() {
+        return maxNanos / 1_000_000.0;
+    }
+
+    public double getAverageMs() {
+        return frameCount == 0 ? 0 : totalNanos / (frameCount * 1_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d frames, avg %.2fms, max %.2fms, %d over the 60fps budget",
+                frameCount, getAverageMs(), getMaxMs(), overBudgetCount);
+    }
+}
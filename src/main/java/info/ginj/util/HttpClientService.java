@@ -0,0 +1,125 @@
+package info.ginj.util;
+
+import info.ginj.Ginj;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the HTTP client shared by the whole application (online exporters, update check...).
+ * Connections are pooled and kept alive between requests, so that successive calls to the same service do not pay
+ * TCP and TLS setup again, and the number of connections to each host is bounded.
+ * Callers borrow the client with {@link #getClient()} and must close the responses they get (which returns their
+ * connection to the pool), but never the client itself. The client is closed by {@link #shutdown()} when exiting.
+ */
+public class HttpClientService {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientService.class);
+
+    // Pool limits. Exports are bounded by the export scheduler, and each one only uses a connection at a time
+    private static final int MAX_CONNECTIONS_TOTAL = 20;
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+    // Timeouts
+    private static final Timeout CONNECT_TIMEOUT = Timeout.ofSeconds(10);
+    // Max wait for a connection from the pool
+    private static final Timeout CONNECTION_REQUEST_TIMEOUT = Timeout.ofSeconds(30);
+    // Max wait for the server to respond, e.g. after an upload chunk was sent
+    private static final Timeout RESPONSE_TIMEOUT = Timeout.ofSeconds(60);
+
+    // Keep-alive, when the server does not specify it
+    private static final TimeValue KEEP_ALIVE = TimeValue.ofSeconds(30);
+    // Connections idle for longer are closed in background
+    private static final TimeValue MAX_IDLE_TIME = TimeValue.ofSeconds(30);
+    // Connections idle for longer are checked before being reused
+    private static final TimeValue VALIDATE_AFTER_INACTIVITY = TimeValue.ofSeconds(2);
+
+    private static PoolingHttpClientConnectionManager connectionManager;
+    private static CloseableHttpClient client;
+
+    // Metrics
+    private static final AtomicLong requestCount = new AtomicLong();
+
+    /**
+     * @return the shared client, created upon first call. Must not be closed by the caller
+     */
+    public static synchronized CloseableHttpClient getClient() {
+        if (client == null) {
+            connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(MAX_CONNECTIONS_TOTAL)
+                    .setMaxConnPerRoute(MAX_CONNECTIONS_PER_HOST)
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(CONNECT_TIMEOUT)
+                            .setSocketTimeout(RESPONSE_TIMEOUT)
+                            .setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY)
+                            .build())
+                    .build();
+            client = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+                            .setResponseTimeout(RESPONSE_TIMEOUT)
+                            .setConnectionKeepAlive(KEEP_ALIVE)
+                            .build())
+                    .evictExpiredConnections()
+                    .evictIdleConnections(MAX_IDLE_TIME)
+                    .setUserAgent(Ginj.getAppName() + "/" + Ginj.getVersion())
+                    .addRequestInterceptorLast((request, entity, context) -> requestCount.incrementAndGet())
+                    .build();
+            logger.debug("HTTP client created");
+        }
+        return client;
+    }
+
+    /**
+     * @return a summary of the connection pool, and of its use since the client was created
+     */
+    public static synchronized String getStats() {
+        if (connectionManager == null) {
+            return "HTTP client not used";
+        }
+        final PoolStats totalStats = connectionManager.getTotalStats();
+        StringBuilder stats = new StringBuilder("HTTP requests: " + requestCount.get()
+                + ", connections leased: " + totalStats.getLeased()
+                + ", idle: " + totalStats.getAvailable()
+                + ", waiting: " + totalStats.getPending()
+                + ", max: " + totalStats.getMax());
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            final PoolStats routeStats = connectionManager.getStats(route);
+            stats.append("\n  ").append(route.getTargetHost().toHostString())
+                    .append(": leased ").append(routeStats.getLeased())
+                    .append(", idle ").append(routeStats.getAvailable())
+                    .append(", waiting ").append(routeStats.getPending());
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Closes the shared client and all its connections. Called when exiting, once exports are over
+     */
+    public static synchronized void shutdown() {
+        if (client == null) {
+            return;
+        }
+        logger.info(getStats());
+        try {
+            client.close(CloseMode.GRACEFUL);
+        }
+        catch (RuntimeException e) {
+            logger.warn("Error closing HTTP client", e);
+        }
+        client = null;
+        connectionManager = null;
+    }
+}
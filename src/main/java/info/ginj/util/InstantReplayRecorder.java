@@ -0,0 +1,177 @@
+package info.ginj.util;
+
+import com.github.kokorin.jaffree.OS;
+import com.github.kokorin.jaffree.ffmpeg.FFmpegResultFuture;
+import info.ginj.Ginj;
+import info.ginj.model.Capture;
+import info.ginj.model.DisplayConfiguration;
+import info.ginj.model.Prefs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Continuously records a display in background, keeping only the last seconds, so that a video capture can be
+ * created retroactively ("instant replay").
+ * The recording is a ring of short segments written by ffmpeg to a fixed set of files that are overwritten in turn,
+ * so that disk usage remains bounded by the number of segments times their size, which itself is bounded by the
+ * max bitrate.
+ * Saving stops the ring, concatenates the segments (without re-encoding) into a regular video capture, and restarts
+ * the ring.
+ */
+public class InstantReplayRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstantReplayRecorder.class);
+
+    private final File segmentDir;
+
+    // Current state
+    private FFmpegResultFuture ffmpegFutureResult;
+    private int durationS;
+
+    public InstantReplayRecorder() {
+        segmentDir = new File(Ginj.getTempDir(), "instant_replay");
+    }
+
+    public synchronized boolean isRunning() {
+        return ffmpegFutureResult != null;
+    }
+
+    /**
+     * Starts recording the display configured in the preferences
+     */
+    public synchronized void start() {
+        if (isRunning()) return;
+
+        durationS = Prefs.getAsInt(Prefs.Key.INSTANT_REPLAY_DURATION_S);
+        final int segmentDurationS = Math.max(1, Prefs.getAsInt(Prefs.Key.INSTANT_REPLAY_SEGMENT_DURATION_S));
+        // One more segment than needed, because the oldest one is the one being overwritten
+        final int segmentCount = (durationS + segmentDurationS - 1) / segmentDurationS + 1;
+
+        if (!segmentDir.exists() && !segmentDir.mkdirs()) {
+            logger.error("Could not create instant replay dir '" + segmentDir.getAbsolutePath() + "'.");
+            return;
+        }
+        // Start from an empty ring
+        deleteSegments();
+
+        final Rectangle area = getRecordedArea();
+        logger.info("Starting instant replay recording of " + area + " (" + segmentCount + " segments of " + segmentDurationS + "s)");
+        ffmpegFutureResult = Jaffree.startSegmentedRecording(area,
+                Prefs.getAsInt(Prefs.Key.VIDEO_FRAMERATE),
+                Prefs.isTrue(Prefs.Key.VIDEO_CAPTURE_MOUSE_CURSOR),
+                segmentDurationS,
+                segmentCount,
+                Prefs.getAsLong(Prefs.Key.INSTANT_REPLAY_MAX_BITRATE_KBPS),
+                segmentDir);
+    }
+
+    /**
+     * Stops recording and deletes segments
+     */
+    public synchronized void stop() {
+        if (!isRunning()) return;
+        Jaffree.stopRecording(ffmpegFutureResult, logger);
+        ffmpegFutureResult = null;
+        deleteSegments();
+    }
+
+    /**
+     * Saves the last recorded seconds as a new video capture, then restarts recording.
+     * The capture lower bound is set so that only the requested duration is kept, but the full content of the ring
+     * remains available for trimming.
+     *
+     * Errors are logged only, so this method can be called from any thread.
+     *
+     * @return the new capture, or null if nothing was recorded or in case of error
+     */
+    public synchronized Capture save() {
+        if (!isRunning()) return null;
+
+        // Stop to make sure the last segment is complete.
+        // This runs off the EDT, so don't pop up dialogs from here: the caller reports a null result to the user
+        final boolean isStopped = Jaffree.stopRecording(ffmpegFutureResult, logger, false);
+        ffmpegFutureResult = null;
+
+        Capture capture = null;
+        if (isStopped) {
+            final List<File> segments = getCompletedSegments();
+            if (segments.isEmpty()) {
+                logger.warn("No instant replay segment to save");
+            }
+            else {
+                capture = new Capture(Capture.newId());
+                capture.setVideo(true);
+                final File videoFile = new File(Ginj.getTempDir(), capture.getId() + Misc.VIDEO_EXTENSION);
+                try {
+                    Jaffree.concat(segments, videoFile);
+                    capture.setOriginalFile(videoFile);
+                    final long videoDurationMs = Jaffree.getDuration(videoFile);
+                    capture.setVideoDurationMs(videoDurationMs);
+                    capture.setVideoLowerBoundMs(Math.max(0, videoDurationMs - durationS * 1000L));
+                    capture.setVideoHigherBoundMs(videoDurationMs);
+                }
+                catch (IOException | RuntimeException e) {
+                    logger.error("Error saving instant replay", e);
+                    capture = null;
+                }
+            }
+        }
+
+        start();
+        return capture;
+    }
+
+    private List<File> getCompletedSegments() {
+        final List<File> segments = new ArrayList<>();
+        final File listFile = new File(segmentDir, Jaffree.SEGMENT_LIST_FILENAME);
+        if (listFile.exists()) {
+            try {
+                for (String segmentName : Files.readAllLines(listFile.toPath())) {
+                    if (!segmentName.isBlank()) {
+                        final File segment = new File(segmentDir, new File(segmentName.trim()).getName());
+                        if (segment.exists()) {
+                            segments.add(segment);
+                        }
+                    }
+                }
+            }
+            catch (IOException e) {
+                logger.error("Error reading instant replay segment list", e);
+            }
+        }
+        return segments;
+    }
+
+    private void deleteSegments() {
+        final File[] files = segmentDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.trace("Could not delete file '" + file.getAbsolutePath() + "'.");
+                }
+            }
+        }
+    }
+
+    private Rectangle getRecordedArea() {
+        final List<DisplayConfiguration.Display> displayList = UI.getDisplayConfiguration().getDisplayList();
+        int displayNumber = Prefs.getAsInt(Prefs.Key.INSTANT_REPLAY_DISPLAY_NUMBER);
+        if (displayNumber < 0 || displayNumber >= displayList.size()) {
+            logger.warn("Display " + displayNumber + " not found for instant replay. Using main display.");
+            displayNumber = 0;
+        }
+        final DisplayConfiguration.Display display = displayList.get(displayNumber);
+        // Same logic as AbstractAllDisplaysFrame
+        if (OS.IS_WINDOWS && Prefs.isTrue(Prefs.Key.USE_JNA_FOR_WINDOWS_MONITORS)) {
+            return display.getPhysicalRectangle();
+        }
+        return display.getLogicalRectangle();
+    }
+}
@@ -1,26 +1,33 @@
 package info.ginj.util;
 
+import com.github.kokorin.jaffree.Rational;
 import com.github.kokorin.jaffree.StreamType;
 import com.github.kokorin.jaffree.ffmpeg.Frame;
 import com.github.kokorin.jaffree.ffmpeg.*;
+import com.github.kokorin.jaffree.ffprobe.FFprobe;
+import com.github.kokorin.jaffree.ffprobe.FFprobeResult;
 import info.ginj.Ginj;
 import info.ginj.model.Prefs;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.Locale;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 
 /**
  * This util class gathers all interaction with Jaffree for FFmpeg interaction
@@ -34,6 +41,33 @@ public class Jaffree {
      */
     public static boolean IS_AVAILABLE = false;
 
+    /**
+     * Name of the file listing the last completed segments, in chronological order (see startSegmentedRecording())
+     */
+    public static final String SEGMENT_LIST_FILENAME = "segments.txt";
+    // Share of the GIF rendering progress taken by the palette generation pass, which is faster than the second one
+    private static final int GIF_PALETTE_PASS_PERCENT = 30;
+    // Share of the target size kept for the container, so that the file does not exceed the target
+    private static final double CONTAINER_OVERHEAD_RATIO = 0.03;
+    // Lowest video bitrate worth encoding. Below it, the target size cannot reasonably be reached
+    private static final long MIN_VIDEO_BITRATE_KBPS = 50;
+    // Share of the size-targeted encoding progress taken by the analysis pass, which is faster than the second one
+    private static final int SIZE_ANALYSIS_PASS_PERCENT = 30;
+    // x264 preset of both passes of size-targeted encodings. x264 refuses a second pass whose settings differ from the
+    // first one, and ffmpeg already lightens the first pass on its own ("fastfirstpass")
+    private static final String SIZE_ENCODING_PRESET = "medium";
+    // Interval at which long ffmpeg runs check whether their operation was cancelled
+    private static final long CANCEL_POLL_INTERVAL_MS = 200;
+    // Below this duration, starting one more ffmpeg process costs more than it saves
+    private static final long MIN_PARALLEL_PIECE_MS = 5000;
+    // x264 settings of screen recordings. They are the same for the whole recording, so that the segments of an
+    // adaptive recording share their codec parameters and can be joined without re-encoding, and smart trimming
+    // re-encodes the ends of a recording with them, so that re-encoded and copied frames share their parameter sets
+    private static final String RECORDING_PRESET = "veryfast";
+    // B-frames reorder frames, which prevents cutting without re-encoding. The GOP has a fixed number of frames (a
+    // keyframe every 3s at the default 10fps), as the SPS depends on it
+    private static final String RECORDING_X264_PARAMS = "bframes=0:keyint=30:min-keyint=30:scenecut=0";
+
 
     public static void checkAvailability() {
         String ffmpegExecutable = "ffmpeg";
@@ -95,8 +129,112 @@ public class Jaffree {
         return ffmpeg;
     }
 
+    public static FFprobe getFFprobe() {
+        String ffmpegDir = Prefs.get(Prefs.Key.FFMPEG_BIN_DIR);
+        FFprobe ffprobe;
+        if (ffmpegDir != null) {
+            ffprobe = FFprobe.atPath(Paths.get(ffmpegDir));
+        }
+        else {
+            // Assume ffprobe is on the path
+            ffprobe = FFprobe.atPath();
+        }
+        return ffprobe;
+    }
 
+
+    /**
+     * Starts recording the given area of the screen
+     *
+     * @param area               the area to record
+     * @param frameRate          the number of frames per second
+     * @param captureMouseCursor if true, the mouse cursor is recorded
+     * @param progressListener   notified of encoding progress
+     * @param videoFilename      the file to write. Its format is deduced from its extension
+     * @return the future of the running ffmpeg process
+     */
     public static FFmpegResultFuture startRecording(Rectangle area, int frameRate, boolean captureMouseCursor, ProgressListener progressListener, String videoFilename) {
+        return captureDesktop(area, frameRate, captureMouseCursor)
+                .setProgressListener(progressListener)
+                .addOutput(createRecordingOutput(videoFilename))
+                .setOverwriteOutput(true)
+                .executeAsync();
+    }
+
+    /**
+     * Starts recording frames grabbed in Java instead of by an ffmpeg grabber
+     *
+     * @param frameProducer    the source of frames. Timestamps are kept as is, so the video has a variable frame rate
+     * @param progressListener notified of encoding progress
+     * @param videoFilename    the file to write. Its format is deduced from its extension
+     * @return the future of the running ffmpeg process. It completes when the producer ends the stream
+     */
+    public static FFmpegResultFuture startRecording(FrameProducer frameProducer, ProgressListener progressListener, String videoFilename) {
+        return getFFmpeg()
+                // By default, Jaffree holds frames for a while to reorder them. They are produced in order, so only
+                // hold the last one
+                .addInput(FrameInput.withProducer(frameProducer).setFrameOrderingBuffer(0))
+                .setProgressListener(progressListener)
+                .addOutput(createRecordingOutput(videoFilename)
+                        // Unchanged frames are not sent: don't duplicate them
+                        .addArguments("-vsync", "vfr"))
+                .setOverwriteOutput(true)
+                .executeAsync();
+    }
+
+    private static UrlOutput createRecordingOutput(String videoFilename) {
+        return addRecordingEncoderArguments(UrlOutput.toPath(Paths.get(videoFilename)));
+    }
+
+    /**
+     * Sets the encoder and its settings for screen recordings, and for what is re-encoded from them
+     */
+    private static <T extends BaseOutput<T>> T addRecordingEncoderArguments(T output) {
+        return output
+                // The default encoder depends on the container (e.g. MPEG-2 for MPEG-TS), so always ask for H.264
+                .setCodec(StreamType.VIDEO, "libx264")
+                .addArguments("-preset", RECORDING_PRESET)
+                .addArguments("-x264-params", RECORDING_X264_PARAMS);
+    }
+
+    /**
+     * Starts a recording split in segments of fixed duration, written to a fixed set of files which are overwritten
+     * in a round-robin fashion, so that disk usage remains bounded however long the recording lasts.
+     * Segments are in MPEG-TS format and start on a keyframe, so they can be concatenated without re-encoding.
+     *
+     * @param area                  the area to record
+     * @param frameRate             the number of frames per second
+     * @param captureMouseCursor    if true, the mouse cursor is recorded
+     * @param segmentDurationS      the duration of each segment, in seconds
+     * @param segmentCount          the number of segment files to cycle through
+     * @param maxBitrateKbps        the max bitrate of the encoded video, in kilobits per second
+     * @param segmentDir            the dir to write segments to. It will also contain the list of the last completed segments
+     * @return the future of the running ffmpeg process
+     */
+    public static FFmpegResultFuture startSegmentedRecording(Rectangle area, int frameRate, boolean captureMouseCursor, int segmentDurationS, int segmentCount, long maxBitrateKbps, File segmentDir) {
+        return captureDesktop(area, frameRate, captureMouseCursor)
+                .addOutput(UrlOutput.toUrl(new File(segmentDir, "segment_%03d.ts").getAbsolutePath())
+                        .setFormat("segment")
+                        .setCodec(StreamType.VIDEO, "libx264")
+                        // Recording runs in background all the time, so keep CPU usage low
+                        .addArguments("-preset", "ultrafast")
+                        .addArguments("-maxrate", maxBitrateKbps + "k")
+                        .addArguments("-bufsize", (2 * maxBitrateKbps) + "k")
+                        // Force a keyframe at each segment boundary so that segments are cut accurately
+                        .addArguments("-force_key_frames", "expr:gte(t,n_forced*" + segmentDurationS + ")")
+                        .addArguments("-segment_time", String.valueOf(segmentDurationS))
+                        .addArguments("-segment_wrap", String.valueOf(segmentCount))
+                        .addArguments("-segment_format", "mpegts")
+                        .addArguments("-segment_list", new File(segmentDir, SEGMENT_LIST_FILENAME).getAbsolutePath())
+                        .addArguments("-segment_list_type", "flat")
+                        // The segment being written overwrites the oldest file of the ring, so only list the others
+                        .addArguments("-segment_list_size", String.valueOf(segmentCount - 1))
+                )
+                .setOverwriteOutput(true)
+                .executeAsync();
+    }
+
+    private static FFmpeg captureDesktop(Rectangle area, int frameRate, boolean captureMouseCursor) {
         if (SystemUtils.IS_OS_MAC) {
             // avfoundation on mac supports a crop width/height but no offset (silly isn't it ?), so ffmpeg has to capture the full desktop and crop in a separate step:
             return getFFmpeg()
@@ -105,11 +243,7 @@ public class Jaffree {
                             .setCaptureFrameRate(frameRate)
                             .setCaptureCursor(captureMouseCursor)
                     )
-                    .setFilter(StreamType.VIDEO, "crop=" + area.width + ":" + area.height + ":" + area.x + ":" + area.y)
-                    .setProgressListener(progressListener)
-                    .addOutput(UrlOutput.toPath(Paths.get(videoFilename)))
-                    .setOverwriteOutput(true)
-                    .executeAsync();
+                    .setFilter(StreamType.VIDEO, "crop=" + area.width + ":" + area.height + ":" + area.x + ":" + area.y);
         }
         else {
             // OTOH on Windows' GDIGrab and Linux' X11Grab, cropping is supported at the input level :
@@ -120,15 +254,23 @@ public class Jaffree {
                             .setCaptureCursor(captureMouseCursor)
                             .setCaptureVideoOffset(area.x, area.y)
                             .setCaptureVideoSize(area.width, area.height)
-                    )
-                    .setProgressListener(progressListener)
-                    .addOutput(UrlOutput.toPath(Paths.get(videoFilename)))
-                    .setOverwriteOutput(true)
-                    .executeAsync();
+                    );
         }
     }
 
     public static boolean stopRecording(FFmpegResultFuture ffmpegFutureResult, Logger logger) {
+        return stopRecording(ffmpegFutureResult, logger, true);
+    }
+
+    /**
+     * Stops a recording, first gently, then forcibly if it did not complete in time
+     *
+     * @param ffmpegFutureResult the future of the running ffmpeg process
+     * @param logger             the logger to report errors to
+     * @param alertUser          if false, errors are only logged, and the caller is in charge of telling the user
+     * @return true if the recording completed normally
+     */
+    public static boolean stopRecording(FFmpegResultFuture ffmpegFutureResult, Logger logger, boolean alertUser) {
         // Gently request ffmpeg to end (by pressing "q")
         ffmpegFutureResult.graceStop();
 
@@ -138,10 +280,10 @@ public class Jaffree {
             return true;
         }
         catch (InterruptedException | ExecutionException e) {
-            UI.alertException(null, "Recording error", "There was an error waiting for recording to complete", e, logger);
+            reportRecordingError("There was an error waiting for recording to complete", e, logger, alertUser);
         }
         catch (TimeoutException e) {
-            UI.alertException(null, "Recording error", "The recording did not complete after " + timeout + " seconds.", e, logger);
+            reportRecordingError("The recording did not complete after " + timeout + " seconds.", e, logger, alertUser);
         }
         try {
             ffmpegFutureResult.forceStop();
@@ -154,6 +296,15 @@ public class Jaffree {
         return false;
     }
 
+    private static void reportRecordingError(String message, Exception e, Logger logger, boolean alertUser) {
+        if (alertUser) {
+            UI.alertException(null, "Recording error", message, e, logger);
+        }
+        else {
+            logger.error(message, e);
+        }
+    }
+
     public static BufferedImage grabImage(File file, long positionInMillis) {
         // Use an array to pass a final variable although its contents will be changed
         final BufferedImage[] images = new BufferedImage[1];
@@ -190,7 +341,117 @@ public class Jaffree {
         return images[0];
     }
 
+    /**
+     * Starts decoding the given file from the given position, in background.
+     * Frames are pushed to the consumer as they are decoded. As they are transferred over a socket, a consumer that
+     * does not return from consume() pauses ffmpeg, so decoding can be resumed later without restarting the process.
+     *
+     * @param file             the video file to decode
+     * @param positionInMillis the position to start from. Preferably a keyframe, to avoid decoding frames that will be discarded
+     * @param consumer         the consumer receiving the decoded frames, then a null frame at the end of the file
+     * @return the future of the running ffmpeg process
+     */
+    public static FFmpegResultFuture startDecoding(File file, long positionInMillis, FrameConsumer consumer) {
+        return getFFmpeg()
+                .addInput(
+                        UrlInput.fromPath(file.toPath())
+                                .setPosition(positionInMillis, TimeUnit.MILLISECONDS)
+                )
+                .addOutput(
+                        FrameOutput.withConsumer(consumer)
+                                .disableStream(StreamType.AUDIO)
+                                .disableStream(StreamType.SUBTITLE)
+                                .disableStream(StreamType.DATA)
+                )
+                .executeAsync();
+    }
+
+    /**
+     * Starts decoding the whole given file in background, in a single pass, outputting down-scaled frames at a fixed
+     * interval (ffmpeg picks the frame closest to each multiple of the interval).
+     *
+     * @param file       the video file to decode
+     * @param intervalMs the time between two output frames, in milliseconds
+     * @param height     the height of output frames. Width is computed to keep the aspect ratio
+     * @param consumer   the consumer receiving the frames in order, then a null frame at the end of the file
+     * @return the future of the running ffmpeg process
+     */
+    public static FFmpegResultFuture startThumbnailExtraction(File file, long intervalMs, int height, FrameConsumer consumer) {
+        return getFFmpeg()
+                .addInput(UrlInput.fromPath(file.toPath()))
+                .setFilter(StreamType.VIDEO, "fps=1000/" + intervalMs + ",scale=-2:" + height)
+                .addOutput(
+                        FrameOutput.withConsumer(consumer)
+                                .disableStream(StreamType.AUDIO)
+                                .disableStream(StreamType.SUBTITLE)
+                                .disableStream(StreamType.DATA)
+                )
+                .executeAsync();
+    }
+
+    /**
+     * Lists the positions of the keyframes of the first video stream of the given file, which are the positions
+     * where decoding can start without decoding previous frames.
+     *
+     * @param file the video file to probe
+     * @return the positions in milliseconds from the start of the file, in increasing order
+     */
+    public static long[] getKeyframePositions(File file) {
+        final FFprobeResult result = getFFprobe()
+                .setInput(file.toPath())
+                .setSelectStreams("v:0")
+                .setShowEntries("packet=pts_time,flags:format=start_time")
+                .execute();
+        final Float startTime = result.getFormat() == null ? null : result.getFormat().getStartTime();
+        final double startTimeS = startTime == null ? 0 : startTime;
+        return result.getPackets().stream()
+                .filter(packet -> packet.getFlags() != null && packet.getFlags().contains("K") && packet.getPtsTime() != null)
+                .mapToLong(packet -> Math.max(0, Math.round((packet.getPtsTime() - startTimeS) * 1000)))
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Returns the duration of the given video file.
+     * The duration is read from the MP4 header, or else from the container info as reported by ffprobe, which both
+     * take the same time whatever the length of the video. Only if both fail (e.g. damaged file) is the whole file
+     * decoded to find its end.
+     *
+     * @param file the video file
+     * @return the duration, in milliseconds
+     */
     public static long getDuration(File file) {
+        final long startNanos = System.nanoTime();
+        try {
+            final long durationMillis = Mp4Header.readDurationMs(file);
+            logger.debug("Duration of '" + file.getName() + "' read from header in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+            return durationMillis;
+        }
+        catch (IOException e) {
+            logger.info("Could not read duration from header of '" + file.getAbsolutePath() + "': " + e.getMessage());
+        }
+
+        try {
+            final FFprobeResult result = getFFprobe()
+                    .setInput(file.toPath())
+                    .setShowEntries("format=duration")
+                    .execute();
+            final Float durationS = result.getFormat() == null ? null : result.getFormat().getDuration();
+            if (durationS != null && durationS > 0) {
+                logger.debug("Duration of '" + file.getName() + "' probed in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+                return Math.round(durationS * 1000.0);
+            }
+            logger.info("No duration reported by ffprobe for '" + file.getAbsolutePath() + "'");
+        }
+        catch (RuntimeException e) {
+            logger.info("Could not probe duration of '" + file.getAbsolutePath() + "'", e);
+        }
+
+        logger.warn("Decoding '" + file.getAbsolutePath() + "' to find its duration");
+        return decodeDuration(file);
+    }
+
+    private static long decodeDuration(File file) {
         final AtomicLong durationMillis = new AtomicLong();
         getFFmpeg()
                 .addInput(UrlInput.fromPath(file.toPath()))
@@ -216,4 +477,797 @@ public class Jaffree {
                 .setOverwriteOutput(true)
                 .execute();
     }
+
+    /**
+     * Trims the given video and composites the given layer over each of its frames, in a single encoding pass.
+     * The layer is streamed to ffmpeg as an in-memory PNG, and the overlay filter repeats it over all frames, so
+     * no intermediate file is written.
+     *
+     * @param sourceFile    the video to render
+     * @param startInMillis the position of the first frame to keep
+     * @param endInMillis   the position after the last frame to keep
+     * @param layerImage    an ARGB image of the size of the video, transparent where the video must remain visible
+     * @param targetFile    the resulting video
+     * @param cancelRequest tells if the rendering was cancelled, in which case ffmpeg is stopped. May be null
+     * @throws IOException if the layer cannot be encoded
+     * @throws CancellationException if the rendering was cancelled. The target file is deleted
+     */
+    public static void renderWithLayer(File sourceFile, long startInMillis, long endInMillis, BufferedImage layerImage, File targetFile, BooleanSupplier cancelRequest) throws IOException {
+        final byte[] layerPng = encodeLayer(layerImage);
+        final FFmpeg ffmpeg = getFFmpeg()
+                .addInput(
+                        UrlInput.fromPath(sourceFile.toPath())
+                                .setPosition(startInMillis, TimeUnit.MILLISECONDS)
+                                .setDuration(endInMillis - startInMillis, TimeUnit.MILLISECONDS)
+                )
+                .addInput(
+                        PipeInput.pumpFrom(new ByteArrayInputStream(layerPng))
+                                .setFormat("png_pipe")
+                )
+                .addArguments("-filter_complex", "[0:v][1:v]overlay=0:0")
+                .addOutput(
+                        UrlOutput.toPath(targetFile.toPath())
+                )
+                .setOverwriteOutput(true);
+        executeCancellable(ffmpeg, cancelRequest, targetFile);
+    }
+
+    /**
+     * Does the same as {@link #renderWithLayer}, but splits the range at keyframes into pieces which are encoded at
+     * the same time by separate ffmpeg processes, on a pool sized to the number of cores. A single process is mostly
+     * bound by its decoding and filtering pipeline, which cannot use all cores. Pieces are then joined without
+     * re-encoding. Short ranges, or ranges without enough keyframes, are rendered by a single process.
+     *
+     * @param sourceFile              the video to render
+     * @param startInMillis           the position of the first frame to keep
+     * @param endInMillis             the position after the last frame to keep
+     * @param layerImage              an ARGB image of the size of the video, transparent where the video must remain visible
+     * @param targetFile              the resulting video
+     * @param progressPercentListener notified of the combined progress of all pieces, from 0 to 100. May be null
+     * @param cancelRequest           tells if the rendering was cancelled, in which case all ffmpeg processes are stopped. May be null
+     * @throws IOException if the layer cannot be encoded or a piece could not be rendered
+     * @throws CancellationException if the rendering was cancelled
+     */
+    public static void renderWithLayerInParallel(File sourceFile, long startInMillis, long endInMillis, BufferedImage layerImage, File targetFile, IntConsumer progressPercentListener, BooleanSupplier cancelRequest) throws IOException {
+        final long startNanos = System.nanoTime();
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final List<Long> boundaries = getPieceBoundaries(sourceFile, startInMillis, endInMillis, cores);
+        final int pieceCount = boundaries.size() - 1;
+        if (pieceCount < 2) {
+            renderWithLayer(sourceFile, startInMillis, endInMillis, layerImage, targetFile, cancelRequest);
+            logger.debug("Rendering of '" + sourceFile.getName() + "' done in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms by a single process");
+            return;
+        }
+
+        final byte[] layerPng = encodeLayer(layerImage);
+        encodeInPieces(boundaries, targetFile, progressPercentListener,
+                (fromInMillis, toInMillis, threads, progressMsListener, pieceFile) -> encodePieceWithLayer(sourceFile, fromInMillis, toInMillis, layerPng, threads, progressMsListener, pieceFile, cancelRequest));
+        logger.debug("Rendering of '" + sourceFile.getName() + "' done in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms by " + pieceCount + " processes");
+    }
+
+    /**
+     * Encodes the pieces delimited by the given boundaries at the same time, on a pool sized to the number of cores,
+     * then joins them without re-encoding
+     *
+     * @param boundaries              the boundaries of the pieces, including start and end of the range
+     * @param targetFile              the resulting video
+     * @param progressPercentListener notified of the combined progress of all pieces, from 0 to 100. May be null
+     * @param pieceEncoder            encodes one piece
+     * @throws IOException if a piece could not be encoded, or the pieces could not be joined
+     * @throws CancellationException if the encoding of a piece was cancelled
+     */
+    private static void encodeInPieces(List<Long> boundaries, File targetFile, IntConsumer progressPercentListener, PieceEncoder pieceEncoder) throws IOException {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final int pieceCount = boundaries.size() - 1;
+        // Share the cores between processes, as x264 would otherwise start as many threads per process
+        final int threadsPerPiece = Math.max(1, cores / pieceCount);
+        final AtomicLongArray pieceProgressMs = new AtomicLongArray(pieceCount);
+        final long totalMs = Math.max(1, boundaries.get(pieceCount) - boundaries.get(0));
+        final List<File> pieces = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(cores, pieceCount), runnable -> {
+            Thread thread = new Thread(runnable, "Video encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < pieceCount; i++) {
+                final int pieceIndex = i;
+                final File pieceFile = new File(targetFile.getAbsolutePath() + ".part" + i + ".ts");
+                pieces.add(pieceFile);
+                final LongConsumer progressMsListener = pieceDoneMs -> {
+                    if (progressPercentListener != null) {
+                        pieceProgressMs.set(pieceIndex, pieceDoneMs);
+                        long doneMs = 0;
+                        for (int j = 0; j < pieceCount; j++) {
+                            doneMs += pieceProgressMs.get(j);
+                        }
+                        progressPercentListener.accept((int) Math.min(100, doneMs * 100 / totalMs));
+                    }
+                };
+                futures.add(executor.submit(() -> pieceEncoder.encode(boundaries.get(pieceIndex), boundaries.get(pieceIndex + 1), threadsPerPiece, progressMsListener, pieceFile)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            concat(pieces, targetFile);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Encoding was interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IOException("Could not encode a piece of the video", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+            for (File piece : pieces) {
+                if (piece.exists() && !piece.delete()) {
+                    logger.trace("Could not delete file '" + piece.getAbsolutePath() + "'.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes one piece of a video split by encodeInPieces()
+     */
+    private interface PieceEncoder {
+        /**
+         * Encodes the frames whose timestamps are in [from, to[ to the given piece file, in MPEG-TS format
+         *
+         * @param progressMsListener notified of the encoded duration of the piece, in milliseconds
+         */
+        void encode(long fromInMillis, long toInMillis, int threads, LongConsumer progressMsListener, File pieceFile);
+    }
+
+    /**
+     * Splits the given range into at most the given number of pieces of similar durations, cutting at keyframes
+     *
+     * @return the boundaries of the pieces, including start and end of the range
+     */
+    private static List<Long> getPieceBoundaries(File sourceFile, long startInMillis, long endInMillis, int maxPieceCount) {
+        final List<Long> boundaries = new ArrayList<>();
+        boundaries.add(startInMillis);
+        final int pieceCount = (int) Math.min(maxPieceCount, (endInMillis - startInMillis) / MIN_PARALLEL_PIECE_MS);
+        if (pieceCount > 1) {
+            final long pieceMs = (endInMillis - startInMillis) / pieceCount;
+            long nextCutMs = startInMillis + pieceMs;
+            for (long keyframeMs : getKeyframePositions(sourceFile)) {
+                if (keyframeMs >= nextCutMs && keyframeMs <= endInMillis - MIN_PARALLEL_PIECE_MS / 2) {
+                    boundaries.add(keyframeMs);
+                    nextCutMs = keyframeMs + pieceMs;
+                }
+            }
+        }
+        boundaries.add(endInMillis);
+        return boundaries;
+    }
+
+    /**
+     * Renders the frames whose timestamps are in [from, to[ with the layer composited over them.
+     * Pieces are written in MPEG-TS format, which repeats codec parameters in band, so they can be concatenated.
+     */
+    private static void encodePieceWithLayer(File sourceFile, long fromInMillis, long toInMillis, byte[] layerPng, int threads, LongConsumer progressMsListener, File pieceFile, BooleanSupplier cancelRequest) {
+        // As in encodePiece(), seek 1ms before the cut, as keyframe positions are rounded to the millisecond
+        final long seekMs = Math.max(0, fromInMillis - 1);
+        final FFmpeg ffmpeg = getFFmpeg()
+                .addInput(
+                        UrlInput.fromPath(sourceFile.toPath())
+                                .setPosition(seekMs, TimeUnit.MILLISECONDS)
+                )
+                .addInput(
+                        PipeInput.pumpFrom(new ByteArrayInputStream(layerPng))
+                                .setFormat("png_pipe")
+                )
+                .addArguments("-filter_complex", "[0:v]" + getPieceTrimFilter(fromInMillis, toInMillis, seekMs) + "[v];[v][1:v]overlay=0:0")
+                .setProgressListener(getPieceProgressListener(progressMsListener, 0, 100))
+                .addOutput(
+                        UrlOutput.toPath(pieceFile.toPath())
+                                .setFormat("mpegts")
+                                // Same encoder for all pieces (the MPEG-TS default would be MPEG-2)
+                                .setCodec(StreamType.VIDEO, "libx264")
+                                .addArguments("-threads", String.valueOf(threads))
+                )
+                .setOverwriteOutput(true);
+        executeCancellable(ffmpeg, cancelRequest, pieceFile);
+    }
+
+    /**
+     * @return a filter keeping the frames whose timestamps are in [from, to[, for an input opened at the given position
+     */
+    private static String getPieceTrimFilter(long fromInMillis, long toInMillis, long seekMs) {
+        // Timestamps are relative to the seek position. Unlike input duration, the trim filter is exact
+        return "trim=start=" + toSeconds(fromInMillis - seekMs) + ":end=" + toSeconds(toInMillis - seekMs) + ",setpts=PTS-STARTPTS";
+    }
+
+    /**
+     * @return a listener reporting the progress of one pass over a piece as a share of the piece duration
+     */
+    private static ProgressListener getPieceProgressListener(LongConsumer progressMsListener, long fromMs, int passPercent) {
+        return progress -> {
+            if (progress.getTimeMillis() != null) {
+                progressMsListener.accept(fromMs + progress.getTimeMillis() * passPercent / 100);
+            }
+        };
+    }
+
+    private static byte[] encodeLayer(BufferedImage layerImage) throws IOException {
+        final ByteArrayOutputStream layerPng = new ByteArrayOutputStream();
+        if (!ImageIO.write(layerImage, Misc.IMAGE_FORMAT_PNG, layerPng)) {
+            throw new IOException("Could not encode overlay layer");
+        }
+        return layerPng.toByteArray();
+    }
+
+    /**
+     * Re-encodes the given video so that the resulting file does not exceed the given size, e.g. to fit the
+     * attachment limit of a service. The video bitrate is computed from the duration, then x264 encodes in two passes:
+     * a fast analysis pass logs the complexity of each frame, so that the second pass can spread the bits where
+     * they are needed and hit the average bitrate. Only the video stream is kept.
+     * If the result is still too large (which can happen for very short videos), it is encoded again with a bitrate
+     * lowered in proportion.
+     * Like {@link #renderWithLayerInParallel}, long videos are split at keyframes into pieces encoded at the same time,
+     * each in two passes at the same bitrate, then joined without re-encoding.
+     *
+     * @param sourceFile              the video to re-encode
+     * @param durationMs              the duration of the video
+     * @param maxSizeBytes            the max size of the resulting file
+     * @param targetFile              the resulting video
+     * @param progressPercentListener notified of the progress of both passes, from 0 to 100. May be null
+     * @param cancelRequest           tells if the encoding was cancelled, in which case ffmpeg is stopped. May be null
+     * @throws IOException if the size cannot be reached, even with the lowest bitrate
+     * @throws CancellationException if the encoding was cancelled. The target file is deleted
+     */
+    public static void encodeToSize(File sourceFile, long durationMs, long maxSizeBytes, File targetFile, IntConsumer progressPercentListener, BooleanSupplier cancelRequest) throws IOException {
+        final long startNanos = System.nanoTime();
+        final long safeDurationMs = Math.max(1, durationMs);
+        final List<Long> boundaries = getPieceBoundaries(sourceFile, 0, safeDurationMs, Runtime.getRuntime().availableProcessors());
+        final int pieceCount = boundaries.size() - 1;
+        long bitrateKbps = (long) (maxSizeBytes * 8 * (1 - CONTAINER_OVERHEAD_RATIO) / safeDurationMs);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (bitrateKbps < MIN_VIDEO_BITRATE_KBPS) {
+                throw new IOException("A video of " + safeDurationMs / 1000 + "s cannot fit in " + Misc.getPrettySize(maxSizeBytes));
+            }
+            logger.info("Encoding '" + sourceFile.getName() + "' at " + bitrateKbps + "kb/s to fit in " + Misc.getPrettySize(maxSizeBytes));
+            if (pieceCount < 2) {
+                encodeInTwoPasses(sourceFile, safeDurationMs, bitrateKbps, targetFile, progressPercentListener, cancelRequest);
+            }
+            else {
+                final long pieceBitrateKbps = bitrateKbps;
+                encodeInPieces(boundaries, targetFile, progressPercentListener,
+                        (fromInMillis, toInMillis, threads, progressMsListener, pieceFile) -> encodePieceInTwoPasses(sourceFile, fromInMillis, toInMillis, pieceBitrateKbps, threads, progressMsListener, pieceFile, cancelRequest));
+            }
+            if (targetFile.length() <= maxSizeBytes) {
+                logger.debug("Size-targeted encoding of '" + sourceFile.getName() + "' to " + Misc.getPrettySize(targetFile.length()) + " done in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms by " + pieceCount + " process(es)");
+                return;
+            }
+            logger.info("Encoded video is " + Misc.getPrettySize(targetFile.length()) + ". Encoding again with a lower bitrate");
+            bitrateKbps = (long) (bitrateKbps * (double) maxSizeBytes / targetFile.length() * (1 - CONTAINER_OVERHEAD_RATIO));
+        }
+        throw new IOException("Could not encode video in less than " + Misc.getPrettySize(maxSizeBytes));
+    }
+
+    private static void encodeInTwoPasses(File sourceFile, long durationMs, long bitrateKbps, File targetFile, IntConsumer progressPercentListener, BooleanSupplier cancelRequest) {
+        // x264 appends its own suffixes to this prefix
+        final String passLogPrefix = new File(targetFile.getParentFile(), targetFile.getName() + ".pass").getAbsolutePath();
+        try {
+            // Pass 1: only statistics are written
+            final FFmpeg analysisPass = getFFmpeg()
+                    .addInput(UrlInput.fromPath(sourceFile.toPath()))
+                    .setProgressListener(getPassProgressListener(progressPercentListener, durationMs, 0, SIZE_ANALYSIS_PASS_PERCENT))
+                    .addOutput(
+                            addPassArguments(new NullOutput(), 1, bitrateKbps, passLogPrefix)
+                                    .disableStream(StreamType.AUDIO)
+                    )
+                    .setOverwriteOutput(true);
+            executeCancellable(analysisPass, cancelRequest, null);
+
+            // Pass 2: actual encoding
+            final FFmpeg encodingPass = getFFmpeg()
+                    .addInput(UrlInput.fromPath(sourceFile.toPath()))
+                    .setProgressListener(getPassProgressListener(progressPercentListener, durationMs, SIZE_ANALYSIS_PASS_PERCENT, 100))
+                    .addOutput(
+                            addPassArguments(UrlOutput.toPath(targetFile.toPath()), 2, bitrateKbps, passLogPrefix)
+                                    .disableStream(StreamType.AUDIO)
+                                    .disableStream(StreamType.SUBTITLE)
+                                    .disableStream(StreamType.DATA)
+                    )
+                    .setOverwriteOutput(true);
+            executeCancellable(encodingPass, cancelRequest, targetFile);
+        }
+        finally {
+            deletePassLogFiles(targetFile);
+        }
+    }
+
+    /**
+     * Sets the encoder and its settings for one pass of a size-targeted encoding. All passes must go through this
+     * method, so that they cannot drift apart
+     *
+     * @param pass          1 for the analysis pass, 2 for the actual encoding
+     * @param passLogPrefix the prefix of the statistics files shared by both passes
+     */
+    private static <T extends BaseOutput<T>> T addPassArguments(T output, int pass, long bitrateKbps, String passLogPrefix) {
+        return output
+                .setCodec(StreamType.VIDEO, "libx264")
+                .addArguments("-preset", SIZE_ENCODING_PRESET)
+                .addArguments("-b:v", bitrateKbps + "k")
+                .addArguments("-pass", String.valueOf(pass))
+                .addArguments("-passlogfile", passLogPrefix);
+    }
+
+    /**
+     * Same as encodeInTwoPasses(), for the frames whose timestamps are in [from, to[, written in MPEG-TS format
+     */
+    private static void encodePieceInTwoPasses(File sourceFile, long fromInMillis, long toInMillis, long bitrateKbps, int threads, LongConsumer progressMsListener, File pieceFile, BooleanSupplier cancelRequest) {
+        final String passLogPrefix = new File(pieceFile.getParentFile(), pieceFile.getName() + ".pass").getAbsolutePath();
+        // As in encodePiece(), seek 1ms before the cut, as keyframe positions are rounded to the millisecond
+        final long seekMs = Math.max(0, fromInMillis - 1);
+        final String trimFilter = getPieceTrimFilter(fromInMillis, toInMillis, seekMs);
+        final long analysisPassEndMs = (toInMillis - fromInMillis) * SIZE_ANALYSIS_PASS_PERCENT / 100;
+        try {
+            final FFmpeg analysisPass = getFFmpeg()
+                    .addInput(UrlInput.fromPath(sourceFile.toPath()).setPosition(seekMs, TimeUnit.MILLISECONDS))
+                    .setFilter(StreamType.VIDEO, trimFilter)
+                    .setProgressListener(getPieceProgressListener(progressMsListener, 0, SIZE_ANALYSIS_PASS_PERCENT))
+                    .addOutput(
+                            addPassArguments(new NullOutput(), 1, bitrateKbps, passLogPrefix)
+                                    .disableStream(StreamType.AUDIO)
+                                    .addArguments("-threads", String.valueOf(threads))
+                    )
+                    .setOverwriteOutput(true);
+            executeCancellable(analysisPass, cancelRequest, null);
+
+            final FFmpeg encodingPass = getFFmpeg()
+                    .addInput(UrlInput.fromPath(sourceFile.toPath()).setPosition(seekMs, TimeUnit.MILLISECONDS))
+                    .setFilter(StreamType.VIDEO, trimFilter)
+                    .setProgressListener(getPieceProgressListener(progressMsListener, analysisPassEndMs, 100 - SIZE_ANALYSIS_PASS_PERCENT))
+                    .addOutput(
+                            addPassArguments(UrlOutput.toPath(pieceFile.toPath()), 2, bitrateKbps, passLogPrefix)
+                                    .setFormat("mpegts")
+                                    .disableStream(StreamType.AUDIO)
+                                    .disableStream(StreamType.SUBTITLE)
+                                    .disableStream(StreamType.DATA)
+                                    .addArguments("-threads", String.valueOf(threads))
+                    )
+                    .setOverwriteOutput(true);
+            executeCancellable(encodingPass, cancelRequest, pieceFile);
+        }
+        finally {
+            deletePassLogFiles(pieceFile);
+        }
+    }
+
+    /**
+     * Deletes the statistics written by x264 during the first pass of the encoding to the given file
+     */
+    private static void deletePassLogFiles(File targetFile) {
+        final File[] passLogFiles = targetFile.getParentFile().listFiles((dir, name) -> name.startsWith(targetFile.getName() + ".pass"));
+        if (passLogFiles != null) {
+            for (File passLogFile : passLogFiles) {
+                if (!passLogFile.delete()) {
+                    logger.trace("Could not delete file '" + passLogFile.getAbsolutePath() + "'.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts the given video to an animated GIF in two passes, both streamed by ffmpeg without keeping frames in
+     * memory: the first one builds a 256-colour palette optimised for the parts of the video that change, the second
+     * one maps (and dithers) each frame to that palette.
+     * Frame rate and width are capped, as they drive the size of the GIF much more than they do for a video.
+     * Unlike video encodings, the GIF is rendered by a single process: the palette is computed over the whole video,
+     * and GIF pieces could not be joined without re-encoding them.
+     *
+     * @param sourceFile               the video to convert
+     * @param maxFrameRate             the max number of frames per second of the GIF. Slower videos keep their rate
+     * @param maxWidth                 the max width of the GIF. Narrower videos keep their size
+     * @param targetFile               the GIF to write
+     * @param progressPercentListener  notified of the progress of both passes, from 0 to 100. May be null
+     * @param cancelRequest            tells if the conversion was cancelled, in which case ffmpeg is stopped. May be null
+     * @throws IOException if the palette file cannot be deleted after use
+     * @throws CancellationException if the conversion was cancelled. The target file is deleted
+     */
+    public static void renderGif(File sourceFile, int maxFrameRate, int maxWidth, File targetFile, IntConsumer progressPercentListener, BooleanSupplier cancelRequest) throws IOException {
+        final long startNanos = System.nanoTime();
+        final long durationMs = Math.max(1, getDuration(sourceFile));
+        final String filter = "fps=" + getGifFrameRate(sourceFile, maxFrameRate) + ",scale='min(" + maxWidth + ",iw)':-1:flags=lanczos";
+        final File paletteFile = new File(targetFile.getParentFile(), targetFile.getName() + ".palette.png");
+        try {
+            // Pass 1: colour statistics of the frames, ignoring the static background ("diff" mode)
+            final FFmpeg palettePass = getFFmpeg()
+                    .addInput(UrlInput.fromPath(sourceFile.toPath()))
+                    .setFilter(StreamType.VIDEO, filter + ",palettegen=stats_mode=diff")
+                    .setProgressListener(getPassProgressListener(progressPercentListener, durationMs, 0, GIF_PALETTE_PASS_PERCENT))
+                    .addOutput(UrlOutput.toPath(paletteFile.toPath()).addArguments("-update", "1"))
+                    .setOverwriteOutput(true);
+            executeCancellable(palettePass, cancelRequest, null);
+
+            // Pass 2: ordered dithering does not "crawl" from frame to frame like error diffusion does, and only the
+            // rectangle that changed is re-encoded in each frame
+            final FFmpeg mappingPass = getFFmpeg()
+                    .addInput(UrlInput.fromPath(sourceFile.toPath()))
+                    .addInput(UrlInput.fromPath(paletteFile.toPath()))
+                    .addArguments("-filter_complex", "[0:v]" + filter + "[v];[v][1:v]paletteuse=dither=bayer:bayer_scale=3:diff_mode=rectangle")
+                    .setProgressListener(getPassProgressListener(progressPercentListener, durationMs, GIF_PALETTE_PASS_PERCENT, 100))
+                    .addOutput(UrlOutput.toPath(targetFile.toPath()))
+                    .setOverwriteOutput(true);
+            executeCancellable(mappingPass, cancelRequest, targetFile);
+        }
+        finally {
+            if (paletteFile.exists() && !paletteFile.delete()) {
+                logger.warn("Could not delete palette file '" + paletteFile.getAbsolutePath() + "'");
+            }
+        }
+        logger.debug("GIF rendering of '" + sourceFile.getName() + "' done in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+    }
+
+    /**
+     * Runs the given ffmpeg command and waits for it to end. If the operation it belongs to is cancelled meanwhile,
+     * ffmpeg is stopped (gently first, like a recording), and its partial output is deleted
+     *
+     * @param cancelRequest tells if the operation was cancelled. May be null, in which case ffmpeg cannot be stopped
+     * @param outputFile    the file written by the command, deleted if it is stopped. May be null
+     * @throws CancellationException if the command was stopped because of a cancellation
+     */
+    private static void executeCancellable(FFmpeg ffmpeg, BooleanSupplier cancelRequest, File outputFile) {
+        if (cancelRequest == null) {
+            ffmpeg.execute();
+            return;
+        }
+        final FFmpegResultFuture future = ffmpeg.executeAsync();
+        try {
+            while (!cancelRequest.getAsBoolean()) {
+                try {
+                    future.get(CANCEL_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                catch (TimeoutException e) {
+                    // Still running
+                }
+            }
+            logger.info("Operation cancelled. Stopping ffmpeg");
+            stopRecording(future, logger, false);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            try {
+                future.forceStop();
+            }
+            catch (Exception exception) {
+                // See stopRecording()
+                logger.error("Exception occurred during forceStop()", exception);
+            }
+        }
+        catch (ExecutionException e) {
+            // Report the error the same way as execute() does
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Error running ffmpeg", e.getCause());
+        }
+        if (outputFile != null && outputFile.exists() && !outputFile.delete()) {
+            logger.trace("Could not delete file '" + outputFile.getAbsolutePath() + "'.");
+        }
+        throw new CancellationException("ffmpeg was stopped before the end of its work");
+    }
+
+    /**
+     * @return the frame rate of the given video if it is below the given max, or else the max
+     */
+    private static String getGifFrameRate(File sourceFile, int maxFrameRate) {
+        try {
+            final FFprobeResult result = getFFprobe()
+                    .setInput(sourceFile.toPath())
+                    .setSelectStreams(StreamType.VIDEO)
+                    .setShowEntries("stream=avg_frame_rate")
+                    .execute();
+            for (com.github.kokorin.jaffree.ffprobe.Stream stream : result.getStreams()) {
+                final Rational frameRate = stream.getAvgFrameRate();
+                if (frameRate != null && frameRate.denominator != 0 && frameRate.doubleValue() > 0 && frameRate.doubleValue() < maxFrameRate) {
+                    return frameRate.numerator + "/" + frameRate.denominator;
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            logger.warn("Could not probe frame rate of '" + sourceFile.getAbsolutePath() + "'", e);
+        }
+        return String.valueOf(maxFrameRate);
+    }
+
+    /**
+     * @return a listener reporting the progress of one pass of a multi-pass operation as a share of the whole
+     */
+    private static ProgressListener getPassProgressListener(IntConsumer progressPercentListener, long durationMs, int fromPercent, int toPercent) {
+        if (progressPercentListener == null) {
+            return null;
+        }
+        return progress -> {
+            if (progress.getTimeMillis() != null) {
+                final long passPercent = Math.min(100, progress.getTimeMillis() * 100 / durationMs);
+                progressPercentListener.accept((int) (fromPercent + passPercent * (toPercent - fromPercent) / 100));
+            }
+        };
+    }
+
+    /**
+     * Trims the given video, re-encoding as little as possible: the groups of pictures (GOPs) fully inside the kept
+     * range are copied as is, and only the partial GOPs at each end are re-encoded (with the codec of the source),
+     * so that cuts remain frame-accurate. Pieces are then joined without re-encoding.
+     * If the source does not allow it (unknown codec, other streams than video, B-frames, no complete GOP in the range,
+     * or H.264 pieces re-encoded with other parameter sets than the source) or if it fails, the whole range is
+     * re-encoded (see trim()).
+     * H.264 ends are re-encoded with the recording settings, so among H.264 videos, this only saves time on videos
+     * recorded by Ginj (or encoded the same way): others always end up fully re-encoded.
+     *
+     * @param sourceFile    the video to trim
+     * @param startInMillis the position of the first frame to keep
+     * @param endInMillis   the position after the last frame to keep
+     * @param targetFile    the resulting video
+     */
+    public static void smartTrim(File sourceFile, long startInMillis, long endInMillis, File targetFile) {
+        final long startNanos = System.nanoTime();
+        try {
+            if (trimWithStreamCopy(sourceFile, startInMillis, endInMillis, targetFile)) {
+                logger.debug("Smart trimming of '" + sourceFile.getName() + "' done in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+                return;
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            logger.warn("Smart trimming of '" + sourceFile.getAbsolutePath() + "' failed. Re-encoding the whole range instead.", e);
+        }
+        trim(sourceFile, startInMillis, endInMillis, targetFile);
+        logger.debug("Trimming of '" + sourceFile.getName() + "' done in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+    }
+
+    /**
+     * @return true if the video could be trimmed, false if the source does not allow stream copy
+     */
+    private static boolean trimWithStreamCopy(File sourceFile, long startInMillis, long endInMillis, File targetFile) throws IOException {
+        final FFprobeResult result = getFFprobe()
+                .setInput(sourceFile.toPath())
+                .setShowEntries("stream=codec_type,codec_name,pix_fmt,has_b_frames")
+                .execute();
+        com.github.kokorin.jaffree.ffprobe.Stream videoStream = null;
+        for (com.github.kokorin.jaffree.ffprobe.Stream stream : result.getStreams()) {
+            if (stream.getCodecType() == StreamType.VIDEO && videoStream == null) {
+                videoStream = stream;
+            }
+            else {
+                // Copied and re-encoded pieces would have to be cut at the same positions for each stream
+                logger.debug("Cannot smart trim '" + sourceFile.getName() + "': it has other streams than video");
+                return false;
+            }
+        }
+        if (videoStream == null || getEncoder(videoStream.getCodecName()) == null) {
+            logger.debug("Cannot smart trim '" + sourceFile.getName() + "': no video stream with a known encoder");
+            return false;
+        }
+        if (videoStream.hasBFrames() != null && videoStream.hasBFrames() > 0) {
+            // Packets are cut in decoding order, so B-frames around a cut could lose the frames they refer to
+            logger.debug("Cannot smart trim '" + sourceFile.getName() + "': it has B-frames");
+            return false;
+        }
+
+        // Find the GOPs fully inside the range: from the first keyframe at or after start to the last one at or
+        // before end. Also remember the keyframe starting the partial GOP at the beginning of the range
+        long headKeyframeMs = 0;
+        long firstKeyframeMs = -1;
+        long lastKeyframeMs = -1;
+        for (long keyframeMs : getKeyframePositions(sourceFile)) {
+            if (keyframeMs < startInMillis) {
+                headKeyframeMs = keyframeMs;
+            }
+            if (firstKeyframeMs < 0 && keyframeMs >= startInMillis) {
+                firstKeyframeMs = keyframeMs;
+            }
+            if (keyframeMs <= endInMillis) {
+                lastKeyframeMs = keyframeMs;
+            }
+        }
+        if (firstKeyframeMs < 0 || lastKeyframeMs <= firstKeyframeMs) {
+            logger.debug("Cannot smart trim '" + sourceFile.getName() + "': no complete GOP in the range");
+            return false;
+        }
+
+        // Keyframe positions are rounded to the millisecond, so boundaries are set 1ms before keyframes, which is
+        // between the keyframe and the frame before it
+        final File headFile = new File(targetFile.getAbsolutePath() + ".head.ts");
+        final File middleFile = new File(targetFile.getAbsolutePath() + ".middle.ts");
+        final File tailFile = new File(targetFile.getAbsolutePath() + ".tail.ts");
+        final List<File> pieces = new ArrayList<>();
+        try {
+            if (firstKeyframeMs - 1 > startInMillis) {
+                pieces.add(headFile);
+                encodePiece(sourceFile, headKeyframeMs - 1, startInMillis, firstKeyframeMs - 1, videoStream, headFile);
+            }
+            final boolean hasTail = lastKeyframeMs < endInMillis;
+            pieces.add(middleFile);
+            copyPiece(sourceFile, firstKeyframeMs, hasTail ? lastKeyframeMs - 1 : endInMillis, videoStream, middleFile);
+            if (hasTail) {
+                pieces.add(tailFile);
+                encodePiece(sourceFile, lastKeyframeMs - 1, lastKeyframeMs - 1, endInMillis, videoStream, tailFile);
+            }
+            // A boundary piece may contain no frame at all (e.g. start just before a keyframe), resulting in an empty file
+            final List<File> nonEmptyPieces = pieces.stream().filter(piece -> piece.length() > 0).collect(Collectors.toList());
+            if ("h264".equals(videoStream.getCodecName()) && !haveSameParameterSets(nonEmptyPieces)) {
+                // An MP4 file only stores the parameter sets (SPS/PPS) of its first frames, which would not apply to the others
+                logger.debug("Cannot smart trim '" + sourceFile.getName() + "': re-encoded pieces have other codec parameters than the source");
+                return false;
+            }
+            concat(nonEmptyPieces, targetFile);
+        }
+        finally {
+            for (File piece : pieces) {
+                if (piece.exists() && !piece.delete()) {
+                    logger.trace("Could not delete file '" + piece.getAbsolutePath() + "'.");
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if all given video files have the same codec parameters (e.g. H.264 SPS and PPS)
+     */
+    private static boolean haveSameParameterSets(List<File> files) {
+        String referenceHash = null;
+        for (File file : files) {
+            final FFprobeResult result = getFFprobe()
+                    .setInput(file.toPath())
+                    .setSelectStreams(StreamType.VIDEO)
+                    .setShowEntries("stream=extradata_hash")
+                    .setShowDataHash("MD5")
+                    .execute();
+            if (result.getStreams().isEmpty() || result.getStreams().get(0).getExtradataHash() == null) {
+                return false;
+            }
+            final String hash = result.getStreams().get(0).getExtradataHash();
+            if (referenceHash == null) {
+                referenceHash = hash;
+            }
+            else if (!referenceHash.equals(hash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the packets between the given positions. Start must be a keyframe.
+     * Pieces are written in MPEG-TS format, which repeats codec parameters in band, so they can be concatenated.
+     */
+    private static void copyPiece(File sourceFile, long keyframeInMillis, long endInMillis, com.github.kokorin.jaffree.ffprobe.Stream videoStream, File pieceFile) {
+        final UrlOutput output = UrlOutput.toPath(pieceFile.toPath())
+                .setFormat("mpegts")
+                .copyAllCodecs();
+        if ("mpeg4".equals(videoStream.getCodecName())) {
+            // Unlike H.264, whose parameters are moved in band automatically, the MPEG-4 header must be repeated explicitly
+            output.addArguments("-bsf:v", "dump_extra");
+        }
+        getFFmpeg()
+                .addInput(
+                        UrlInput.fromPath(sourceFile.toPath())
+                                // Copy starts at the last keyframe at or before the position
+                                .setPosition(keyframeInMillis + 1, TimeUnit.MILLISECONDS)
+                                .setDuration(endInMillis - keyframeInMillis - 1, TimeUnit.MILLISECONDS)
+                )
+                .addOutput(output)
+                .setOverwriteOutput(true)
+                .execute();
+    }
+
+    /**
+     * Re-encodes the frames whose timestamps are in [from, to[ with the same codec and pixel format as the source.
+     * Decoding starts at the given seek position, which must be before the keyframe of the GOP containing "from".
+     * Pieces are written in MPEG-TS format, which repeats codec parameters in band, so they can be concatenated.
+     */
+    private static void encodePiece(File sourceFile, long seekInMillis, long fromInMillis, long toInMillis, com.github.kokorin.jaffree.ffprobe.Stream videoStream, File pieceFile) {
+        final UrlOutput output = UrlOutput.toPath(pieceFile.toPath())
+                .setFormat("mpegts")
+                .setCodec(StreamType.VIDEO, getEncoder(videoStream.getCodecName()));
+        if (videoStream.getPixFmt() != null) {
+            output.setPixelFormat(videoStream.getPixFmt());
+        }
+        switch (videoStream.getCodecName()) {
+            // Same settings as recordings, so that the parameter sets (SPS/PPS) of re-encoded frames match the copied
+            // ones. This also keeps the default rate factor, as it is stored in the PPS
+            case "h264" -> addRecordingEncoderArguments(output);
+            // Re-encoded frames are a small part of the video: favour quality over size
+            case "mpeg4" -> output.addArguments("-q:v", "2");
+        }
+        final long seekMs = Math.max(0, seekInMillis);
+        getFFmpeg()
+                .addInput(
+                        UrlInput.fromPath(sourceFile.toPath())
+                                .setPosition(seekMs, TimeUnit.MILLISECONDS)
+                )
+                // Timestamps are relative to the seek position. Unlike input duration, the trim filter is exact
+                .setFilter(StreamType.VIDEO, "trim=start=" + toSeconds(fromInMillis - seekMs) + ":end=" + toSeconds(toInMillis - seekMs) + ",setpts=PTS-STARTPTS")
+                .addOutput(output)
+                .setOverwriteOutput(true)
+                .execute();
+    }
+
+    private static String toSeconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    /**
+     * @param codecName a codec name as reported by ffprobe
+     * @return the name of the encoder to produce the same codec, or null if not supported
+     */
+    private static String getEncoder(String codecName) {
+        if (codecName == null) {
+            return null;
+        }
+        return switch (codecName) {
+            case "h264" -> "libx264";
+            case "mpeg4" -> "mpeg4";
+            default -> null;
+        };
+    }
+
+    /**
+     * Concatenates video files having the same format and codec, without re-encoding them
+     *
+     * @param sourceFiles the files to concatenate, in order
+     * @param targetFile  the resulting file
+     * @throws IOException if the list of files to concatenate cannot be written
+     */
+    public static void concat(List<File> sourceFiles, File targetFile) throws IOException {
+        concat(sourceFiles, UrlOutput.toPath(targetFile.toPath()).copyAllCodecs(), targetFile);
+    }
+
+    /**
+     * Joins the segments of a recording. They are concatenated without re-encoding if they share the same codec
+     * parameters, or else re-encoded with the recording settings, as an MP4 file only stores the parameter sets
+     * (SPS/PPS) of its first frames, which would not apply to the frames of the other segments (e.g. after the
+     * frame rate was lowered)
+     *
+     * @param segmentFiles the recorded segments, in order
+     * @param targetFile   the resulting file
+     * @throws IOException if the list of files to concatenate cannot be written
+     */
+    public static void joinRecordedSegments(List<File> segmentFiles, File targetFile) throws IOException {
+        if (segmentFiles.size() < 2 || haveSameParameterSets(segmentFiles)) {
+            concat(segmentFiles, targetFile);
+        }
+        else {
+            logger.info("Recorded segments have different codec parameters. Re-encoding them");
+            concat(segmentFiles, addRecordingEncoderArguments(UrlOutput.toPath(targetFile.toPath()))
+                    // Keep the timestamps of each segment, whatever its frame rate
+                    .addArguments("-vsync", "vfr"), targetFile);
+        }
+    }
+
+    private static void concat(List<File> sourceFiles, UrlOutput output, File targetFile) throws IOException {
+        File listFile = new File(targetFile.getAbsolutePath() + ".concat.txt");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(listFile))) {
+            for (File sourceFile : sourceFiles) {
+                writer.println("file '" + sourceFile.getAbsolutePath().replace("'", "'\\''") + "'");
+            }
+        }
+        try {
+            getFFmpeg()
+                    .addInput(
+                            UrlInput.fromPath(listFile.toPath())
+                                    .setFormat("concat")
+                                    .addArguments("-safe", "0")
+                    )
+                    .addOutput(output)
+                    .setOverwriteOutput(true)
+                    .execute();
+        }
+        finally {
+            if (!listFile.delete()) {
+                logger.trace("Could not delete file '" + listFile.getAbsolutePath() + "'.");
+            }
+        }
+    }
 }
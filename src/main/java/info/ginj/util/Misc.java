@@ -13,8 +13,10 @@ public class Misc {
     public static final String IMAGE_FORMAT_JPEG = "jpeg";
     public static final String IMAGE_EXTENSION_JPEG = ".jpg";
     public static final String VIDEO_EXTENSION = ".mp4";
+    public static final String IMAGE_EXTENSION_GIF = ".gif";
     public static final String METADATA_EXTENSION = ".xml";
     public static final String THUMBNAIL_EXTENSION = ".thumb.png";
+    public static final String FILMSTRIP_EXTENSION = ".filmstrip.png";
 
     public static String getPrettySize(double bytes) {
         if (bytes < 1024) return bytes + " B";
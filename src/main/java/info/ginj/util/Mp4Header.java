@@ -0,0 +1,97 @@
+package info.ginj.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads metadata from the header atoms (boxes) of MP4/MOV files, without decoding anything.
+ * Only the headers of the top-level atoms are read until the 'moov' atom is found, so the time taken does not depend
+ * on the length of the video, even if 'moov' is stored after the media data (as ffmpeg does by default).
+ */
+public class Mp4Header {
+
+    private static final int ATOM_HEADER_SIZE = 8;
+
+    /**
+     * Reads the duration declared in the movie header ('moov/mvhd' atom)
+     *
+     * @param file the MP4 file to read
+     * @return the duration in milliseconds
+     * @throws IOException if the file cannot be read, is not an MP4 file, or does not declare a duration (e.g. if
+     *                     recording was interrupted before the header was written)
+     */
+    public static long readDurationMs(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final long moovEnd = findAtom(raf, 0, raf.length(), "moov");
+            final long mvhdEnd = findAtom(raf, raf.getFilePointer(), moovEnd, "mvhd");
+
+            // Full box: version (1 byte) + flags (3 bytes)
+            final int version = raf.readUnsignedByte();
+            raf.skipBytes(3);
+            final long timescale;
+            final long duration;
+            if (version == 1) {
+                // 64-bit creation and modification times
+                raf.skipBytes(16);
+                timescale = Integer.toUnsignedLong(raf.readInt());
+                duration = raf.readLong();
+            }
+            else {
+                raf.skipBytes(8);
+                timescale = Integer.toUnsignedLong(raf.readInt());
+                duration = Integer.toUnsignedLong(raf.readInt());
+            }
+            if (raf.getFilePointer() > mvhdEnd) {
+                throw new IOException("Truncated 'mvhd' atom in '" + file.getAbsolutePath() + "'");
+            }
+            // All ones means unknown. 0 is what fragmented files declare, the actual duration being in fragments
+            if (timescale == 0 || duration <= 0 || duration == 0xFFFFFFFFL) {
+                throw new IOException("No duration declared in '" + file.getAbsolutePath() + "'");
+            }
+            return Math.round(duration * 1000.0 / timescale);
+        }
+    }
+
+    /**
+     * Scans the atoms between the given positions for the one of the given type, and positions the file right after
+     * its header.
+     *
+     * @return the end position of the atom found
+     * @throws IOException if no such atom exists
+     */
+    private static long findAtom(RandomAccessFile raf, long start, long end, String type) throws IOException {
+        long position = start;
+        while (position + ATOM_HEADER_SIZE <= end) {
+            raf.seek(position);
+            long size = Integer.toUnsignedLong(raf.readInt());
+            final String atomType = readType(raf);
+            long headerSize = ATOM_HEADER_SIZE;
+            if (size == 1) {
+                // 64-bit size follows the type
+                size = raf.readLong();
+                headerSize += 8;
+            }
+            else if (size == 0) {
+                // Atom extends to the end of its container
+                size = end - position;
+            }
+            if (size < headerSize) {
+                throw new IOException("Invalid size for atom '" + atomType + "' at position " + position);
+            }
+            if (atomType.equals(type)) {
+                return Math.min(position + size, end);
+            }
+            position += size;
+        }
+        throw new EOFException("No '" + type + "' atom found");
+    }
+
+    private static String readType(RandomAccessFile raf) throws IOException {
+        final byte[] type = new byte[4];
+        raf.readFully(type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,329 @@
+package info.ginj.util;
+
+import com.github.kokorin.jaffree.ffmpeg.Frame;
+import com.github.kokorin.jaffree.ffmpeg.FrameProducer;
+import com.github.kokorin.jaffree.ffmpeg.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Grabs an area of the screen with <code>java.awt.Robot</code> and provides it as frames to an ffmpeg
+ * <code>FrameInput</code>, as an alternative to the platform grabbers of ffmpeg (x11grab, gdigrab, avfoundation), so
+ * that recording behaves the same on all platforms and the area is cropped before reaching ffmpeg.
+ * <p>
+ * Grabbing runs on a dedicated thread at the requested frame rate. Each grab is split in tiles which are compared to
+ * the previous grab: only changed tiles are converted to the BGR frame sent to ffmpeg, and a grab where nothing
+ * changed is not sent at all (the previous frame just lasts longer, as the output has a variable frame rate), except
+ * for a keep-alive frame from time to time.
+ * Frames are copied to a fixed pool of buffers. If ffmpeg does not consume frames fast enough and the pool is
+ * exhausted, grabs are missed instead of queued, so memory use remains bounded.
+ */
+public class RobotFrameProducer implements FrameProducer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RobotFrameProducer.class);
+
+    private static final int TILE_SIZE = 32;
+    // Two buffers are held by Jaffree's writer (see produce()), the others are for frames waiting to be sent
+    private static final int POOL_SIZE = 6;
+    // Even if nothing changes, a frame is sent at this interval, so that progress and duration keep increasing
+    private static final long KEEP_ALIVE_MS = 1000;
+    private static final long TIMEBASE = 1000;
+    private static final long STOP_TIMEOUT_MS = 2000;
+    private static final Polygon CURSOR_SHAPE = new Polygon(new int[]{0, 0, 4, 7, 9, 6, 11}, new int[]{0, 16, 12, 18, 17, 11, 11}, 7);
+    // Marks the end of the recording in the frame queue
+    private static final Frame END_OF_STREAM = new Frame(0, 0, new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR));
+
+    private final Rectangle area;
+    private final int frameRate;
+    private final boolean captureMouseCursor;
+
+    // Buffers
+    private final BlockingQueue<BufferedImage> freeImages = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(POOL_SIZE + 1);
+    // Only accessed by the ffmpeg writer thread
+    private final Deque<BufferedImage> sentImages = new ArrayDeque<>();
+    // BGR pixels of the current frame, updated tile by tile. Only accessed by the grabbing thread
+    private final byte[] canvas;
+    private int[] previousPixels;
+
+    // Current state
+    private Thread grabbingThread;
+    private volatile boolean stopped = false;
+
+    // Statistics, only written by the grabbing thread
+    private volatile long grabbedFrames;
+    private volatile long sentFrames;
+    private volatile long skippedFrames;
+    private volatile long missedFrames;
+    private volatile long grabNanos;
+
+    /**
+     * @param area               the area of the screen to grab
+     * @param frameRate          the number of grabs per second
+     * @param captureMouseCursor if true, the mouse cursor is painted on frames
+     */
+    public RobotFrameProducer(Rectangle area, int frameRate, boolean captureMouseCursor) {
+        this.area = new Rectangle(area);
+        this.frameRate = frameRate;
+        this.captureMouseCursor = captureMouseCursor;
+        canvas = new byte[area.width * area.height * 3];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            freeImages.add(new BufferedImage(area.width, area.height, BufferedImage.TYPE_3BYTE_BGR));
+        }
+    }
+
+    /**
+     * Starts grabbing. Frames are queued until ffmpeg starts consuming them (or missed if the pool gets exhausted).
+     */
+    public void start() {
+        grabbingThread = new Thread(this::grabLoop, "Screen grabber");
+        grabbingThread.setDaemon(true);
+        grabbingThread.start();
+    }
+
+    /**
+     * Stops grabbing. A last frame is sent so that the recording lasts until now, then the stream ends, which makes
+     * ffmpeg terminate normally.
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(grabbingThread);
+    }
+
+    public long getGrabbedFrames() {
+        return grabbedFrames;
+    }
+
+    public long getSentFrames() {
+        return sentFrames;
+    }
+
+    /**
+     * @return the number of grabs that were not sent because nothing had changed
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * @return the number of grabs that could not be made in time or sent because encoding was lagging behind
+     */
+    public long getMissedFrames() {
+        return missedFrames;
+    }
+
+    /**
+     * @return the average time taken by a grab, including tile comparison and conversion, in milliseconds
+     */
+    public double getAverageGrabMs() {
+        return grabbedFrames == 0 ? 0 : grabNanos / 1_000_000.0 / grabbedFrames;
+    }
+
+    @Override
+    public List<Stream> produceStreams() {
+        return List.of(new Stream()
+                .setId(0)
+                .setType(Stream.Type.VIDEO)
+                .setTimebase(TIMEBASE)
+                .setResolution(area.width, area.height));
+    }
+
+    @Override
+    public Frame produce() {
+        // Jaffree's writer only writes a frame once it has received the next one (see Jaffree.startRecording), so a
+        // buffer can only be reused once the frame after it was handed over too
+        while (sentImages.size() > 1) {
+            freeImages.offer(sentImages.poll());
+        }
+        final Frame frame;
+        try {
+            frame = frames.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (frame == END_OF_STREAM) {
+            return null;
+        }
+        sentImages.add(frame.getImage());
+        return frame;
+    }
+
+
+    ////////////////////////////////
+    // Grabbing
+
+    /**
+     * Grabs the screen area. Overridable to provide frames from another source, in which case a new image must be
+     * returned each time.
+     *
+     * @param robot the robot to grab with
+     * @return an image of the size of the area
+     */
+    protected BufferedImage grab(Robot robot) {
+        return robot.createScreenCapture(area);
+    }
+
+    private void grabLoop() {
+        final long intervalNanos = 1_000_000_000L / frameRate;
+        final long startNanos = System.nanoTime();
+        long nextGrabNanos = startNanos;
+        long lastSentMs = -KEEP_ALIVE_MS;
+        boolean isCanvasDirty = false;
+        try {
+            final Robot robot = GraphicsEnvironment.isHeadless() ? null : new Robot();
+            while (!stopped) {
+                final long waitNanos = nextGrabNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                    continue;
+                }
+                if (-waitNanos >= intervalNanos) {
+                    // Previous grab took too long. Skip the grabs that should have happened meanwhile
+                    final long lateGrabs = -waitNanos / intervalNanos;
+                    missedFrames += lateGrabs;
+                    nextGrabNanos += lateGrabs * intervalNanos;
+                }
+                nextGrabNanos += intervalNanos;
+
+                final long grabStartNanos = System.nanoTime();
+                isCanvasDirty |= updateCanvas(grab(robot));
+                grabNanos += System.nanoTime() - grabStartNanos;
+                grabbedFrames++;
+
+                final long ptsMs = Math.max(lastSentMs + 1, (grabStartNanos - startNanos) / 1_000_000);
+                if (!isCanvasDirty && ptsMs - lastSentMs < KEEP_ALIVE_MS) {
+                    skippedFrames++;
+                }
+                else if (send(ptsMs, false)) {
+                    lastSentMs = ptsMs;
+                    isCanvasDirty = false;
+                }
+                else {
+                    // Encoding is lagging. Changes remain in the canvas and will be sent with the next frame
+                    missedFrames++;
+                }
+            }
+            // Last frame, so that the recording does not end at the last change
+            send(Math.max(lastSentMs + 1, (System.nanoTime() - startNanos) / 1_000_000), true);
+        }
+        catch (Exception e) {
+            logger.error("Error grabbing screen area " + area, e);
+        }
+        finally {
+            try {
+                if (!frames.offer(END_OF_STREAM, STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    logger.error("Could not signal end of recording to ffmpeg");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Copies the canvas to a free buffer and queues it
+     *
+     * @param wait if true, waits for a buffer to be released, otherwise gives up if none is free
+     * @return true if the frame was queued
+     */
+    private boolean send(long ptsMs, boolean wait) throws InterruptedException {
+        final BufferedImage image = wait ? freeImages.poll(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS) : freeImages.poll();
+        if (image == null) {
+            return false;
+        }
+        final byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(canvas, 0, data, 0, canvas.length);
+        // There is always room in the queue for all buffers
+        frames.put(new Frame(0, ptsMs, image));
+        sentFrames++;
+        return true;
+    }
+
+    /**
+     * Converts the tiles of the grabbed image that differ from the previous grab into the canvas
+     *
+     * @return true if at least one tile changed
+     */
+    private boolean updateCanvas(BufferedImage image) {
+        if (captureMouseCursor) {
+            paintCursor(image);
+        }
+        final int width = area.width;
+        final int height = area.height;
+        final int[] pixels;
+        if (image.getType() == BufferedImage.TYPE_INT_RGB && image.getRaster().getDataBuffer() instanceof DataBufferInt) {
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        else {
+            pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        }
+
+        boolean isChanged = false;
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            final int tileHeight = Math.min(TILE_SIZE, height - tileY);
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                final int tileWidth = Math.min(TILE_SIZE, width - tileX);
+                if (previousPixels == null || isTileChanged(pixels, tileX, tileY, tileWidth, tileHeight)) {
+                    convertTile(pixels, tileX, tileY, tileWidth, tileHeight);
+                    isChanged = true;
+                }
+            }
+        }
+        previousPixels = pixels;
+        return isChanged;
+    }
+
+    private boolean isTileChanged(int[] pixels, int tileX, int tileY, int tileWidth, int tileHeight) {
+        for (int y = tileY; y < tileY + tileHeight; y++) {
+            final int rowStart = y * area.width + tileX;
+            if (Arrays.mismatch(pixels, rowStart, rowStart + tileWidth, previousPixels, rowStart, rowStart + tileWidth) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void convertTile(int[] pixels, int tileX, int tileY, int tileWidth, int tileHeight) {
+        for (int y = tileY; y < tileY + tileHeight; y++) {
+            int pixelIndex = y * area.width + tileX;
+            int byteIndex = pixelIndex * 3;
+            for (int x = 0; x < tileWidth; x++) {
+                final int rgb = pixels[pixelIndex++];
+                canvas[byteIndex++] = (byte) rgb;
+                canvas[byteIndex++] = (byte) (rgb >> 8);
+                canvas[byteIndex++] = (byte) (rgb >> 16);
+            }
+        }
+    }
+
+    private void paintCursor(BufferedImage image) {
+        final PointerInfo pointerInfo = MouseInfo.getPointerInfo();
+        if (pointerInfo == null || !area.contains(pointerInfo.getLocation())) {
+            return;
+        }
+        final Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHints(UI.ANTI_ALIASING_ON);
+        g2d.translate(pointerInfo.getLocation().x - area.x, pointerInfo.getLocation().y - area.y);
+        g2d.setColor(Color.WHITE);
+        g2d.fill(CURSOR_SHAPE);
+        g2d.setColor(Color.BLACK);
+        g2d.draw(CURSOR_SHAPE);
+        g2d.dispose();
+    }
+}
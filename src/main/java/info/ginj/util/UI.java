@@ -24,6 +24,7 @@ import java.awt.event.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorConvertOp;
+import java.awt.image.ImageObserver;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -164,7 +165,8 @@ public class UI {
 
     /**
      * Convert an image to greyscale and apply a dim effect to it.
-     * Used to show unselected area when drawing selection
+     * Used to show unselected area when drawing selection.
+     * Note: this is a full pass on the image. See drawQuickDimmedImage() for a cheap alternative.
      *
      * @param image the source image
      * @return the dimmed result
@@ -180,6 +182,24 @@ public class UI {
         return greyScale;
     }
 
+    /**
+     * Draw an image with a dim effect, without any greyscale conversion.
+     * This is a cheap compositing pass, used while the result of makeDimmedImage() is not available yet
+     *
+     * @param g2d      the graphics to draw on
+     * @param image    the source image
+     * @param x        the x position to draw the image at
+     * @param y        the y position to draw the image at
+     * @param observer the observer to notify
+     */
+    public static void drawQuickDimmedImage(Graphics2D g2d, BufferedImage image, int x, int y, ImageObserver observer) {
+        g2d.drawImage(image, x, y, observer);
+        final Color previousColor = g2d.getColor();
+        g2d.setColor(UNSELECTED_AREA_DIMMED_COLOR);
+        g2d.fillRect(x, y, image.getWidth(), image.getHeight());
+        g2d.setColor(previousColor);
+    }
+
     /**
      * Make a color translucent, that is the same RGB but with half opacity
      *
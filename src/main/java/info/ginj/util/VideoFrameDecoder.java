@@ -0,0 +1,413 @@
+package info.ginj.util;
+
+import com.github.kokorin.jaffree.ffmpeg.Frame;
+import com.github.kokorin.jaffree.ffmpeg.FrameConsumer;
+import com.github.kokorin.jaffree.ffmpeg.FFmpegResultFuture;
+import com.github.kokorin.jaffree.ffmpeg.Stream;
+import info.ginj.model.Prefs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides frames of a video file at arbitrary positions, fast enough to follow the slider of a timeline.
+ * <p>
+ * Instead of launching ffmpeg for each frame, a decoding session is kept running and paused (by not consuming its
+ * output) once it has decoded a bit ahead of the last requested position. A request is served:
+ * - from the LRU cache of decoded frames, if possible,
+ * - by resuming the running session, if the requested position can be reached by decoding forward without crossing
+ *   a keyframe,
+ * - otherwise by starting a new session at the closest keyframe before the requested position (keyframes are
+ *   indexed when the decoder is created).
+ * As a session decodes from a keyframe up to some time after the requested position, frames after the position
+ * end up in the cache. Once that session is paused, if the same time before the position is not cached either (e.g.
+ * right after a seek to a keyframe), a second "backfill" session decodes it from the previous keyframe, so that
+ * moving the slider backwards is served from the cache too.
+ * Only the last request is served: previous pending requests are cancelled.
+ */
+public class VideoFrameDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoFrameDecoder.class);
+
+    private final File file;
+    private final long maxCacheBytes;
+    private final long prefetchMs;
+    private final long[] keyframePositionsMs;
+
+    // Caching
+    private final TreeMap<Long, CachedFrame> framesByPosition = new TreeMap<>();
+    private final LinkedHashMap<Long, CachedFrame> framesByUse = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+
+    // Current state
+    private Session session;
+    // Decodes the frames before the start of the current session, once it is paused
+    private Session backfillSession;
+    private long requestedPositionMs;
+    private CompletableFuture<BufferedImage> pendingRequest;
+    private boolean closed = false;
+
+    public VideoFrameDecoder(File file) {
+        this.file = file;
+        maxCacheBytes = Prefs.getAsLong(Prefs.Key.VIDEO_FRAME_CACHE_SIZE_MB) * 1024 * 1024;
+        prefetchMs = Prefs.getAsLong(Prefs.Key.VIDEO_FRAME_PREFETCH_MS);
+
+        long[] keyframes;
+        try {
+            keyframes = Jaffree.getKeyframePositions(file);
+        }
+        catch (RuntimeException e) {
+            logger.warn("Could not index keyframes of '" + file.getAbsolutePath() + "'. All seeks will decode from the start.", e);
+            keyframes = new long[0];
+        }
+        keyframePositionsMs = keyframes;
+        logger.debug("Indexed " + keyframePositionsMs.length + " keyframes in '" + file.getName() + "'");
+    }
+
+    /**
+     * Requests the frame displayed at the given position. Any previous pending request is cancelled.
+     *
+     * @param positionMs the position in the video, in milliseconds
+     * @return a future that is completed (on a decoding thread) with the frame, or immediately if it was in cache
+     */
+    public synchronized CompletableFuture<BufferedImage> requestFrame(long positionMs) {
+        if (pendingRequest != null) {
+            pendingRequest.cancel(false);
+            pendingRequest = null;
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Decoder is closed"));
+        }
+        requestedPositionMs = positionMs;
+
+        final CachedFrame cachedFrame = getCachedFrame(positionMs);
+        if (cachedFrame != null) {
+            // Keep decoding ahead of the requested position if the current session is there
+            if (session != null && canReach(session, positionMs)) {
+                extendSession(positionMs + prefetchMs);
+            }
+            return CompletableFuture.completedFuture(cachedFrame.image);
+        }
+
+        pendingRequest = new CompletableFuture<>();
+        if (session != null && canReach(session, positionMs)) {
+            // Just resume decoding
+            extendSession(positionMs + prefetchMs);
+        }
+        else {
+            // Seek
+            stopSession();
+            stopBackfillSession();
+            final long keyframePositionMs = getKeyframePositionBefore(positionMs);
+            session = new Session(keyframePositionMs, positionMs + prefetchMs);
+            try {
+                session.future = Jaffree.startDecoding(file, keyframePositionMs, session);
+            }
+            catch (RuntimeException e) {
+                session = null;
+                pendingRequest.completeExceptionally(e);
+            }
+        }
+        return pendingRequest;
+    }
+
+    /**
+     * Returns the frame displayed at the given position, waiting for it to be decoded if needed
+     *
+     * @param positionMs the position in the video, in milliseconds
+     * @param timeoutMs  the max time to wait
+     * @return the frame, or null if it could not be decoded in time
+     */
+    public BufferedImage getFrame(long positionMs, long timeoutMs) {
+        try {
+            return requestFrame(positionMs).get(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch (Exception e) {
+            logger.error("Could not decode frame at " + positionMs + "ms of '" + file.getAbsolutePath() + "'", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops decoding and releases cached frames
+     */
+    public synchronized void close() {
+        closed = true;
+        if (pendingRequest != null) {
+            pendingRequest.cancel(false);
+            pendingRequest = null;
+        }
+        stopSession();
+        stopBackfillSession();
+        framesByPosition.clear();
+        framesByUse.clear();
+        cachedBytes = 0;
+    }
+
+
+    ////////////////////////////////
+    // Sessions
+
+    /**
+     * @return true if the given session can reach the given position by decoding forward, without crossing a keyframe
+     */
+    private boolean canReach(Session session, long positionMs) {
+        return !session.finished
+                && positionMs >= session.startMs
+                && getKeyframePositionBefore(positionMs) <= Math.max(session.startMs, session.lastDecodedMs);
+    }
+
+    private void extendSession(long decodeUntilMs) {
+        if (decodeUntilMs > session.decodeUntilMs) {
+            session.decodeUntilMs = decodeUntilMs;
+            // Wake up the paused session
+            notifyAll();
+        }
+    }
+
+    private void stopSession() {
+        if (session != null) {
+            final FFmpegResultFuture future = session.future;
+            session = null;
+            // Release the consumer so the session thread can terminate
+            notifyAll();
+            forceStop(future);
+        }
+    }
+
+    /**
+     * Starts decoding the frames before the current (paused) session, unless they are cached already
+     */
+    private void startBackfillSession() {
+        final long windowStartMs = Math.max(0, requestedPositionMs - prefetchMs);
+        if (backfillSession != null || session.startMs <= windowStartMs
+                || (getCachedFrame(windowStartMs) != null && getCachedFrame(session.startMs - 1) != null)) {
+            return;
+        }
+        final long keyframePositionMs = getKeyframePositionBefore(windowStartMs);
+        backfillSession = new Session(keyframePositionMs, session.startMs);
+        try {
+            backfillSession.future = Jaffree.startDecoding(file, keyframePositionMs, backfillSession);
+        }
+        catch (RuntimeException e) {
+            // Not needed to serve any request
+            logger.debug("Could not start backfill session at " + keyframePositionMs + "ms", e);
+            backfillSession = null;
+        }
+    }
+
+    private void stopBackfillSession() {
+        if (backfillSession != null) {
+            final FFmpegResultFuture future = backfillSession.future;
+            backfillSession = null;
+            forceStop(future);
+        }
+    }
+
+    private static void forceStop(FFmpegResultFuture future) {
+        if (future != null) {
+            try {
+                // Only kills the process, so it can be called from the session thread itself
+                future.forceStop();
+            }
+            catch (Exception e) {
+                // Jaffree is known to throw when forcing a stop. See Jaffree.stopRecording()
+                logger.debug("Exception stopping decoding session", e);
+            }
+        }
+    }
+
+    private synchronized void onFrameDecoded(Session frameSession, Frame frame) {
+        if (frameSession == backfillSession) {
+            onBackfillFrameDecoded(frame);
+            return;
+        }
+        if (frameSession != session) {
+            // Obsolete session being stopped
+            return;
+        }
+        if (frame == null) {
+            // End of file: the last frame lasts forever
+            if (session.lastFrame != null) {
+                session.lastFrame.endMs = Long.MAX_VALUE;
+            }
+            session.finished = true;
+            servePendingRequest();
+            return;
+        }
+        if (frame.getImage() == null) {
+            return;
+        }
+
+        final long frameMs = getFramePosition(session, frame);
+        if (session.lastFrame != null) {
+            session.lastFrame.endMs = frameMs;
+        }
+        final CachedFrame cachedFrame = new CachedFrame(frame.getImage(), frameMs);
+        addToCache(cachedFrame);
+        session.lastFrame = cachedFrame;
+        session.lastDecodedMs = frameMs;
+
+        servePendingRequest();
+
+        if (pendingRequest == null && session.lastDecodedMs >= session.decodeUntilMs) {
+            // Nothing left to wait for: use the pause to decode behind the position
+            startBackfillSession();
+        }
+
+        // Pause once far enough ahead. This blocks the ffmpeg output, which in turn pauses ffmpeg
+        while (frameSession == session && session.lastDecodedMs >= session.decodeUntilMs) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void onBackfillFrameDecoded(Frame frame) {
+        if (frame == null) {
+            // End of file, before reaching the current session: nothing more to decode
+            stopBackfillSession();
+            return;
+        }
+        if (frame.getImage() == null) {
+            return;
+        }
+        final long frameMs = getFramePosition(backfillSession, frame);
+        if (backfillSession.lastFrame != null) {
+            // The last frame before the current session lasts until its start
+            backfillSession.lastFrame.endMs = Math.min(frameMs, backfillSession.decodeUntilMs);
+        }
+        if (frameMs >= backfillSession.decodeUntilMs) {
+            // The rest was decoded by the current session
+            stopBackfillSession();
+            return;
+        }
+        final CachedFrame cachedFrame = new CachedFrame(frame.getImage(), frameMs);
+        addToCache(cachedFrame);
+        backfillSession.lastFrame = cachedFrame;
+        backfillSession.lastDecodedMs = frameMs;
+    }
+
+    /**
+     * @return the position of the given frame decoded by the given session
+     */
+    private long getFramePosition(Session frameSession, Frame frame) {
+        if (frameSession.lastFrame == null) {
+            // The first frame covers the start of the session, even if the seek landed slightly after it
+            return frameSession.startMs;
+        }
+        return Math.max(frameSession.startMs + frame.getPts() * 1000 / frameSession.timebase, frameSession.lastFrame.startMs + 1);
+    }
+
+    private void servePendingRequest() {
+        if (pendingRequest != null) {
+            final CachedFrame cachedFrame = getCachedFrame(requestedPositionMs);
+            if (cachedFrame != null) {
+                pendingRequest.complete(cachedFrame.image);
+                pendingRequest = null;
+            }
+            else if (session.finished) {
+                pendingRequest.completeExceptionally(new IllegalStateException("No frame found at " + requestedPositionMs + "ms"));
+                pendingRequest = null;
+            }
+        }
+    }
+
+    private long getKeyframePositionBefore(long positionMs) {
+        int index = Arrays.binarySearch(keyframePositionsMs, positionMs);
+        if (index < 0) {
+            // Not a keyframe position: take the previous one
+            index = -index - 2;
+        }
+        return index < 0 ? 0 : keyframePositionsMs[index];
+    }
+
+
+    ////////////////////////////////
+    // Cache
+
+    private CachedFrame getCachedFrame(long positionMs) {
+        final Map.Entry<Long, CachedFrame> entry = framesByPosition.floorEntry(positionMs);
+        if (entry != null && positionMs < entry.getValue().endMs) {
+            // Mark as recently used
+            return framesByUse.get(entry.getKey());
+        }
+        return null;
+    }
+
+    private void addToCache(CachedFrame cachedFrame) {
+        final CachedFrame previousFrame = framesByPosition.put(cachedFrame.startMs, cachedFrame);
+        if (previousFrame != null) {
+            cachedBytes -= previousFrame.sizeBytes;
+        }
+        framesByUse.put(cachedFrame.startMs, cachedFrame);
+        cachedBytes += cachedFrame.sizeBytes;
+
+        final Iterator<CachedFrame> iterator = framesByUse.values().iterator();
+        while (cachedBytes > maxCacheBytes && framesByUse.size() > 1 && iterator.hasNext()) {
+            // Least recently used first
+            final CachedFrame evictedFrame = iterator.next();
+            iterator.remove();
+            framesByPosition.remove(evictedFrame.startMs);
+            cachedBytes -= evictedFrame.sizeBytes;
+        }
+    }
+
+    private static class CachedFrame {
+        private final BufferedImage image;
+        private final long startMs;
+        private final long sizeBytes;
+        // Exclusive. Unknown (thus empty range) until the next frame is decoded
+        private long endMs;
+
+        CachedFrame(BufferedImage image, long startMs) {
+            this.image = image;
+            this.startMs = startMs;
+            this.endMs = startMs;
+            final DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+            this.sizeBytes = (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+        }
+    }
+
+    /**
+     * A running ffmpeg process decoding from a given position
+     */
+    private class Session implements FrameConsumer {
+        private final long startMs;
+        private long decodeUntilMs;
+        private long lastDecodedMs = -1;
+        private CachedFrame lastFrame;
+        private long timebase = 1000;
+        private boolean finished = false;
+        private FFmpegResultFuture future;
+
+        Session(long startMs, long decodeUntilMs) {
+            this.startMs = startMs;
+            this.decodeUntilMs = decodeUntilMs;
+        }
+
+        @Override
+        public void consumeStreams(List<Stream> streams) {
+            for (Stream stream : streams) {
+                if (stream.getType() == Stream.Type.VIDEO && stream.getTimebase() != null) {
+                    timebase = stream.getTimebase();
+                }
+            }
+        }
+
+        @Override
+        public void consume(Frame frame) {
+            onFrameDecoded(this, frame);
+        }
+    }
+}
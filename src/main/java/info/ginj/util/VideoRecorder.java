@@ -0,0 +1,513 @@
+package info.ginj.util;
+
+import com.github.kokorin.jaffree.ffmpeg.FFmpegProgress;
+import com.github.kokorin.jaffree.ffmpeg.FFmpegResultFuture;
+import info.ginj.model.Prefs;
+import info.ginj.model.RecordingStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Records an area of the screen to a video file, adapting to the load of the machine.
+ * <p>
+ * Progress reported by ffmpeg is gathered into {@link RecordingStats}. Encoding speed and duplicated/dropped frames
+ * are monitored. When encoding cannot keep up with
+ * the requested frame rate for a few seconds (which would otherwise result in stutter and a growing backlog), the
+ * running ffmpeg process is stopped and a new one is started with a lower frame rate, down to a minimum. Other
+ * encoder settings stay the same for the whole recording.
+ * As a process cannot change its settings, the recording is made of MPEG-TS segments (one per set of settings),
+ * which are concatenated when recording stops, without re-encoding unless the frame rate change also changed the
+ * codec parameters (see Jaffree.joinRecordedSegments()). Each switch causes a short gap in the recording.
+ * <p>
+ * Recording can also be paused: the running segment is ended, and resuming starts a new one with the same settings.
+ * Stopping a paused recording only has to concatenate the segments, which takes about as long as copying them.
+ * <p>
+ * The screen is grabbed by ffmpeg, or in Java by a {@link RobotFrameProducer} if set in preferences.
+ */
+public class VideoRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoRecorder.class);
+
+    // Encoding speed (relative to real time) under which the encoder is considered not to keep up
+    private static final double MIN_SPEED = 0.9;
+    // Proportion of frames duplicated to fill gaps over which the capture is considered not to keep up
+    private static final double MAX_DUPLICATED_RATIO = 0.2;
+    // Figures reported by ffmpeg are not relevant before this delay after each start
+    private static final long WARMUP_MS = 5000;
+    // Lag must last this long before settings are lowered
+    private static final long SUSTAINED_LAG_MS = 4000;
+    private static final int DEFAULT_FRAME_RATE = 10;
+
+    public interface Listener {
+        /**
+         * Called (on a recording thread) each time ffmpeg reports progress, and when settings are lowered
+         */
+        void recordingUpdated(VideoRecorder recorder);
+    }
+
+    private final Rectangle area;
+    private final boolean captureMouseCursor;
+    private final File targetFile;
+    private final Listener listener;
+    private final boolean isAdaptive;
+    private final boolean useJavaGrabber;
+    private final int minFrameRate;
+
+    // Starting and stopping segments is serialized by this lock. Progress figures are guarded by "this", so that
+    // progress can still be reported while a segment is being stopped
+    private final Object lifecycleLock = new Object();
+    private final ExecutorService adaptationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Recording adaptation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Current state
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<String> adaptations = new ArrayList<>();
+    private final List<Long> segmentBoundariesMs = new ArrayList<>();
+    private Segment currentSegment;
+    private boolean paused = false;
+    private boolean stopped = false;
+
+    // Statistics
+    private int requestedFrameRate;
+    private long startNanos;
+    private long endNanos = -1;
+    private long pauseStartNanos = -1;
+    private long pausedNanos;
+    private long lastProgressNanos;
+    private long lastCapturedFrames;
+    private double currentFps;
+    private double lowestSpeed;
+
+    /**
+     * @param area               the area to record
+     * @param captureMouseCursor if true, the mouse cursor is recorded
+     * @param targetFile         the MP4 file to write when recording stops. Segments are written next to it
+     * @param listener           notified of progress
+     */
+    public VideoRecorder(Rectangle area, boolean captureMouseCursor, File targetFile, Listener listener) {
+        this.area = area;
+        this.captureMouseCursor = captureMouseCursor;
+        this.targetFile = targetFile;
+        this.listener = listener;
+        isAdaptive = Prefs.isTrue(Prefs.Key.VIDEO_ADAPTIVE_RECORDING);
+        useJavaGrabber = Prefs.isTrue(Prefs.Key.VIDEO_JAVA_GRABBER);
+        minFrameRate = Math.max(1, Prefs.getAsInt(Prefs.Key.VIDEO_MIN_FRAMERATE));
+    }
+
+    public void start() {
+        int frameRate;
+        try {
+            frameRate = Integer.parseInt(Prefs.get(Prefs.Key.VIDEO_FRAMERATE));
+        }
+        catch (Exception e) {
+            frameRate = DEFAULT_FRAME_RATE;
+        }
+        synchronized (this) {
+            requestedFrameRate = frameRate;
+            startNanos = System.nanoTime();
+            lastProgressNanos = startNanos;
+        }
+        synchronized (lifecycleLock) {
+            startSegment(new Settings(frameRate));
+        }
+    }
+
+    /**
+     * Ends the running segment. Nothing is recorded until {@link #resume()} is called
+     */
+    public void pause() {
+        synchronized (lifecycleLock) {
+            if (stopped || paused) {
+                return;
+            }
+            synchronized (this) {
+                paused = true;
+                pauseStartNanos = System.nanoTime();
+                currentFps = 0;
+            }
+            logger.info("Pausing recording");
+            // Even if ffmpeg had to be killed, what was written so far can be used, as MPEG-TS can be truncated anywhere
+            stopSegment();
+        }
+        listener.recordingUpdated(this);
+    }
+
+    /**
+     * Starts a new segment with the settings of the last one
+     */
+    public void resume() {
+        synchronized (lifecycleLock) {
+            if (stopped || !paused) {
+                return;
+            }
+            final Settings settings;
+            synchronized (this) {
+                paused = false;
+                pausedNanos += System.nanoTime() - pauseStartNanos;
+                pauseStartNanos = -1;
+                lastProgressNanos = System.nanoTime();
+                settings = segments.get(segments.size() - 1).settings;
+            }
+            logger.info("Resuming recording");
+            startSegment(settings);
+        }
+        listener.recordingUpdated(this);
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Stops recording and concatenates the recorded segments into the target file
+     *
+     * @return true if the target file was written
+     */
+    public boolean stop() {
+        synchronized (lifecycleLock) {
+            stopped = true;
+            adaptationExecutor.shutdown();
+            final boolean isStopped = stopSegment();
+            synchronized (this) {
+                endNanos = pauseStartNanos < 0 ? System.nanoTime() : pauseStartNanos;
+            }
+            if (!isStopped) {
+                deleteSegments();
+                return false;
+            }
+            try {
+                final List<Segment> recordedSegments = getRecordedSegments();
+                // The encoding progress lags behind what is actually written, so probe the real duration of each
+                // segment while the files still exist
+                final List<Long> boundariesMs = new ArrayList<>();
+                long positionMs = 0;
+                for (Segment segment : recordedSegments) {
+                    if (positionMs > 0) {
+                        boundariesMs.add(positionMs);
+                    }
+                    positionMs += Jaffree.getDuration(segment.file);
+                }
+                synchronized (this) {
+                    segmentBoundariesMs.addAll(boundariesMs);
+                }
+                final List<File> segmentFiles = recordedSegments.stream().map(segment -> segment.file).collect(Collectors.toList());
+                if (segmentFiles.isEmpty()) {
+                    UI.alertError(null, "Recording error", "Nothing was recorded");
+                    return false;
+                }
+                Jaffree.joinRecordedSegments(segmentFiles, targetFile);
+                return true;
+            }
+            catch (IOException | RuntimeException e) {
+                UI.alertException(null, "Recording error", "There was an error assembling the recorded video", e, logger);
+                return false;
+            }
+            finally {
+                deleteSegments();
+            }
+        }
+    }
+
+    /**
+     * Stops recording and discards what was recorded
+     */
+    public void cancel() {
+        synchronized (lifecycleLock) {
+            stopped = true;
+            adaptationExecutor.shutdown();
+            stopSegment();
+            deleteSegments();
+        }
+    }
+
+    /**
+     * @return the recorded duration, based on the number of frames encoded
+     */
+    public synchronized long getElapsedMs() {
+        long elapsedMs = 0;
+        for (Segment segment : segments) {
+            elapsedMs += segment.getDurationMs();
+        }
+        return elapsedMs;
+    }
+
+    /**
+     * @return the positions in the recorded video where a segment ends and the next one starts, i.e. where recording
+     * was paused or its settings were changed. Positions are based on the durations of the segment files, as written.
+     * Only known once the recording is stopped
+     */
+    public synchronized List<Long> getSegmentBoundariesMs() {
+        return new ArrayList<>(segmentBoundariesMs);
+    }
+
+    /**
+     * @return a snapshot of the figures measured since recording started, or until it stopped
+     */
+    public synchronized RecordingStats getStats() {
+        final RecordingStats stats = new RecordingStats();
+        stats.setRequestedFrameRate(requestedFrameRate);
+        stats.setFrameRate(getFrameRate());
+        for (Segment segment : segments) {
+            stats.setFrameCount(stats.getFrameCount() + segment.frameCount);
+            stats.setDroppedFrames(stats.getDroppedFrames() + segment.droppedFrames + segment.missedFrames);
+            stats.setDuplicatedFrames(stats.getDuplicatedFrames() + segment.duplicatedFrames);
+            stats.setSizeBytes(stats.getSizeBytes() + segment.sizeBytes);
+        }
+        final long nowNanos = endNanos >= 0 ? endNanos : (pauseStartNanos >= 0 ? pauseStartNanos : System.nanoTime());
+        final long durationMs = (nowNanos - startNanos - pausedNanos) / 1_000_000;
+        stats.setDurationMs(durationMs);
+        if (durationMs > 0) {
+            stats.setAverageFps((stats.getFrameCount() - stats.getDuplicatedFrames()) * 1000.0 / durationMs);
+        }
+        stats.setCurrentFps(currentFps);
+        stats.setLowestSpeed(lowestSpeed);
+        if (currentSegment != null) {
+            stats.setSpeed(currentSegment.speed);
+            stats.setBitrateKbps(currentSegment.bitrateKbps);
+        }
+        else if (!segments.isEmpty()) {
+            stats.setBitrateKbps(segments.get(segments.size() - 1).bitrateKbps);
+        }
+        return stats;
+    }
+
+    /**
+     * @return the frame rate currently recorded
+     */
+    public synchronized int getFrameRate() {
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1).settings.frameRate;
+    }
+
+    /**
+     * @return a description of each change of settings during the recording, in chronological order
+     */
+    public synchronized List<String> getAdaptations() {
+        return Collections.unmodifiableList(new ArrayList<>(adaptations));
+    }
+
+
+    ////////////////////////////////
+    // Segments
+
+    private void startSegment(Settings settings) {
+        final String baseName = targetFile.getName().replaceFirst("\\.[^.]*$", "");
+        final Segment segment;
+        synchronized (this) {
+            segment = new Segment(settings, new File(targetFile.getParentFile(), baseName + "_part" + segments.size() + ".ts"));
+            segments.add(segment);
+            currentSegment = segment;
+        }
+        logger.info("Recording " + area + " at " + settings + (useJavaGrabber ? " with Java grabber" : ""));
+        if (useJavaGrabber) {
+            segment.producer = new RobotFrameProducer(area, settings.frameRate, captureMouseCursor);
+            segment.producer.start();
+            segment.future = Jaffree.startRecording(segment.producer, progress -> onProgress(segment, progress), segment.file.getAbsolutePath());
+        }
+        else {
+            segment.future = Jaffree.startRecording(area, settings.frameRate, captureMouseCursor, progress -> onProgress(segment, progress), segment.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return true if there was no running segment or it ended gracefully
+     */
+    private boolean stopSegment() {
+        final Segment segment;
+        synchronized (this) {
+            segment = currentSegment;
+            currentSegment = null;
+        }
+        if (segment == null || segment.future == null) {
+            return true;
+        }
+        if (segment.producer != null) {
+            // Ending the stream makes ffmpeg terminate by itself
+            segment.producer.stop();
+            logger.info("Java grabber: " + segment.producer.getGrabbedFrames() + " grabs, " + segment.producer.getSkippedFrames() + " unchanged, "
+                    + segment.producer.getMissedFrames() + " missed, " + String.format(Locale.ROOT, "%.1f", segment.producer.getAverageGrabMs()) + "ms per grab");
+        }
+        return Jaffree.stopRecording(segment.future, logger);
+    }
+
+    /**
+     * @return the segments that were actually written to
+     */
+    private synchronized List<Segment> getRecordedSegments() {
+        return segments.stream().filter(segment -> segment.file.length() > 0).collect(Collectors.toList());
+    }
+
+    private void deleteSegments() {
+        for (Segment segment : segments) {
+            if (segment.file.exists() && !segment.file.delete()) {
+                logger.trace("Could not delete file '" + segment.file.getAbsolutePath() + "'.");
+            }
+        }
+    }
+
+    private void onProgress(Segment segment, FFmpegProgress progress) {
+        synchronized (this) {
+            final long nowNanos = System.nanoTime();
+            final long frameCount = progress.getFrame() == null ? segment.frameCount : progress.getFrame();
+            final long duplicatedFrames = progress.getDup() == null ? segment.duplicatedFrames : progress.getDup();
+            final long droppedFrames = progress.getDrop() == null ? segment.droppedFrames : progress.getDrop();
+            final long missedFrames = segment.producer == null ? 0 : segment.producer.getMissedFrames();
+            final boolean isWarmedUp = (nowNanos - segment.startNanos) / 1_000_000 > WARMUP_MS;
+
+            if (isAdaptive && segment == currentSegment && !segment.isAdaptationRequested && isWarmedUp) {
+                final long newFrames = frameCount - segment.frameCount;
+                final boolean isLagging = (progress.getSpeed() != null && progress.getSpeed() < MIN_SPEED)
+                        || droppedFrames + missedFrames > segment.droppedFrames + segment.missedFrames
+                        || (newFrames > 0 && (duplicatedFrames - segment.duplicatedFrames) > newFrames * MAX_DUPLICATED_RATIO);
+                if (!isLagging) {
+                    segment.lagStartNanos = -1;
+                }
+                else if (segment.lagStartNanos < 0) {
+                    segment.lagStartNanos = nowNanos;
+                }
+                else if ((nowNanos - segment.lagStartNanos) / 1_000_000 >= SUSTAINED_LAG_MS) {
+                    requestAdaptation(segment, progress);
+                }
+            }
+
+            final long capturedFramesDelta = (frameCount - duplicatedFrames) - (segment.frameCount - segment.duplicatedFrames);
+            segment.frameCount = frameCount;
+            segment.duplicatedFrames = duplicatedFrames;
+            segment.droppedFrames = droppedFrames;
+            segment.missedFrames = missedFrames;
+            if (progress.getTimeMillis() != null) {
+                segment.timeMs = progress.getTimeMillis();
+            }
+            if (progress.getSize() != null) {
+                segment.sizeBytes = progress.getSize();
+            }
+            if (progress.getBitrate() != null) {
+                segment.bitrateKbps = progress.getBitrate();
+            }
+            if (progress.getSpeed() != null) {
+                segment.speed = progress.getSpeed();
+                if (isWarmedUp && (lowestSpeed == 0 || segment.speed < lowestSpeed)) {
+                    lowestSpeed = segment.speed;
+                }
+            }
+            if (!paused && nowNanos > lastProgressNanos) {
+                currentFps = capturedFramesDelta * 1_000_000_000.0 / (nowNanos - lastProgressNanos);
+            }
+            lastProgressNanos = nowNanos;
+        }
+        listener.recordingUpdated(this);
+    }
+
+    private void requestAdaptation(Segment segment, FFmpegProgress progress) {
+        segment.isAdaptationRequested = true;
+        final Settings lighterSettings = segment.settings.getLighterSettings(minFrameRate);
+        if (lighterSettings == null) {
+            logger.warn("Encoding cannot keep up with recording (" + progress + "), but settings cannot be lowered further");
+            return;
+        }
+        final String reason = String.format(Locale.ROOT, "speed %.2fx, %d duplicated and %d dropped frames", progress.getSpeed() == null ? 0 : progress.getSpeed(), segment.duplicatedFrames, segment.droppedFrames);
+        try {
+            adaptationExecutor.submit(() -> adapt(segment, lighterSettings, reason));
+        }
+        catch (RejectedExecutionException e) {
+            // Recording was stopped meanwhile
+            logger.debug("Recording adaptation not scheduled, as recording is over");
+        }
+    }
+
+    private void adapt(Segment segment, Settings lighterSettings, String reason) {
+        synchronized (lifecycleLock) {
+            if (stopped || segment != currentSegment) {
+                return;
+            }
+            final Duration elapsed = Duration.ofMillis(getElapsedMs());
+            final String adaptation = String.format("%02d:%02d:%02d %s, because encoding could not keep up with %s (%s)",
+                    elapsed.toHours(), elapsed.toMinutesPart(), elapsed.toSecondsPart(), lighterSettings, segment.settings, reason);
+            logger.warn("Lowering recording settings at " + adaptation);
+            synchronized (this) {
+                adaptations.add(adaptation);
+            }
+            stopSegment();
+            startSegment(lighterSettings);
+        }
+        listener.recordingUpdated(this);
+    }
+
+    /**
+     * Encoding settings of a segment
+     */
+    private static class Settings {
+        private final int frameRate;
+
+        Settings(int frameRate) {
+            this.frameRate = frameRate;
+        }
+
+        /**
+         * @return settings requiring less CPU, or null if these are the lightest ones
+         */
+        Settings getLighterSettings(int minFrameRate) {
+            if (frameRate > minFrameRate) {
+                return new Settings(Math.max(minFrameRate, frameRate / 2));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return frameRate + " fps";
+        }
+    }
+
+    /**
+     * A part of the recording, written by a single ffmpeg process with fixed settings
+     */
+    private static class Segment {
+        private final Settings settings;
+        private final File file;
+        private final long startNanos = System.nanoTime();
+        private FFmpegResultFuture future;
+        // Only if the Java grabber is used
+        private RobotFrameProducer producer;
+        private long frameCount;
+        private long duplicatedFrames;
+        private long droppedFrames;
+        // Grabs missed by the Java grabber
+        private long missedFrames;
+        private long timeMs;
+        private long sizeBytes;
+        private double bitrateKbps;
+        private double speed;
+        private long lagStartNanos = -1;
+        private boolean isAdaptationRequested = false;
+
+        Segment(Settings settings, File file) {
+            this.settings = settings;
+            this.file = file;
+        }
+
+        long getDurationMs() {
+            if (producer != null) {
+                // Unchanged frames are not encoded, but timestamps start at 0
+                return timeMs;
+            }
+            // ffmpeg's own time has an offset of a few seconds compared to actual capture time, so use the frame count
+            return 1000 * frameCount / settings.frameRate;
+        }
+    }
+}
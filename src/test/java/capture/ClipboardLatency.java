@@ -0,0 +1,66 @@
+package capture;
+
+import info.ginj.model.Prefs;
+import info.ginj.ui.QuickClipboardCapture;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Measures the end-to-end latency of the "repeat last capture to clipboard" fast path on the main display,
+ * by timing QuickClipboardCapture.captureLastRegion() as called by the hotkey: grab of the region, transfer to the
+ * system clipboard, and queueing of the history save.
+ * History is redirected to a temporary folder for the run (without saving preferences), so it is not polluted.
+ * Requires a display. Target is below 100ms.
+ */
+public class ClipboardLatency {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 50;
+    private static final long TARGET_MS = 100;
+
+    public static void main(String[] args) throws AWTException, IOException {
+        final File historyFolder = Files.createTempDirectory("ginj-history").toFile();
+        Prefs.set(Prefs.Key.CAPTURE_HISTORY_PATH, historyFolder.getAbsolutePath());
+
+        final Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().getBounds();
+        // A typical "chat screenshot" region, in the middle of the main display
+        final Rectangle region = new Rectangle(screen.x + screen.width / 4, screen.y + screen.height / 4, screen.width / 2, screen.height / 2);
+        System.out.println("Capturing " + region + " to clipboard " + ITERATIONS + " times (history in " + historyFolder + ")");
+
+        QuickClipboardCapture.setLastRegion(region);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            QuickClipboardCapture.captureLastRegion();
+        }
+
+        long[] totalNanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long startNanos = System.nanoTime();
+            QuickClipboardCapture.captureLastRegion();
+            totalNanos[i] = System.nanoTime() - startNanos;
+        }
+
+        final long p95Ms = printStats("Total", totalNanos);
+        if (p95Ms > TARGET_MS) {
+            System.out.println("FAILED: 95th percentile is above " + TARGET_MS + "ms");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    /**
+     * @return the 95th percentile, in ms
+     */
+    private static long printStats(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        final long p50Ms = sorted[sorted.length / 2] / 1_000_000;
+        final long p95Ms = sorted[(int) (sorted.length * 0.95)] / 1_000_000;
+        final long maxMs = sorted[sorted.length - 1] / 1_000_000;
+        System.out.println(label + ": p50=" + p50Ms + "ms, p95=" + p95Ms + "ms, max=" + maxMs + "ms");
+        return p95Ms;
+    }
+}
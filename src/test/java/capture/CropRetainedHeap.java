@@ -0,0 +1,98 @@
+package capture;
+
+import info.ginj.model.Capture;
+import info.ginj.model.TiledScreenCapture;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a capture handed to the editor only retains the pixels of the selection, and not the whole
+ * multi-display screenshot it was cropped from, both for a selection inside a single display (where sharing the
+ * display's raster would be the tempting shortcut) and for one spanning several displays.
+ * Uses synthetic tiles so it can run without a display. Run with e.g. -Xmx512m
+ */
+public class CropRetainedHeap {
+    private static final int BYTES_PER_PIXEL = 4; // TYPE_INT_RGB
+    // Tolerance for the measurement noise of the heap (class loading, JIT, etc.)
+    private static final long HEAP_SLACK_BYTES = 8 * 1024 * 1024;
+
+    public static void main(String[] args) {
+        boolean success = checkCrop("Inside the 4K display", new Rectangle(1000, 500, 1600, 900));
+        success &= checkCrop("Spanning both displays", new Rectangle(3000, 500, 1600, 900));
+        if (!success) {
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Crops the given selection from a synthetic desktop and checks that the resulting capture only retains the crop
+     *
+     * @return true if the check succeeded
+     */
+    private static boolean checkCrop(String label, Rectangle selection) {
+        System.out.println(label + ": " + selection);
+        final long cropBytes = (long) selection.width * selection.height * BYTES_PER_PIXEL;
+
+        final long heapBefore = usedHeapAfterGc();
+
+        Capture capture = new Capture("test");
+        capture.setOriginalImage(cropFromSyntheticDesktop(selection));
+
+        final long retainedBytes = usedHeapAfterGc() - heapBefore;
+
+        final BufferedImage image = capture.getOriginalImage();
+        final long rasterBytes = (long) image.getRaster().getDataBuffer().getSize() * BYTES_PER_PIXEL;
+
+        System.out.println("Crop size:     " + cropBytes / 1024 + "kB");
+        System.out.println("Raster size:   " + rasterBytes / 1024 + "kB");
+        System.out.println("Retained heap: " + retainedBytes / 1024 + "kB");
+
+        boolean success = true;
+        if (image.getWidth() != selection.width || image.getHeight() != selection.height) {
+            System.out.println("FAILED: cropped image is " + image.getWidth() + "x" + image.getHeight() + " instead of " + selection.width + "x" + selection.height);
+            success = false;
+        }
+        if (rasterBytes != cropBytes) {
+            System.out.println("FAILED: cropped image shares a raster larger than the selection");
+            success = false;
+        }
+        if (retainedBytes > cropBytes + HEAP_SLACK_BYTES) {
+            System.out.println("FAILED: retained heap is more than the crop size");
+            success = false;
+        }
+        return success;
+    }
+
+    /**
+     * Simulates a 4K display next to a 1080p display, and crops the selection from it.
+     * The tiles are only referenced from this method, so they should be collectable once it returns
+     */
+    private static BufferedImage cropFromSyntheticDesktop(Rectangle selection) {
+        List<TiledScreenCapture.Tile> tiles = new ArrayList<>();
+        tiles.add(new TiledScreenCapture.Tile(new Rectangle(0, 0, 3840, 2160), new BufferedImage(3840, 2160, BufferedImage.TYPE_INT_RGB)));
+        tiles.add(new TiledScreenCapture.Tile(new Rectangle(3840, 0, 1920, 1080), new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB)));
+        TiledScreenCapture screenCapture = new TiledScreenCapture(new Dimension(5760, 2160), tiles);
+        System.out.println("Desktop size:  " + screenCapture.getPixelCount() * BYTES_PER_PIXEL / 1024 + "kB");
+        return screenCapture.crop(selection);
+    }
+
+    private static long usedHeapAfterGc() {
+        final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return memoryBean.getHeapMemoryUsage().getUsed();
+    }
+}
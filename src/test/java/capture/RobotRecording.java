@@ -0,0 +1,62 @@
+package capture;
+
+import com.github.kokorin.jaffree.ffmpeg.FFmpegResultFuture;
+import info.ginj.util.Jaffree;
+import info.ginj.util.RobotFrameProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records the middle of the main display with the Java grabber for a few seconds, then checks the duration of the
+ * resulting video and the proportion of missed grabs.
+ * Requires a display (e.g. run under xvfb-run) and ffmpeg as configured in preferences.
+ */
+public class RobotRecording {
+    private static final Logger logger = LoggerFactory.getLogger(RobotRecording.class);
+
+    private static final int FRAME_RATE = 10;
+    private static final long RECORDING_MS = 10_000;
+    private static final double MAX_MISSED_RATIO = 0.05;
+    private static final long MAX_DURATION_ERROR_MS = 500;
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        final Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().getBounds();
+        final Rectangle area = new Rectangle(screen.x + screen.width / 4, screen.y + screen.height / 4, screen.width / 2, screen.height / 2);
+        final File videoFile = File.createTempFile("robot_recording", ".mp4");
+        System.out.println("Recording " + area + " at " + FRAME_RATE + " fps for " + RECORDING_MS + "ms to " + videoFile.getAbsolutePath());
+
+        final RobotFrameProducer producer = new RobotFrameProducer(area, FRAME_RATE, true);
+        producer.start();
+        final FFmpegResultFuture future = Jaffree.startRecording(producer, null, videoFile.getAbsolutePath());
+        Thread.sleep(RECORDING_MS);
+        producer.stop();
+        if (!Jaffree.stopRecording(future, logger)) {
+            System.out.println("FAILED: recording did not end properly");
+            System.exit(1);
+        }
+
+        final long durationMs = Jaffree.getDuration(videoFile);
+        System.out.println("Grabs: " + producer.getGrabbedFrames() + ", sent: " + producer.getSentFrames() + ", unchanged: " + producer.getSkippedFrames()
+                + ", missed: " + producer.getMissedFrames() + ", " + String.format("%.1f", producer.getAverageGrabMs()) + "ms per grab");
+        System.out.println("Video duration: " + durationMs + "ms");
+        if (!videoFile.delete()) {
+            System.out.println("Could not delete " + videoFile.getAbsolutePath());
+        }
+
+        final long expectedGrabs = RECORDING_MS * FRAME_RATE / 1000;
+        if (producer.getMissedFrames() > expectedGrabs * MAX_MISSED_RATIO) {
+            System.out.println("FAILED: more than " + (int) (MAX_MISSED_RATIO * 100) + "% of grabs were missed");
+            System.exit(1);
+        }
+        if (Math.abs(durationMs - RECORDING_MS) > MAX_DURATION_ERROR_MS) {
+            System.out.println("FAILED: video duration is off by more than " + MAX_DURATION_ERROR_MS + "ms");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+}
@@ -0,0 +1,82 @@
+package capture;
+
+import com.jhlabs.image.GaussianFilter;
+import info.ginj.tool.Overlay;
+import info.ginj.tool.ShadowRenderer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Compares the drop shadow blur of ShadowRenderer with the previous GaussianFilter (ConvolveFilter) path, on masks
+ * similar to those of overlays, and checks that both produce the same pixels.
+ * Runs without a display. No JMH here: each case is warmed up, then timed over a number of iterations, and the
+ * median is reported.
+ */
+public class ShadowBlurBenchmark {
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int MEASURED_ITERATIONS = 30;
+
+    public static void main(String[] args) {
+        final Dimension[] sizes = {new Dimension(200, 120), new Dimension(800, 450), new Dimension(1920, 1080), new Dimension(3840, 2160)};
+        boolean success = true;
+        System.out.printf("%-12s %15s %15s %15s%n", "Mask size", "Gaussian (ms)", "Renderer (ms)", "Cached (ms)");
+        for (Dimension size : sizes) {
+            final BufferedImage mask = createFrameMask(size);
+
+            // Same call as the previous implementation of Overlay.getShadowImage()
+            final double gaussianMs = measure(() -> new GaussianFilter(Overlay.SHADOW_BLUR_RADIUS).filter(mask, null));
+            final double rendererMs = measure(() -> ShadowRenderer.blur(mask, Overlay.SHADOW_BLUR_RADIUS));
+            ShadowRenderer.clearCache();
+            final double cachedMs = measure(() -> ShadowRenderer.getShadow(createFrameMask(size), Overlay.SHADOW_BLUR_RADIUS))
+                    - measure(() -> createFrameMask(size));
+            System.out.printf("%-12s %15.3f %15.3f %15.3f%n", size.width + "x" + size.height, gaussianMs, rendererMs, Math.max(0, cachedMs));
+
+            final BufferedImage expected = new GaussianFilter(Overlay.SHADOW_BLUR_RADIUS).filter(mask, null);
+            final BufferedImage actual = ShadowRenderer.blur(mask, Overlay.SHADOW_BLUR_RADIUS);
+            if (!Arrays.equals(getPixels(expected), getPixels(actual))) {
+                System.out.println("FAILED: shadows differ for size " + size);
+                success = false;
+            }
+        }
+        if (!success) {
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Draws a mask the way Overlay.getShadowImage() does, for a frame overlay filling the given size
+     */
+    private static BufferedImage createFrameMask(Dimension size) {
+        final BufferedImage mask = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g2d = mask.createGraphics();
+        g2d.setColor(Color.RED);
+        g2d.setStroke(new BasicStroke(4));
+        g2d.drawRect(Overlay.SHADOW_BLUR_RADIUS, Overlay.SHADOW_BLUR_RADIUS, size.width - 2 * Overlay.SHADOW_BLUR_RADIUS, size.height - 2 * Overlay.SHADOW_BLUR_RADIUS);
+        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_IN, 0.7f));
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, size.width, size.height);
+        g2d.dispose();
+        return mask;
+    }
+
+    private static double measure(Runnable runnable) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runnable.run();
+        }
+        final long[] durations = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            runnable.run();
+            durations[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(durations);
+        return durations[MEASURED_ITERATIONS / 2] / 1_000_000.0;
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}